@@ -0,0 +1,467 @@
+/*
+ * movie-renamer-core
+ * Copyright (C) 2012-2013 Nicolas Magré
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.free.movierenamer.info;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import fr.free.movierenamer.info.CastingInfo.PersonProperty;
+import fr.free.movierenamer.info.EpisodeInfo.EpisodeProperty;
+import fr.free.movierenamer.info.ImageInfo.ImageCategoryProperty;
+import fr.free.movierenamer.info.ImageInfo.ImageProperty;
+import fr.free.movierenamer.info.MovieInfo.MovieMultipleProperty;
+import fr.free.movierenamer.info.MovieInfo.MovieProperty;
+import fr.free.movierenamer.info.SubtitleInfo.SubtitleProperty;
+import fr.free.movierenamer.info.TvShowInfo.TvShowProperty;
+import fr.free.movierenamer.searchinfo.Movie;
+import fr.free.movierenamer.searchinfo.Subtitle;
+import fr.free.movierenamer.searchinfo.TvShow;
+import fr.free.movierenamer.utils.CacheCodec;
+import fr.free.movierenamer.utils.ScrapperUtils.AvailableApiIds;
+
+/**
+ * Class InfoCodec, compact binary encoding of info and search results (and
+ * lists of them) for disk cache
+ *
+ * An entry is a version, a table of all strings used by the entry then the
+ * values. Integers are varints, strings (enum property names included) are
+ * indexes in the table, so repeated names and values are stored once.
+ * Properties are stored by name : unknown properties are skipped when an
+ * enum changes.
+ *
+ * @author Nicolas Magré
+ */
+public final class InfoCodec implements CacheCodec {
+
+  public static final int ID = 1;
+  private static final int VERSION = 1;
+  // value types
+  private static final int NULL = 0;
+  private static final int LIST = 1;
+  private static final int STRING = 2;
+  private static final int LOCALE = 3;
+  private static final int ID_INFO = 4;
+  private static final int MOVIE = 5;
+  private static final int TVSHOW = 6;
+  private static final int SUBTITLE = 7;
+  private static final int MOVIE_INFO = 8;
+  private static final int TVSHOW_INFO = 9;
+  private static final int EPISODE_INFO = 10;
+  private static final int CASTING_INFO = 11;
+  private static final int IMAGE_INFO = 12;
+  private static final int SUBTITLE_INFO = 13;
+  private static final Set<Class<?>> supportedClasses = new HashSet<Class<?>>(Arrays.<Class<?>>asList(
+          String.class, Locale.class, IdInfo.class, Movie.class, TvShow.class, Subtitle.class,
+          MovieInfo.class, TvShowInfo.class, EpisodeInfo.class, CastingInfo.class, ImageInfo.class, SubtitleInfo.class));
+
+  @Override
+  public int getId() {
+    return ID;
+  }
+
+  @Override
+  public boolean canEncode(Object value) {
+    if (value instanceof List) {
+      for (Object element : (List<?>) value) {
+        if (!isSupported(element)) {
+          return false;
+        }
+      }
+      return true;
+    }
+    return isSupported(value);
+  }
+
+  private static boolean isSupported(Object value) {
+    if (value instanceof MediaInfo && ((MediaInfo) value).mtag != null) {
+      // file dependent, never cached
+      return false;
+    }
+    // subclasses may have more fields
+    return value == null || supportedClasses.contains(value.getClass());
+  }
+
+  @Override
+  public byte[] encode(Object value) throws IOException {
+    Writer writer = new Writer();
+    writer.writeValue(value);
+    return writer.toByteArray();
+  }
+
+  @Override
+  public Object decode(byte[] data) throws IOException {
+    try {
+      return new Reader(data).readValue();
+    } catch (RuntimeException ex) {
+      // truncated or corrupted entry
+      throw new IOException("Invalid entry : " + ex);
+    }
+  }
+
+  private static class Writer {
+
+    private final Map<String, Integer> strings = new LinkedHashMap<String, Integer>();
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream(256);
+
+    public byte[] toByteArray() throws IOException {
+      ByteArrayOutputStream out = new ByteArrayOutputStream(body.size() + strings.size() * 16 + 8);
+      Writer header = new Writer();
+      header.writeVarint(VERSION);
+      header.writeVarint(strings.size());
+      for (String str : strings.keySet()) {
+        byte[] bytes = str.getBytes("UTF-8");
+        header.writeVarint(bytes.length);
+        header.body.write(bytes);
+      }
+      header.body.writeTo(out);
+      body.writeTo(out);
+      return out.toByteArray();
+    }
+
+    private void writeVarint(int value) {
+      while ((value & ~0x7F) != 0) {
+        body.write((value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      body.write(value);
+    }
+
+    private void writeSignedVarint(int value) {
+      // zigzag, small negative values use few bytes too
+      writeVarint((value << 1) ^ (value >> 31));
+    }
+
+    /**
+     * String index + 1, 0 for null
+     */
+    private void writeString(String str) {
+      if (str == null) {
+        writeVarint(0);
+        return;
+      }
+
+      Integer index = strings.get(str);
+      if (index == null) {
+        index = strings.size();
+        strings.put(str, index);
+      }
+      writeVarint(index + 1);
+    }
+
+    private void writeUrl(URL url) {
+      writeString(url != null ? url.toExternalForm() : null);
+    }
+
+    private void writeStringMap(Map<? extends Enum<?>, String> map) {
+      if (map == null) {
+        writeVarint(0);
+        return;
+      }
+
+      writeVarint(map.size() + 1);
+      for (Map.Entry<? extends Enum<?>, String> entry : map.entrySet()) {
+        writeString(entry.getKey().name());
+        writeString(entry.getValue());
+      }
+    }
+
+    private void writeValue(Object value) throws IOException {
+      if (value == null) {
+        writeVarint(NULL);
+      } else if (value instanceof List) {
+        List<?> list = (List<?>) value;
+        writeVarint(LIST);
+        writeVarint(list.size());
+        for (Object element : list) {
+          writeValue(element);
+        }
+      } else if (!supportedClasses.contains(value.getClass())) {
+        throw new IOException("Unsupported value type " + value.getClass().getName());
+      } else if (value instanceof String) {
+        writeVarint(STRING);
+        writeString((String) value);
+      } else if (value instanceof Locale) {
+        Locale locale = (Locale) value;
+        writeVarint(LOCALE);
+        writeString(locale.getLanguage());
+        writeString(locale.getCountry());
+        writeString(locale.getVariant());
+      } else if (value instanceof IdInfo) {
+        writeVarint(ID_INFO);
+        writeIdInfo((IdInfo) value);
+      } else if (value instanceof Movie) {
+        Movie movie = (Movie) value;
+        writeVarint(MOVIE);
+        writeIdInfo(movie.getMediaId());
+        writeString(movie.getName());
+        writeString(movie.getOriginalTitle());
+        writeUrl(movie.getURL());
+        writeSignedVarint(movie.getYear());
+      } else if (value instanceof TvShow) {
+        TvShow tvShow = (TvShow) value;
+        writeVarint(TVSHOW);
+        writeIdInfo(tvShow.getMediaId());
+        writeString(tvShow.getName());
+        writeUrl(tvShow.getURL());
+        writeSignedVarint(tvShow.getYear());
+      } else if (value instanceof Subtitle) {
+        Subtitle subtitle = (Subtitle) value;
+        writeVarint(SUBTITLE);
+        writeString(subtitle.getName());
+        writeString(subtitle.getOriginalTitle());
+        writeUrl(subtitle.getURL());
+      } else if (value instanceof MovieInfo) {
+        MovieInfo info = (MovieInfo) value;
+        writeVarint(MOVIE_INFO);
+        writeStringMap(info.fields);
+        Map<MovieMultipleProperty, List<?>> multipleFields = info.multipleFields;
+        if (multipleFields == null) {
+          multipleFields = new EnumMap<MovieMultipleProperty, List<?>>(MovieMultipleProperty.class);
+        }
+        writeVarint(multipleFields.size());
+        for (Map.Entry<MovieMultipleProperty, List<?>> entry : multipleFields.entrySet()) {
+          writeString(entry.getKey().name());
+          writeValue(entry.getValue());
+        }
+        writeMediaInfo(info);
+      } else if (value instanceof TvShowInfo) {
+        TvShowInfo info = (TvShowInfo) value;
+        writeVarint(TVSHOW_INFO);
+        writeStringMap(info.fields);
+        writeMediaInfo(info);
+      } else if (value instanceof EpisodeInfo) {
+        writeVarint(EPISODE_INFO);
+        writeStringMap(((EpisodeInfo) value).fields);
+      } else if (value instanceof CastingInfo) {
+        writeVarint(CASTING_INFO);
+        writeStringMap(((CastingInfo) value).fields);
+      } else if (value instanceof ImageInfo) {
+        writeVarint(IMAGE_INFO);
+        writeImageInfo((ImageInfo) value);
+      } else if (value instanceof SubtitleInfo) {
+        writeVarint(SUBTITLE_INFO);
+        writeStringMap(((SubtitleInfo) value).fields);
+      }
+    }
+
+    private void writeIdInfo(IdInfo id) {
+      if (id == null) {
+        writeString(null);
+        return;
+      }
+
+      writeString(id.getIdType() != null ? id.getIdType().name() : "");
+      writeSignedVarint(id.getId());
+      writeString(id.getLongId());
+    }
+
+    private void writeImageInfo(ImageInfo image) {
+      writeSignedVarint(image.id);
+      writeString(image.category.name());
+      writeStringMap(image.fields);
+    }
+
+    private void writeMediaInfo(MediaInfo info) {
+      // count + 1, 0 for null
+      writeVarint(info.casting != null ? info.casting.length + 1 : 0);
+      if (info.casting != null) {
+        for (CastingInfo casting : info.casting) {
+          writeStringMap(casting.fields);
+        }
+      }
+      writeVarint(info.images != null ? info.images.length + 1 : 0);
+      if (info.images != null) {
+        for (ImageInfo image : info.images) {
+          writeImageInfo(image);
+        }
+      }
+    }
+  }
+
+  private static class Reader {
+
+    private final byte[] data;
+    private int position;
+    private final String[] strings;
+
+    public Reader(byte[] data) throws IOException {
+      this.data = data;
+      int version = readVarint();
+      if (version != VERSION) {
+        throw new IOException("Unsupported entry version " + version);
+      }
+      strings = new String[readVarint()];
+      for (int i = 0; i < strings.length; i++) {
+        int length = readVarint();
+        strings[i] = new String(data, position, length, "UTF-8");
+        position += length;
+      }
+    }
+
+    private int readVarint() {
+      int value = 0;
+      for (int shift = 0; true; shift += 7) {
+        int b = data[position++];
+        value |= (b & 0x7F) << shift;
+        if ((b & 0x80) == 0) {
+          return value;
+        }
+      }
+    }
+
+    private int readSignedVarint() {
+      int value = readVarint();
+      return (value >>> 1) ^ -(value & 1);
+    }
+
+    private String readString() {
+      int index = readVarint();
+      return index == 0 ? null : strings[index - 1];
+    }
+
+    private URL readUrl() throws IOException {
+      String url = readString();
+      try {
+        return url != null ? new URL(url) : null;
+      } catch (MalformedURLException ex) {
+        throw new IOException(ex.toString());
+      }
+    }
+
+    private static <E extends Enum<E>> E getEnum(Class<E> type, String name) {
+      try {
+        return Enum.valueOf(type, name);
+      } catch (IllegalArgumentException ex) {
+        // property removed
+        return null;
+      }
+    }
+
+    /**
+     * @return Map, empty if it was null
+     */
+    private <E extends Enum<E>> Map<E, String> readStringMap(Class<E> type) {
+      int size = readVarint() - 1;
+      Map<E, String> map = new EnumMap<E, String>(type);
+      for (int i = 0; i < size; i++) {
+        E key = getEnum(type, readString());
+        String value = readString();
+        if (key != null) {
+          map.put(key, value);
+        }
+      }
+      return map;
+    }
+
+    public Object readValue() throws IOException {
+      int type = readVarint();
+      switch (type) {
+        case NULL:
+          return null;
+        case LIST:
+          int size = readVarint();
+          List<Object> list = new ArrayList<Object>(size);
+          for (int i = 0; i < size; i++) {
+            list.add(readValue());
+          }
+          return list;
+        case STRING:
+          return readString();
+        case LOCALE:
+          return new Locale(readString(), readString(), readString());
+        case ID_INFO:
+          return readIdInfo();
+        case MOVIE:
+          return new Movie(readIdInfo(), readString(), readString(), readUrl(), readSignedVarint());
+        case TVSHOW:
+          return new TvShow(readIdInfo(), readString(), readUrl(), readSignedVarint());
+        case SUBTITLE:
+          return new Subtitle(readString(), readString(), readUrl());
+        case MOVIE_INFO:
+          Map<MovieProperty, String> fields = readStringMap(MovieProperty.class);
+          Map<MovieMultipleProperty, List<?>> multipleFields = new EnumMap<MovieMultipleProperty, List<?>>(MovieMultipleProperty.class);
+          int count = readVarint();
+          for (int i = 0; i < count; i++) {
+            MovieMultipleProperty key = getEnum(MovieMultipleProperty.class, readString());
+            List<?> value = (List<?>) readValue();
+            if (key != null) {
+              multipleFields.put(key, value);
+            }
+          }
+          return readMediaInfo(new MovieInfo(fields, multipleFields));
+        case TVSHOW_INFO:
+          return readMediaInfo(new TvShowInfo(readStringMap(TvShowProperty.class)));
+        case EPISODE_INFO:
+          return new EpisodeInfo(readStringMap(EpisodeProperty.class));
+        case CASTING_INFO:
+          return new CastingInfo(readStringMap(PersonProperty.class));
+        case IMAGE_INFO:
+          return readImageInfo();
+        case SUBTITLE_INFO:
+          return new SubtitleInfo(readStringMap(SubtitleProperty.class));
+        default:
+          throw new IOException("Unknown value type " + type);
+      }
+    }
+
+    private IdInfo readIdInfo() {
+      String type = readString();
+      if (type == null) {
+        return null;
+      }
+      int id = readSignedVarint();
+      String longId = readString();
+      return new IdInfo(id, longId, type.length() > 0 ? getEnum(AvailableApiIds.class, type) : null);
+    }
+
+    private ImageInfo readImageInfo() {
+      int id = readSignedVarint();
+      ImageCategoryProperty category = getEnum(ImageCategoryProperty.class, readString());
+      return new ImageInfo(id, readStringMap(ImageProperty.class), category);
+    }
+
+    private <MI extends MediaInfo> MI readMediaInfo(MI info) {
+      int count = readVarint() - 1;
+      if (count >= 0) {
+        info.casting = new CastingInfo[count];
+        for (int i = 0; i < count; i++) {
+          info.casting[i] = new CastingInfo(readStringMap(PersonProperty.class));
+        }
+      }
+      count = readVarint() - 1;
+      if (count >= 0) {
+        info.images = new ImageInfo[count];
+        for (int i = 0; i < count; i++) {
+          info.images[i] = readImageInfo();
+        }
+      }
+      return info;
+    }
+  }
+}
@@ -29,13 +29,13 @@ import java.util.List;
  * @author Nicolas Magré
  * @author Simon QUÉMÉNEUR
  */
-public abstract class MediaInfo extends Info {
+public abstract class MediaInfo extends Info implements Cloneable {
 
   private static final long serialVersionUID = 1L;
 
   protected CastingInfo[] casting;
 
-//  protected ImageInfo[] images;
+  protected ImageInfo[] images;
 
   protected MediaTag mtag;
   
@@ -74,9 +74,12 @@ public abstract class MediaInfo extends Info {
     return actors;
   }
 
-//  public List<ImageInfo> getImages() {
-//    return Collections.unmodifiableList(Arrays.asList(images));
-//  }
+  /**
+   * @return Images, null if they were not fetched with info
+   */
+  public List<ImageInfo> getImages() {
+    return (images == null) ? null : Collections.unmodifiableList(Arrays.asList(images));
+  }
 
 //  public List<ImageInfo> getFanarts() {
 //    return Collections.unmodifiableList(Arrays.asList(images));
@@ -85,10 +88,25 @@ public abstract class MediaInfo extends Info {
 //  public List<ImageInfo> getThumbs() {
 //    return Collections.unmodifiableList(Arrays.asList(images));
 //  }
-//
-//  public void setImages(List<ImageInfo> images) {
-//    this.images = (images == null) ? null : images.toArray(new ImageInfo[images.size()]);
-//  }
+
+  public void setImages(List<ImageInfo> images) {
+    this.images = (images == null) ? null : images.toArray(new ImageInfo[images.size()]);
+  }
+
+  /**
+   * @param images
+   * @return Copy of this info with images, this info (maybe shared by cache)
+   * is not modified
+   */
+  public MediaInfo withImages(List<ImageInfo> images) {
+    try {
+      MediaInfo info = (MediaInfo) clone();
+      info.setImages(images);
+      return info;
+    } catch (CloneNotSupportedException ex) {
+      throw new IllegalStateException(ex);
+    }
+  }
   
   public MediaTag getMediaTag() {
     return mtag;
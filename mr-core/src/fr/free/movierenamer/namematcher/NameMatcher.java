@@ -77,8 +77,17 @@ public abstract class NameMatcher {// TODO
     return extractedName;
   }
 
-  private static Map<FileProperty, String> getTvShowProperty(File file) {// TODO
+  private static Map<FileProperty, String> getTvShowProperty(File file) {
     Map<FileProperty, String> properties = new EnumMap<FileProperty, String>(FileProperty.class);
+    // tvShow name is inferred once for all episodes of a folder
+    properties.put(FileProperty.name, new TvShowNameMatcher(file).getName());
+    SxE sxe = new TvShowEpisodeNumMatcher(file).matchEpisode();
+    if (sxe.getSeason() >= 0) {
+      properties.put(FileProperty.season, "" + sxe.getSeason());
+    }
+    if (sxe.getEpisode() >= 0) {
+      properties.put(FileProperty.episode, "" + sxe.getEpisode());
+    }
 
     return properties;
   }
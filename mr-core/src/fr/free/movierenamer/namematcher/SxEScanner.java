@@ -0,0 +1,323 @@
+/*
+ * movie-renamer-core
+ * Copyright (C) 2012-2013 Nicolas Magré
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.free.movierenamer.namematcher;
+
+import fr.free.movierenamer.namematcher.TvShowEpisodeNumMatcher.TvShowNumPattern;
+
+/**
+ * Class SxEScanner, finds the first match of every TvShowNumPattern and of
+ * episodePattern in a single scan of the name, with the same groups as the
+ * regexes (same greedy and backtracking order)
+ *
+ * @author Nicolas Magré
+ */
+final class SxEScanner {
+
+  /**
+   * <code>EPISODE</code> episodePattern index in scan result
+   */
+  static final int EPISODE = TvShowNumPattern.values().length;
+
+  /**
+   * Scan name once for all patterns
+   *
+   * @param name Normalized name
+   * @return Groups 1 and 2 of first match of each TvShowNumPattern (by
+   * ordinal) then of episodePattern, null if pattern does not match
+   */
+  static String[][] scan(String name) {
+    String[][] matches = new String[EPISODE + 1][];
+    int remaining = matches.length;
+    for (int i = 0; i < name.length() && remaining > 0; i++) {
+      for (int pattern = 0; pattern < matches.length; pattern++) {
+        if (matches[pattern] == null && (matches[pattern] = matchAt(pattern, name, i)) != null) {
+          remaining--;
+        }
+      }
+    }
+    return matches;
+  }
+
+  /**
+   * Same as seasonPattern
+   *
+   * @param str
+   * @return Season group or null
+   */
+  static String findSeason(String str) {
+    for (int i = 0; i < str.length(); i++) {
+      // (?:(?:season)|(?:saison)|(?:s))\W?([0-9]{1,2})
+      for (String prefix : new String[]{"season", "saison", "s"}) {
+        if (!str.startsWith(prefix, i)) {
+          continue;
+        }
+        int start = i + prefix.length();
+        for (int w : options(nonWord(str, start))) {
+          int n = digits(str, start + w, 2);
+          if (n > 0) {
+            return str.substring(start + w, start + w + n);
+          }
+        }
+      }
+    }
+    return null;
+  }
+
+  private static String[] matchAt(int pattern, String s, int i) {
+    switch (pattern) {
+      case 0:
+        return matchSxE(s, i);
+      case 1:
+        return matchSxE2(s, i);
+      case 2:
+        return matchSxE3(s, i);
+      case 3:
+        return matchSeason(s, i, false);
+      case 4:
+        return matchSeason(s, i, true);
+      case 5:
+        return matchSxE6(s, i);
+      case 6:
+        return matchSxE7(s, i);
+      default:
+        return matchEpisode(s, i);
+    }
+  }
+
+  private static String[] matchSxE(String s, int i) {
+    // ([0-9]{1,2})x([0-9]{1,2})(?:\D|$)
+    for (int k = digits(s, i, 2); k >= 1; k--) {
+      int x = i + k;
+      if (at(s, x) == 'x') {
+        for (int l = digits(s, x + 1, 2); l >= 1; l--) {
+          if (!isDigit(at(s, x + 1 + l))) {
+            return groups(s, i, x, x + 1, x + 1 + l);
+          }
+        }
+      }
+    }
+    return null;
+  }
+
+  private static String[] matchSxE2(String s, int i) {
+    // s([0-9]{1,2}).?[eé]([0-9]{1,2})
+    if (at(s, i) != 's') {
+      return null;
+    }
+    for (int k = digits(s, i + 1, 2); k >= 1; k--) {
+      int end = i + 1 + k;
+      for (int dot : options(any(s, end))) {
+        int e = end + dot;
+        int l = isE(at(s, e)) ? digits(s, e + 1, 2) : 0;
+        if (l > 0) {
+          return groups(s, i + 1, end, e + 1, e + 1 + l);
+        }
+      }
+    }
+    return null;
+  }
+
+  private static String[] matchSxE3(String s, int i) {
+    // (?:^|[\W} ])([0-9]{1,2})([0-9][0-9])[\._ \-]
+    // "^" is tried first
+    int w = nonWord(s, i);
+    for (int start : new int[]{i == 0 ? 0 : -1, w > 0 ? i + w : -1}) {
+      if (start < 0) {
+        continue;
+      }
+      for (int k = digits(s, start, 2); k >= 1; k--) {
+        int end = start + k;
+        if (isDigit(at(s, end)) && isDigit(at(s, end + 1)) && "._ -".indexOf(at(s, end + 2)) >= 0) {
+          return groups(s, start, end, end, end + 2);
+        }
+      }
+    }
+    return null;
+  }
+
+  private static String[] matchSeason(String s, int i, boolean episode) {
+    // (?:(?:season)|(?:saison)).?([0-9]{1,2}).*[eé]p.?([0-9]{1,2})
+    // (?:(?:season)|(?:saison)).?([0-9]{1,2}).*(?:[eé]pisode).?([0-9]{1,2})
+    if (!s.startsWith("season", i) && !s.startsWith("saison", i)) {
+      return null;
+    }
+    int start = i + 6;
+    for (int dot : options(any(s, start))) {
+      for (int k = digits(s, start + dot, 2); k >= 1; k--) {
+        int end = start + dot + k;
+        String[] groups = episode ? findLast(s, end, "pisode", false) : findLast(s, end, "p", false);
+        if (groups != null) {
+          groups[0] = s.substring(start + dot, end);
+          return groups;
+        }
+      }
+    }
+    return null;
+  }
+
+  private static String[] matchSxE6(String s, int i) {
+    // s([0-9]{1,2}).*[ée]pisode.?\D?([0-9]{1,2})
+    if (at(s, i) != 's') {
+      return null;
+    }
+    for (int k = digits(s, i + 1, 2); k >= 1; k--) {
+      int end = i + 1 + k;
+      String[] groups = findLast(s, end, "pisode", true);
+      if (groups != null) {
+        groups[0] = s.substring(i + 1, end);
+        return groups;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Same as ".*[eé]" + word + ".?" + (nonDigit ? "\D?" : "") + "([0-9]{1,2})",
+   * greedy so last match is used
+   *
+   * @return Groups with group 2 set only, or null
+   */
+  private static String[] findLast(String s, int from, String word, boolean nonDigit) {
+    // .* stops at line terminators
+    int limit = from;
+    while (limit < s.length() && any(s, limit) > 0) {
+      limit++;
+    }
+
+    for (int e = limit; e >= from; e--) {
+      if (!isE(at(s, e)) || !s.startsWith(word, e + 1)) {
+        continue;
+      }
+      int start = e + 1 + word.length();
+      for (int dot : options(any(s, start))) {
+        for (int d : nonDigit ? options(nonDigit(s, start + dot)) : options(0)) {
+          int l = digits(s, start + dot + d, 2);
+          if (l > 0) {
+            return new String[]{null, s.substring(start + dot + d, start + dot + d + l)};
+          }
+        }
+      }
+    }
+    return null;
+  }
+
+  private static String[] matchSxE7(String s, int i) {
+    // ([0-9]{2}) ?([0-9]{2})(?:\D|$)
+    if (digits(s, i, 2) != 2) {
+      return null;
+    }
+    for (int space : options(at(s, i + 2) == ' ' ? 1 : 0)) {
+      int start = i + 2 + space;
+      if (digits(s, start, 2) == 2 && !isDigit(at(s, start + 2))) {
+        return groups(s, i, i + 2, start, start + 2);
+      }
+    }
+    return null;
+  }
+
+  private static String[] matchEpisode(String s, int i) {
+    // (?:(?:(?:[eé]p)|(?:[eé]pisode)) ([0-9]{1,2}))|(?:(?:^| )([0-9]{1,2})[ -_])
+    if (isE(at(s, i)) && at(s, i + 1) == 'p') {
+      for (int start : new int[]{i + 2, s.startsWith("isode", i + 2) ? i + 7 : -1}) {
+        int l = (start > 0 && at(s, start) == ' ') ? digits(s, start + 1, 2) : 0;
+        if (l > 0) {
+          return new String[]{s.substring(start + 1, start + 1 + l), null};
+        }
+      }
+    }
+
+    // [ -_] is a range, digits are in it
+    for (int start : new int[]{i == 0 ? 0 : -1, at(s, i) == ' ' ? i + 1 : -1}) {
+      if (start < 0) {
+        continue;
+      }
+      for (int k = digits(s, start, 2); k >= 1; k--) {
+        int c = at(s, start + k);
+        if (c >= ' ' && c <= '_') {
+          return new String[]{null, s.substring(start, start + k)};
+        }
+      }
+    }
+    return null;
+  }
+
+  private static String[] groups(String s, int start1, int end1, int start2, int end2) {
+    return new String[]{s.substring(start1, end1), s.substring(start2, end2)};
+  }
+
+  /**
+   * Optional atom, tried with its length first then empty
+   */
+  private static int[] options(int length) {
+    return (length > 0) ? new int[]{length, 0} : new int[]{0};
+  }
+
+  private static int at(String s, int i) {
+    return (i >= 0 && i < s.length()) ? s.charAt(i) : -1;
+  }
+
+  private static boolean isDigit(int c) {
+    return c >= '0' && c <= '9';
+  }
+
+  private static boolean isE(int c) {
+    return c == 'e' || c == 'é';
+  }
+
+  private static int digits(String s, int i, int max) {
+    int n = 0;
+    while (n < max && isDigit(at(s, i + n))) {
+      n++;
+    }
+    return n;
+  }
+
+  /**
+   * @return Length of "." at i, 0 if it does not match
+   */
+  private static int any(String s, int i) {
+    int c = at(s, i);
+    if (c < 0 || c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+      return 0;
+    }
+    return Character.charCount(s.codePointAt(i));
+  }
+
+  /**
+   * @return Length of "\W" at i, 0 if it does not match
+   */
+  private static int nonWord(String s, int i) {
+    int c = at(s, i);
+    if (c < 0 || isDigit(c) || c == '_' || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')) {
+      return 0;
+    }
+    return Character.charCount(s.codePointAt(i));
+  }
+
+  /**
+   * @return Length of "\D" at i, 0 if it does not match
+   */
+  private static int nonDigit(String s, int i) {
+    int c = at(s, i);
+    return (c < 0 || isDigit(c)) ? 0 : Character.charCount(s.codePointAt(i));
+  }
+
+  private SxEScanner() {
+    throw new UnsupportedOperationException();
+  }
+}
@@ -24,7 +24,6 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import fr.free.movierenamer.utils.NumberUtils;
@@ -40,6 +39,9 @@ public class TvShowEpisodeNumMatcher {
   public static final Pattern seasonPattern = Pattern.compile("(?:(?:season)|(?:saison)|(?:s))\\W?([0-9]{1,2})");
   public static final Pattern episodePattern = Pattern.compile("(?:(?:(?:[eé]p)|(?:[eé]pisode)) ([0-9]{1,2}))|(?:(?:^| )([0-9]{1,2})[ -_])");
 
+  /**
+   * Season/Episode patterns, matched all at once by {@link SxEScanner}
+   */
   public enum TvShowNumPattern {
 
     SxEPattern("([0-9]{1,2})x([0-9]{1,2})(?:\\D|$)"),
@@ -63,7 +65,6 @@ public class TvShowEpisodeNumMatcher {
   private String parentFolder;
 
   public TvShowEpisodeNumMatcher(File episodeFile) {
-    this.episodeName = normalize(episodeFile.getName());
     this.parentFolder = (episodeFile.getParent() != null) ? episodeFile.getParent().toLowerCase() : null;
     String episodeName = episodeFile.getParent() + File.separator + episodeFile.getName();
     if (episodeName.contains(File.separator)) {
@@ -92,8 +93,10 @@ public class TvShowEpisodeNumMatcher {
     //System.out.println("File : " + episodeName);
     SxE sxe;
     List<SxE> SxEs = new ArrayList<SxE>();
+    // first match of all patterns in one scan
+    String[][] matches = SxEScanner.scan(episodeName);
     for (TvShowEpisodeNumMatcher.TvShowNumPattern patternToTest : TvShowEpisodeNumMatcher.TvShowNumPattern.values()) {
-      if ((sxe = match(patternToTest)) != null) {
+      if ((sxe = match(matches[patternToTest.ordinal()])) != null) {
         SxEs.add(sxe);
         // System.out.println("  Matcher " + patternToTest.name() + " Match : " + sxe);
       }
@@ -102,15 +105,14 @@ public class TvShowEpisodeNumMatcher {
     if (SxEs.isEmpty()) {
       //System.out.println("  No Match Found, Try To match Separately");
       sxe = new SxE();
-      Matcher matcher = seasonPattern.matcher(parentFolder == null ? episodeName : parentFolder);
-      if (matcher.find()) {
-        String season = matcher.group(1);
+      String season = SxEScanner.findSeason(parentFolder == null ? episodeName : parentFolder);
+      if (season != null) {
         sxe.setSeason(NumberUtils.isDigit(season) ? Integer.parseInt(season) : 1);
       }
 
-      matcher = episodePattern.matcher(episodeName);
-      if (matcher.find()) {
-        String episode = matcher.group(1) == null ? matcher.group(2) : matcher.group(1);
+      String[] groups = matches[SxEScanner.EPISODE];
+      if (groups != null) {
+        String episode = groups[0] == null ? groups[1] : groups[0];
         sxe.setEpisode(NumberUtils.isDigit(episode) ? Integer.parseInt(episode) : 1);
       }
 
@@ -187,17 +189,16 @@ public class TvShowEpisodeNumMatcher {
   }
 
   /**
-   * Try to match season and episode in fileName
+   * Get season and episode from a pattern match in fileName
    *
-   * @param EPpattern Season/Episode pattern
+   * @param groups Season/Episode pattern groups, see {@link SxEScanner}
    * @return SxE
    */
-  private SxE match(TvShowNumPattern EPpattern) {
-    Matcher matcher = EPpattern.getPattern().matcher(episodeName);
-    if (matcher.find()) {
-      String season = matcher.group(1);
-      String episode = matcher.group(2);
-      String match = matcher.group(1) + matcher.group(2);
+  private SxE match(String[] groups) {
+    if (groups != null) {
+      String season = groups[0];
+      String episode = groups[1];
+      String match = groups[0] + groups[1];
 
       int S, E;
       S = NumberUtils.isDigit(season) ? Integer.parseInt(season) : -1;
@@ -289,9 +290,36 @@ public class TvShowEpisodeNumMatcher {
    */
   private String normalize(String str) {
     str = str.substring(0, str.lastIndexOf("."));// Remove extension
-    str = str.replace(".", " ").replace("_", " ").replace("-", " ").trim();
-    str = str.replaceAll("[,;:!]", "");// Remove ponctuation
-    str = str.replaceAll("\\s+", " ");// Remove duplicate space character
-    return str.toLowerCase();
+    int start = 0;
+    int end = str.length();
+    while (start < end && toSpace(str.charAt(start)) <= ' ') {
+      start++;
+    }
+    while (end > start && toSpace(str.charAt(end - 1)) <= ' ') {
+      end--;
+    }
+
+    StringBuilder sb = new StringBuilder(end - start);
+    boolean space = false;
+    for (int i = start; i < end; i++) {
+      char c = toSpace(str.charAt(i));
+      if (c == ',' || c == ';' || c == ':' || c == '!') {// Remove ponctuation
+        continue;
+      }
+      if (c == ' ' || (c >= '\t' && c <= '\r')) {// Remove duplicate space character
+        if (!space) {
+          sb.append(' ');
+          space = true;
+        }
+      } else {
+        sb.append(c);
+        space = false;
+      }
+    }
+    return sb.toString().toLowerCase();
+  }
+
+  private static char toSpace(char c) {
+    return (c == '.' || c == '_' || c == '-') ? ' ' : c;
   }
 }
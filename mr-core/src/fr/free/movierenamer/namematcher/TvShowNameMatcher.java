@@ -17,24 +17,37 @@
  */
 package fr.free.movierenamer.namematcher;
 
+import fr.free.movierenamer.renamer.NameCleaner;
+import fr.free.movierenamer.settings.Settings;
+import fr.free.movierenamer.utils.Cache;
+import fr.free.movierenamer.utils.Cache.CacheKey;
 import fr.free.movierenamer.utils.FileUtils;
+import fr.free.movierenamer.utils.SingleFlight;
 import java.io.File;
 import java.io.FileFilter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.logging.Level;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
- * Class TvShowNameMatcher
+ * Class TvShowNameMatcher, tvShow name is inferred once per folder (tvShow
+ * folder above a season folder or common start of episode file names) and
+ * shared by all episodes of this folder, file name is only used when folder
+ * gives nothing
  *
  * @author Nicolas Magré
  */
 public class TvShowNameMatcher {
 
-  private static final String SEASONFOLDERPATTERN = "(?i:season)|(?i:saison)|(?i:s).*\\d+";
-  private static final String TVSHOWFOLDERPATTERN = ".*(?i:tvshwow)|(?i:tv)|(?i:serie)|(?i:série).*";
-  private static final String TVSHOWNAMEBYEPISODE = "(([sS]\\d++\\?\\d++)|(\\d++x\\d++.?\\d++x\\d++)|(\\d++[eE]\\d\\d)|([sS]\\d++.[eE]\\d++)|(\\d++x\\d++)|(\\d++x\\d++.?\\d++\\?\\d++)|(.\\d{3}.))";
+  private static final Pattern SEASONFOLDERPATTERN = Pattern.compile("^(?:season|saison|s)\\W?\\d{1,2}$", Pattern.CASE_INSENSITIVE);
+  private static final Pattern TVSHOWFOLDERPATTERN = Pattern.compile("^(?:tv\\W?shows?|tv|series?|séries?)$", Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+  private static final Pattern TVSHOWNAMEBYEPISODE = Pattern.compile("(?:^|[ ._\\-\\[(])(?:s\\d{1,2}[ ._\\-]?e\\d{1,3}|\\d{1,2}x\\d{1,3}|(?:season|saison|s)[ ._\\-]?\\d{1,2}|(?:[eé]p(?:isode)?|e)[ ._\\-]?\\d{1,3}|\\d{3})(?=$|[ ._\\-\\])])", Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+  private static final Pattern SEPARATOR = Pattern.compile("[ ._\\-]+");
+  // Worst last modification date resolution (FAT)
+  private static final long MODIFIED_RESOLUTION = 2000;
 
   public static enum TvShowPattern {
     SxEPattern1("([0-9]{1,2})x([0-9]{1,2})(?:\\D|$)"),
@@ -54,10 +67,10 @@ public class TvShowNameMatcher {
       return pattern;
     }
   }
-  private final boolean DEBUG = false;
+  private final File file;
 
-  public TvShowNameMatcher(File file, List<String> regexs) {
-    //super(file, regexs);
+  public TvShowNameMatcher(File file) {
+    this.file = file;
   }
 
   /**
@@ -65,188 +78,209 @@ public class TvShowNameMatcher {
    *
    * @return TvShow name or empty string if no name found
    */
-
   public String getName() {
-    if (DEBUG) {
-    //  System.out.println("File : " + file.getName());
-    }
-    if (DEBUG) {
-      System.out.println("  Match :");
+    File folder = file.getParentFile();
+    String name = (folder != null) ? getFolderName(folder) : "";
+    if (name.isEmpty()) {
+      name = matchByEpisode(FileUtils.getNameWithoutExtension(file.getName()));
     }
-
-    //Get all matcher values
-    List<NameMatcher> names = new ArrayList<NameMatcher>();
-    getMatcherRes(names, matchByFolderName());
-    getMatcherRes(names, matchByEpisode());
-    getMatcherRes(names, matchByCommonSeqFileName());
-    getMatcherRes(names, matchByRegEx());
-    if (names.isEmpty()) {
-     // return CommonWords.normalize(file.getName().substring(0, file.getName().lastIndexOf(".")));
+    if (name.isEmpty()) {
+      name = NameCleaner.extractName(FileUtils.getNameWithoutExtension(file.getName()), false);
     }
-    return /*CommonWords.matchAll(names, true);*/ null;
+    return name;
   }
 
-
   public int getYear() {
     return -1;
   }
 
   /**
-   * Add tvShow matcher to matcher list if a result is found
+   * Get tvShow name inferred from folder, inference runs once for a folder
+   * (until files are added or removed) whatever the number of episodes in it
    *
-   * @param matchResults List of matcher
-   * @param tvshowMatcher Matcher to add
+   * @param folder Episode folder
+   * @return TvShow name or empty string if folder does not give one
    */
-  private void getMatcherRes(List<NameMatcher> matchResults, NameMatcher tvshowMatcher) {
-  /*  if (tvshowMatcher.found()) {
-      matchResults.add(tvshowMatcher);
-      if (DEBUG) {
-        System.out.println("    " + tvshowMatcher);
-      }
-    }*/
+  private static String getFolderName(final File folder) {
+    final Cache cache = Cache.getCache("tvshowfolder");
+    final CacheKey key = getFolderKey(folder);
+    String name = cache.get(key, String.class);
+    if (name != null) {
+      return name;
+    }
+
+    try {
+      // episodes of a folder matched at the same time share the inference
+      return SingleFlight.execute(key, new Callable<String>() {
+        @Override
+        public String call() throws Exception {
+          String name = cache.get(key, String.class);
+          if (name == null) {
+            name = matchByFolderName(folder);
+            if (name.isEmpty()) {
+              name = matchByCommonSeqFileName(folder);
+            }
+            Settings.LOGGER.log(Level.FINE, String.format("TvShow name for folder %s : '%s'", folder, name));
+            cache.put(key, name);
+          }
+          return name;
+        }
+      });
+    } catch (Exception ex) {
+      Settings.LOGGER.log(Level.WARNING, String.format("Failed to match tvShow name for folder %s : %s", folder, ex));
+      return "";
+    }
   }
 
   /**
-   * Match tvShow by parent folder name
+   * Get folder cache key, folder last modification date changes when files are
+   * added or removed. A folder modified within the date resolution may change
+   * again with the same date, it is identified by its listing (hash does not
+   * depend on listing order)
    *
-   * @return Parent folder name (or is parent) or empty string if it not seems to be the tvShow name
+   * @param folder Episode folder
+   * @return Cache key
    */
-  private NameMatcher matchByFolderName() {
-    /*NameMatcher folderNameMatcher = new NameMatcher("Folder Name Macther", NameMatcher.HIGH);
-    String res = "";
-    final File mediafile = file;
-    if (mediafile.getParent() != null) {
-      Pattern pattern = Pattern.compile(SEASONFOLDERPATTERN);
-      Matcher matcher = pattern.matcher(mediafile.getParent().substring(mediafile.getParent().lastIndexOf(File.separator) + 1));
-      if (matcher.find()) {//Parent folder looks like : Season 5,s3,saison 12,...
-        if (mediafile.getParentFile().getParent() != null) {//If parent folder looks like a season folder, parent folder of season folder is probably the tvshow name
-          res = getTvShowFolderName(mediafile.getParentFile().getParentFile());
-        }
-      }
+  private static CacheKey getFolderKey(File folder) {
+    long modified = folder.lastModified();
+    if (modified > 0 && System.currentTimeMillis() - modified > MODIFIED_RESOLUTION) {
+      return new CacheKey("tvshowfolder", folder.getAbsolutePath(), modified);
     }
-    res = CommonWords.getFilteredName(res, regexs);
 
-    folderNameMatcher.setMatch(CommonWords.normalize(res));*/
-    return /*folderNameMatcher;*/ null;
+    String[] files = folder.list();
+    int hash = 0;
+    for (String file : files != null ? files : new String[0]) {
+      hash += file.hashCode();
+    }
+    return new CacheKey("tvshowfolder", folder.getAbsolutePath(), files != null ? files.length : -1, hash);
   }
 
   /**
-   * Match tvShow Name by detecting episode
+   * Match tvShow by parent folder name
    *
-   * @return A string from beginning to the episode detection in media filename or empty if no episode found
+   * @param folder Episode folder
+   * @return TvShow folder name if folder is a season folder or empty string
    */
-  private NameMatcher matchByEpisode() {
-/*
-    NameMatcher episodeMatcher = new NameMatcher("Episode Matcher", NameMatcher.MEDIUM);
-    String name = file.getName();
-    Pattern pattern = Pattern.compile(TVSHOWNAMEBYEPISODE);
-    Matcher matcher = pattern.matcher(name);
-
-    if (matcher.find()) {//Match episode in fileName
-      name = name.substring(0, name.indexOf(matcher.group(0)));
-    } else {
-      name = "";
-    }
-
-    if(!name.equals("")){
-      name = CommonWords.getFilteredName(name, regexs);
+  private static String matchByFolderName(File folder) {
+    String res = "";
+    //Parent folder looks like : Season 5,s3,saison 12,...
+    if (SEASONFOLDERPATTERN.matcher(folder.getName()).find() && folder.getParentFile() != null) {
+      //If parent folder looks like a season folder, parent folder of season folder is probably the tvshow name
+      res = getTvShowFolderName(folder.getParentFile());
     }
-
-    episodeMatcher.setMatch(CommonWords.normalize(name));*/
-    return /*episodeMatcher;*/ null;
+    return res.isEmpty() ? res : NameCleaner.extractName(res, false);
   }
 
   /**
-   * Match tvShow Name by common sequence between other files from the same directory
+   * Match tvShow Name by detecting episode
    *
-   * @return String with all common words from other files or empty
+   * @param name Episode file name without extension
+   * @return A string from beginning to the episode detection in name or empty
+   * if no episode found
    */
-  private NameMatcher matchByCommonSeqFileName() {
-/*
-    NameMatcher commonMatcher = new NameMatcher("Common sequence in files matcher", NameMatcher.LOW);
-    File fil = file.getParentFile();
-    File[] files = fil.listFiles(new FileFilter() {// Retreive all file that seems to be a tvShow in parent folder
+  private static String matchByEpisode(String name) {
+    String[] words = getEpisodePrefix(name);
+    return words.length == 0 ? "" : NameCleaner.extractName(join(words, words.length), false);
+  }
 
+  /**
+   * Match tvShow Name by common sequence between episode files from the same
+   * directory, sequence must be the whole start of an episode file name (a
+   * folder with many tvShows gives nothing)
+   *
+   * @param folder Episode folder
+   * @return String with common words at start of episode file names or empty
+   */
+  private static String matchByCommonSeqFileName(File folder) {
+    final String[] extensions = NameCleaner.getCleanerProperty("file.extension").split("\\|");// FIXME use setting
+    File[] files = folder.listFiles(new FileFilter() {
       @Override
       public boolean accept(File file) {
-        if (!file.getName().contains(".")) {
-          return false;
-        }
-            if (file.equals(file)) {
-          return false;
-        }
-        String name = file.getName();
-        Pattern pattern = Pattern.compile(TVSHOWNAMEBYEPISODE);
-        Matcher matcher = pattern.matcher(name);
-        if (matcher.find()) {
-          return true;
-        }
-        return false;
+        return file.isFile() && FileUtils.checkFileExt(file, extensions);
       }
     });
-
-    if (files == null || files.length < 2) {
-      return commonMatcher;
+    if (files == null) {
+      return "";
     }
 
-    //Add all words from fileName in list
-    List<String> names = new ArrayList<String>();
+    // Cleaned names, release tags may differ between episodes
+    List<String[]> names = new ArrayList<String[]>();
     for (File f : files) {
-      String name = f.getName().substring(0, f.getName().lastIndexOf(".") + 1);
-      names.add(CommonWords.normalize(name));
+      String name = matchByEpisode(FileUtils.getNameWithoutExtension(f.getName()));
+      if (!name.isEmpty()) {
+        names.add(SEPARATOR.split(name));
+      }
     }
-
-    //Check if list is as small as possible
-    List<String> tvShowNames = CommonWords.getCommonWords(names);
-    if (tvShowNames == null) {
-      return commonMatcher;
+    if (names.isEmpty()) {
+      return "";
     }
 
-    //Get list as small as possible
-    List<String> tmp = CommonWords.getCommonWords(tvShowNames);
-    while (tmp != null) {
-      tmp = CommonWords.getCommonWords(tmp);
-      if (tmp != null) {
-        tvShowNames = tmp;
+    // Common words at start of all names
+    String[] first = names.get(0);
+    int common = first.length;
+    for (String[] words : names) {
+      int i = 0;
+      while (i < common && i < words.length && words[i].equalsIgnoreCase(first[i])) {
+        i++;
       }
+      common = i;
     }
 
-    String res = CommonWords.getSmallStringList(tvShowNames);
-    res = CommonWords.getFilteredName(res, regexs);
-
-    commonMatcher.setMatch(CommonWords.normalize(res));*/
-    return /*commonMatcher;*/ null;
+    for (String[] words : names) {
+      if (words.length == common) {
+        return join(first, common);
+      }
+    }
+    return "";
   }
 
   /**
-   * Match tvShow by apply regex on fileName
+   * Get words before episode detection
    *
-   * @return Parent folder name (or is parent) or empty string if it not seems to be the tvShow name
+   * @param name Episode file name without extension
+   * @return Words before episode detection, empty if no episode found
    */
-  private NameMatcher matchByRegEx() {
-    /*NameMatcher tvshowMatcher = new NameMatcher("Regex Matcher", NameMatcher.MEDIUM);
-    String name = file.getName().substring(0, file.getName().lastIndexOf("."));
-    name = CommonWords.getFilteredName(name, regexs);
-    tvshowMatcher.setMatch(CommonWords.normalize(name));*/
-    return /*tvshowMatcher;*/ null;
+  private static String[] getEpisodePrefix(String name) {
+    Matcher matcher = TVSHOWNAMEBYEPISODE.matcher(name);
+    if (!matcher.find()) {
+      return new String[0];
+    }
+
+    List<String> words = new ArrayList<String>();
+    for (String word : SEPARATOR.split(name.substring(0, matcher.start()))) {
+      if (!word.isEmpty()) {
+        words.add(word);
+      }
+    }
+    return words.toArray(new String[words.size()]);
+  }
+
+  private static String join(String[] words, int length) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < length; i++) {
+      if (i > 0) {
+        sb.append(' ');
+      }
+      sb.append(words[i]);
+    }
+    return sb.toString();
   }
 
   /**
    * Get tvShow folder name
    *
-   * @param file Parent tvshow file
-   * @return TvShow folderName or empty if file is a root filesystem or if it not seems to be the tvShow title
+   * @param parentFile Parent tvshow file
+   * @return TvShow folderName or empty if file is a root filesystem or if it
+   * not seems to be the tvShow title
    */
-  private String getTvShowFolderName(File parentFile) {
+  private static String getTvShowFolderName(File parentFile) {
     String res = "";
     if (!FileUtils.isRootDir(parentFile)) {
-      String parent = parentFile.getName().substring(parentFile.getName().lastIndexOf(File.separator) + 1);
-      Pattern pattern = Pattern.compile(TVSHOWFOLDERPATTERN);
-      Matcher matcher = pattern.matcher(parent);
-      if (!matcher.find()) {//Check if folderName is not a tvshowName
+      String parent = parentFile.getName();
+      if (!TVSHOWFOLDERPATTERN.matcher(parent).find()) {//Check if folderName is not a tvshowName
         res = parent;
       }
     }
-    return res.toLowerCase();
+    return res;
   }
 }
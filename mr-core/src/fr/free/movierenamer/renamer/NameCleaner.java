@@ -17,23 +17,32 @@
  */
 package fr.free.movierenamer.renamer;
 
+import fr.free.movierenamer.renamer.TokenCleaner.Boundary;
+import fr.free.movierenamer.renamer.TokenCleaner.Brackets;
+import fr.free.movierenamer.renamer.TokenCleaner.Dictionary;
+import fr.free.movierenamer.renamer.TokenCleaner.Pass;
+import fr.free.movierenamer.renamer.TokenCleaner.Reloadable;
+import fr.free.movierenamer.renamer.TokenCleaner.Resolution;
 import fr.free.movierenamer.utils.FileUtils;
-import static java.util.regex.Pattern.CASE_INSENSITIVE;
-import static java.util.regex.Pattern.UNICODE_CASE;
-import static java.util.regex.Pattern.compile;
 
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map;
 import java.util.ResourceBundle;
 import java.util.Set;
-import java.util.regex.Matcher;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
 import java.util.regex.Pattern;
 
+import fr.free.movierenamer.settings.Settings;
 import fr.free.movierenamer.utils.LocaleUtils;
 import fr.free.movierenamer.utils.StringUtils;
 import java.util.Arrays;
@@ -46,12 +55,28 @@ import java.util.Arrays;
  */
 public class NameCleaner {
 
-  private static final Pattern yearPattern = Pattern.compile("\\D?(\\d{4})\\D");
-  private static final Map<Boolean, Pattern[]> mstoplist = new HashMap<Boolean, Pattern[]>(2);
-  private static final Map<Boolean, Pattern[]> mcleanlist = new HashMap<Boolean, Pattern[]>(2);
   private static final List<String> keepLanguages = Arrays.asList(new String[]{
     "lit", "Italian", "be", "English", "it", "mal", "in", "run", "Irish", "sun", "li", "am", "est", "or"
   });
+  // shared by both cleaners, swapped on reload
+  private static final Reloadable customBlacklist = new Reloadable(getCustomBlacklistPattern(Collections.<String>emptyList()));
+  // user file, checked for changes at most once per CUSTOM_BLACKLIST_CHECK ms
+  private static final String CUSTOM_BLACKLIST_FILE = "blacklist.txt";
+  private static final long CUSTOM_BLACKLIST_CHECK = 2000;
+  private static final AtomicLong customBlacklistCheck = new AtomicLong();
+  private static volatile long customBlacklistModified;
+  private static volatile long customBlacklistLength;
+
+  private static class PropertiesHolder {
+
+    private static final ResourceBundle properties = ResourceBundle.getBundle(NameCleaner.class.getName(), Locale.ROOT);
+  }
+
+  private static class CleanerHolder {
+
+    // not strict and strict cleaners, built once and never modified, no lock needed to use them
+    private static final TokenCleaner[] cleaners = createCleaners();
+  }
 
   public static String clean(String item, Pattern... cleanPattern) {
     for (Pattern it : cleanPattern) {
@@ -61,46 +86,41 @@ public class NameCleaner {
     return StringUtils.removePunctuation(item);
   }
 
-  public static String extractName(String item, boolean strict) {
-    Pattern[] stoplist;
-    Pattern[] cleanlist;
-
-    synchronized (mstoplist) {
-      stoplist = mstoplist.get(strict);
-      cleanlist = mcleanlist.get(strict);
-
-      //use cache for speed
-      if (stoplist == null || cleanlist == null) {
-        Set<String> languages = LocaleUtils.getLanguageMap(keepLanguages, Locale.ENGLISH).keySet();
-        Pattern bracket = getBracketPattern(strict);
-        Pattern releaseGroup = getReleaseGroupPattern(strict);
-        Pattern languageSuffix = getLanguageSuffixPattern(languages);
-        Pattern languageTag = getLanguageTagPattern(languages);
-        Pattern videoSource = getVideoSourcePattern();
-        Pattern videoFormat = getVideoFormatPattern();
-        Pattern resolution = getResolutionPattern();
-        Pattern blacklist = getBlacklistPattern();
-        Pattern customBlacklist = getCustomBlacklistPattern();
-        Pattern extensions = getExtensionPattern();
-
-        stoplist = new Pattern[]{
-          languageTag, videoSource, videoFormat, resolution, languageSuffix, extensions
-        };
-
-        cleanlist = new Pattern[]{
-          extensions, bracket, releaseGroup, languageTag, videoSource, videoFormat, resolution, languageSuffix, blacklist, customBlacklist
-        };
-
-        mstoplist.put(strict, stoplist);
-        mcleanlist.put(strict, cleanlist);
-      }
+  private static TokenCleaner[] createCleaners() {
+    Set<String> languages = LocaleUtils.getLanguageMap(keepLanguages, Locale.ENGLISH).keySet();
+    Pass languageSuffix = getLanguageSuffixPattern(languages);
+    Pass languageTag = getLanguageTagPattern(languages);
+    Pass videoSource = getVideoSourcePattern();
+    Pass videoFormat = getVideoFormatPattern();
+    Pass resolution = getResolutionPattern();
+    Pass blacklist = getBlacklistPattern();
+    Pass extensions = getExtensionPattern();
+
+    Pass[] stoplist = new Pass[]{
+      languageTag, videoSource, videoFormat, resolution, languageSuffix, extensions
+    };
+
+    TokenCleaner[] cleaners = new TokenCleaner[2];
+    for (boolean strict : new boolean[]{false, true}) {
+      Pass bracket = getBracketPattern(strict);
+      Pass releaseGroup = getReleaseGroupPattern(strict);
+
+      Pass[] cleanlist = new Pass[]{
+        extensions, bracket, releaseGroup, languageTag, videoSource, videoFormat, resolution, languageSuffix, blacklist, customBlacklist
+      };
+
+      cleaners[strict ? 1 : 0] = new TokenCleaner(stoplist, cleanlist, strict);
     }
+    return cleaners;
+  }
+
+  public static String extractName(String item, boolean strict) {
+    checkCustomBlacklist();
+    TokenCleaner cleaner = CleanerHolder.cleaners[strict ? 1 : 0];
 
     String output = item;
     //
-    output = strict ? clean(output, stoplist) : substringBefore(output, stoplist);
-    // let's clean it
-    output = clean(output, cleanlist);
+    output = cleaner.clean(output, true);
     // remove year
     Integer year = extractYear(item);
     if (year != null && output.length() > 7 && year > 0) {
@@ -113,111 +133,176 @@ public class NameCleaner {
       }
     }
     //reclean to be sure ;)
-    output = clean(output, cleanlist);
+    output = cleaner.clean(output, false);
 
     return output.trim();
   }
 
   public static Integer extractYear(String item) {
-    Matcher matcher = yearPattern.matcher(item);
     Integer year = null;
 
     if (FileUtils.getNameWithoutExtension(item).trim().length() <= 4) {
       return year;
     }
 
-    while (matcher.find()) {
-      // assuming year is the last ;)
-      String syear = matcher.group(1);
-      int found = Integer.parseInt(syear);
-      if (found >= 1900 && found <= Calendar.getInstance().get(Calendar.YEAR)) {
-        year = found;
+    // last 4 digits of each number followed by something else
+    int currentYear = Calendar.getInstance().get(Calendar.YEAR);
+    int length = item.length();
+    int digits = 0;
+    for (int i = 0; i < length; i++) {
+      char c = item.charAt(i);
+      if (c >= '0' && c <= '9') {
+        digits++;
+        continue;
       }
+
+      if (digits >= 4) {
+        int found = Integer.parseInt(item.substring(i - 4, i));
+        // assuming year is the last ;)
+        if (found >= 1900 && found <= currentYear) {
+          year = found;
+        }
+      }
+      digits = 0;
     }
     return year;
   }
 
-  private static Pattern getBracketPattern(boolean strict) {
+  private static Pass getBracketPattern(boolean strict) {
     // match patterns like [Action, Drama] or {ENG-XViD-MP3-DVDRiP} etc
-    String contentFilter = strict ? "[\\p{Space}\\p{Punct}&&[^\\[\\]]]" : "\\p{Alpha}";
-    return Pattern.compile("(?:\\[([^\\[\\]]+?" + contentFilter + "[^\\[\\]]+?)\\])|(?:\\{([^\\{\\}]+?" + contentFilter + "[^\\{\\}]+?)\\})|(?:\\(([^\\(\\)]+?" + contentFilter + "[^\\(\\)]+?)\\))");
+    return new Brackets(strict);
   }
 
-  private static Pattern getReleaseGroupPattern(boolean strict) {
+  private static Pass getReleaseGroupPattern(boolean strict) {
     // pattern matching any release group name enclosed in separators
     String pattern = getCleanerProperty("releaseGroup");
-    return Pattern.compile("(?<!\\p{Alnum})(" + pattern + ")(?!\\p{Alnum})", strict ? 0 : Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+    return new Dictionary(TokenCleaner.expand(pattern), Boundary.WORD, !strict);
   }
 
-  private static Pattern getLanguageTagPattern(Collection<String> languages) {
+  private static Pass getLanguageTagPattern(Collection<String> languages) {
     // [en]
-    return compile("(?<=[-\\[{(])(" + StringUtils.join(quote(languages), "|") + ")(?=\\p{Punct})", CASE_INSENSITIVE | UNICODE_CASE);
+    return new Dictionary(languages, Boundary.TAG, true);
   }
 
-  private static Pattern getLanguageSuffixPattern(Collection<String> languages) {
+  private static Pass getLanguageSuffixPattern(Collection<String> languages) {
     // .en.srt
-    return compile("(?<=[\\p{Punct}\\p{Space}])(" + StringUtils.join(quote(languages), "|") + ")(?=[._ ]*$)", CASE_INSENSITIVE | UNICODE_CASE);
+    return new Dictionary(languages, Boundary.SUFFIX, true);
   }
 
-  private static Pattern getVideoSourcePattern() {
+  private static Pass getVideoSourcePattern() {
     // pattern matching any video source name
     String pattern = getCleanerProperty("video.source");
-    return Pattern.compile("(?<!\\p{Alnum})(" + pattern + ")(?!\\p{Alnum})", Pattern.CASE_INSENSITIVE);
+    return new Dictionary(TokenCleaner.expand(pattern), Boundary.WORD, true);
   }
 
-  private static Pattern getVideoFormatPattern() {
+  private static Pass getVideoFormatPattern() {
     // pattern matching any video source name
     String pattern = getCleanerProperty("video.format");
-    return Pattern.compile("(?<!\\p{Alnum})(" + pattern + ")(?!\\p{Alnum})", Pattern.CASE_INSENSITIVE);
+    return new Dictionary(TokenCleaner.expand(pattern), Boundary.WORD, true);
   }
 
-  private static Pattern getResolutionPattern() {
+  private static Pass getResolutionPattern() {
     // match screen resolutions 640x480, 1280x720, etc
-    return Pattern.compile("(?<!\\p{Alnum})(\\d{4}|[6-9]\\d{2})x(\\d{4}|[4-9]\\d{2})(?!\\p{Alnum})");
+    return new Resolution();
   }
 
-  private static Pattern getBlacklistPattern() {
+  private static Pass getBlacklistPattern() {
     // pattern matching any blacklist word enclosed in separators
     String pattern = getCleanerProperty("blacklist");
-    return Pattern.compile("(?<!\\p{Alnum})(" + pattern + ")(?!\\p{Alnum})", Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+    return new Dictionary(TokenCleaner.expand(pattern), Boundary.WORD, true);
   }
 
-  private static Pattern getCustomBlacklistPattern() {
+  private static Pass getCustomBlacklistPattern(Collection<String> words) {
     // pattern matching any 'custom' blacklist word enclosed in separators
-    // TODO parse custom file for blacklist word
-    String pattern = "";
-    return Pattern.compile("(?<!\\p{Alnum})(" + pattern + ")(?!\\p{Alnum})", Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+    List<String> patterns = new ArrayList<String>();
+    for (String word : words) {
+      patterns.addAll(TokenCleaner.expand(word));
+    }
+    return new Dictionary(patterns, Boundary.WORD, true);
   }
 
-  private static Pattern getExtensionPattern() {
-    // pattern matching any blacklist word enclosed in separators
+  /**
+   * Replace custom blacklist, names being cleaned meanwhile use either the
+   * previous or the new one
+   *
+   * @param words Blacklist words, same syntax as in NameCleaner.properties
+   * @throws IllegalArgumentException If a word has an unsupported pattern
+   */
+  public static void setCustomBlacklist(Collection<String> words) {
+    customBlacklist.set(getCustomBlacklistPattern(words));
+  }
+
+  private static Pass getExtensionPattern() {
+    // pattern matching any file extension at the end
     String pattern = getCleanerProperty("file.extension");
-    return Pattern.compile("(\\.(" + pattern + "))$", Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+    return new Dictionary(TokenCleaner.expand(pattern), Boundary.EXTENSION, true);
   }
 
-  private static Collection<String> quote(Collection<String> strings) {
-    List<String> patterns = new ArrayList<String>(strings.size());
-    for (String it : strings) {
-      patterns.add(Pattern.quote(it));
+  /**
+   * Reload custom blacklist file (conf/blacklist.txt in application folder) if
+   * it was modified, created or removed since last check
+   */
+  private static void checkCustomBlacklist() {
+    long now = System.currentTimeMillis();
+    long check = customBlacklistCheck.get();
+    // only one thread checks file
+    if (now < check || !customBlacklistCheck.compareAndSet(check, now + CUSTOM_BLACKLIST_CHECK)) {
+      return;
+    }
+
+    File file = new File(new File(Settings.appFolder, "conf"), CUSTOM_BLACKLIST_FILE);
+    long modified = file.lastModified();
+    long length = file.length();
+    // file is read again on next check if it failed
+    if ((modified != customBlacklistModified || length != customBlacklistLength) && loadCustomBlacklist(file)) {
+      customBlacklistModified = modified;
+      customBlacklistLength = length;
     }
-    return patterns;
   }
 
-  private static String substringBefore(String item, Pattern... stopwords) {
-    for (Pattern it : stopwords) {
-      Matcher matcher = it.matcher(item);
-      if (matcher.find()) {
-        String substring = item.substring(0, matcher.start()); // use substring before the matched stopword
-        if (StringUtils.removePunctuation(substring).length() >= 3) {
-          item = substring;
+  /**
+   * Load custom blacklist file, one word per line (same syntax as in
+   * NameCleaner.properties), lines starting with # are comments
+   *
+   * @param file Blacklist file, blacklist is cleared if it does not exist
+   * @return False if file could not be read, blacklist is not changed
+   */
+  static boolean loadCustomBlacklist(File file) {
+    List<String> words = new ArrayList<String>();
+    if (file.isFile()) {
+      try {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try {
+          String line;
+          while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (line.length() == 0 || line.startsWith("#")) {
+              continue;
+            }
+
+            try {
+              TokenCleaner.expand(line);
+              words.add(line);
+            } catch (IllegalArgumentException ex) {
+              Settings.LOGGER.log(Level.WARNING, String.format("Ignore custom blacklist word '%s' : %s", line, ex.getMessage()));
+            }
+          }
+        } finally {
+          reader.close();
         }
+      } catch (IOException ex) {
+        Settings.LOGGER.log(Level.WARNING, String.format("Failed to read custom blacklist %s : %s", file, ex.getMessage()));
+        return false;
       }
     }
-    return item;
+
+    Settings.LOGGER.log(Level.INFO, String.format("Load %d custom blacklist words from %s", words.size(), file));
+    setCustomBlacklist(words);
+    return true;
   }
 
   public static String getCleanerProperty(String key) {
-    return ResourceBundle.getBundle(NameCleaner.class.getName(), Locale.ROOT).getString(key);
+    return PropertiesHolder.properties.getString(key);
   }
 
   private NameCleaner() {
@@ -0,0 +1,794 @@
+/*
+ * movie-renamer-core
+ * Copyright (C) 2012-2013 Nicolas Magré
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.free.movierenamer.renamer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicReference;
+
+import fr.free.movierenamer.utils.StringUtils;
+
+/**
+ * Class TokenCleaner, name is split once in words (ascii letters and digits)
+ * and separators, words are then looked up in hashed dictionaries instead of
+ * trying a huge regex alternation at each char
+ *
+ * Dictionaries are built from the cleaner properties, only a few regex
+ * constructs are supported : [abc], [a-z], \d, ?, [0-9]+, ^, $ and .
+ *
+ * @author Nicolas Magré
+ */
+final class TokenCleaner {
+
+  // markers of expanded patterns, private use chars
+  private static final char ANY = '\uE000';
+  private static final char NUMBER = '\uE001';
+  private static final char BEGIN = '\uE002';
+  private static final char END = '\uE003';
+  // "." matching a letter or a digit
+  private static final char ANY_CHAR = '\uE004';
+  private final Pass[] stoplist;
+  private final Pass[] cleanlist;
+  private final boolean strict;
+
+  TokenCleaner(Pass[] stoplist, Pass[] cleanlist, boolean strict) {
+    this.stoplist = stoplist;
+    this.cleanlist = cleanlist;
+    this.strict = strict;
+  }
+
+  /**
+   * Remove clean list words and punctuation
+   *
+   * @param item
+   * @param stop Remove stop list words before (strict) or keep only what is
+   * before them
+   * @return Cleaned item
+   */
+  String clean(String item, boolean stop) {
+    List<Token> tokens = tokenize(item);
+    if (stop) {
+      if (strict) {
+        for (Pass pass : stoplist) {
+          tokens = pass.remove(tokens);
+        }
+        tokens = tokenize(StringUtils.removePunctuation(toString(tokens)));
+      } else {
+        tokens = substringBefore(tokens);
+      }
+    }
+
+    for (Pass pass : cleanlist) {
+      tokens = pass.remove(tokens);
+    }
+    return StringUtils.removePunctuation(toString(tokens));
+  }
+
+  private List<Token> substringBefore(List<Token> tokens) {
+    for (Pass pass : stoplist) {
+      int index = pass.next(tokens, 0, new int[2]);
+      if (index >= 0) {
+        // use tokens before the matched stopword
+        List<Token> prefix = tokens.subList(0, index);
+        if (StringUtils.removePunctuation(toString(prefix)).length() >= 3) {
+          tokens = new ArrayList<Token>(prefix);
+        }
+      }
+    }
+    return tokens;
+  }
+
+  static List<Token> tokenize(String item) {
+    return tokenize(item, false);
+  }
+
+  /**
+   * @param item
+   * @param pattern Wildcards of expanded patterns are word chars
+   * @return Words and separators
+   */
+  private static List<Token> tokenize(String item, boolean pattern) {
+    int length = item.length();
+    List<Token> tokens = new ArrayList<Token>(length / 2 + 1);
+    int start = 0;
+    while (start < length) {
+      int end = start + 1;
+      boolean word = isWordChar(item.charAt(start), pattern);
+      if (word) {
+        while (end < length && isWordChar(item.charAt(end), pattern)) {
+          end++;
+        }
+      } else {
+        end = start + Character.charCount(item.codePointAt(start));
+      }
+      tokens.add(new Token(item.substring(start, end), word));
+      start = end;
+    }
+    return tokens;
+  }
+
+  static String toString(List<Token> tokens) {
+    StringBuilder sb = new StringBuilder();
+    for (Token token : tokens) {
+      sb.append(token.text);
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Expand a pattern alternation to the strings it matches, with markers for
+   * anchors and wildcards
+   *
+   * @param pattern
+   * @return Strings in alternation order
+   */
+  static List<String> expand(String pattern) {
+    List<String> result = new ArrayList<String>();
+    for (String alternative : pattern.split("\\|")) {
+      List<String> strings = Collections.singletonList("");
+      int length = alternative.length();
+      int i = 0;
+      while (i < length) {
+        char c = alternative.charAt(i++);
+        List<String> options = new ArrayList<String>();
+        switch (c) {
+          case '\\':
+            if (i >= length) {
+              throw new IllegalArgumentException("Unsupported pattern : " + alternative);
+            }
+            c = alternative.charAt(i++);
+            if (c == 'd') {
+              addRange(options, '0', '9');
+            } else if (isAlnum(c)) {
+              throw new IllegalArgumentException("Unsupported pattern : " + alternative);
+            } else {
+              options.add(String.valueOf(c));
+            }
+            break;
+          case '[':
+            int close = alternative.indexOf(']', i);
+            if (close <= i || alternative.charAt(i) == '^') {
+              throw new IllegalArgumentException("Unsupported pattern : " + alternative);
+            }
+            for (int j = i; j < close; j++) {
+              if (j + 2 < close && alternative.charAt(j + 1) == '-') {
+                addRange(options, alternative.charAt(j), alternative.charAt(j + 2));
+                j += 2;
+              } else {
+                options.add(String.valueOf(alternative.charAt(j)));
+              }
+            }
+            i = close + 1;
+            break;
+          case '.':
+            options.add(String.valueOf(ANY));
+            break;
+          case '^':
+            if (i != 1) {
+              throw new IllegalArgumentException("Unsupported pattern : " + alternative);
+            }
+            options.add(String.valueOf(BEGIN));
+            break;
+          case '$':
+            if (i != length) {
+              throw new IllegalArgumentException("Unsupported pattern : " + alternative);
+            }
+            options.add(String.valueOf(END));
+            break;
+          case '(':
+          case ')':
+          case '{':
+          case '}':
+          case '*':
+          case '+':
+          case '?':
+            throw new IllegalArgumentException("Unsupported pattern : " + alternative);
+          default:
+            options.add(String.valueOf(c));
+        }
+
+        if (i < length && alternative.charAt(i) == '?') {
+          // greedy, try with the atom first
+          options.add("");
+          i++;
+        } else if (i < length && alternative.charAt(i) == '+') {
+          List<String> digits = new ArrayList<String>();
+          addRange(digits, '0', '9');
+          if (!options.equals(digits)) {
+            throw new IllegalArgumentException("Unsupported pattern : " + alternative);
+          }
+          options = Collections.singletonList(String.valueOf(NUMBER));
+          i++;
+        }
+
+        List<String> product = new ArrayList<String>(strings.size() * options.size());
+        for (String string : strings) {
+          for (String option : options) {
+            product.add(string + option);
+          }
+        }
+        strings = product;
+      }
+
+      for (String string : strings) {
+        if (string.length() > 0) {
+          result.add(string);
+        }
+      }
+    }
+    return result;
+  }
+
+  private static void addRange(List<String> options, char from, char to) {
+    for (char c = from; c <= to; c++) {
+      options.add(String.valueOf(c));
+    }
+  }
+
+  static boolean isAlnum(char c) {
+    return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+  }
+
+  private static boolean isWordChar(char c, boolean pattern) {
+    return isAlnum(c) || (pattern && (c == ANY_CHAR || c == NUMBER));
+  }
+
+  static boolean isPunct(char c) {
+    return (c >= '!' && c <= '/') || (c >= ':' && c <= '@') || (c >= '[' && c <= '`') || (c >= '{' && c <= '~');
+  }
+
+  static boolean isSpace(char c) {
+    return c == ' ' || (c >= '\t' && c <= '\r');
+  }
+
+  private static boolean isSeparator(Token token, char c) {
+    return !token.word && token.text.length() == 1 && token.text.charAt(0) == c;
+  }
+
+  private static boolean isLineTerminator(Token token) {
+    if (token.word || token.text.length() != 1) {
+      return false;
+    }
+    char c = token.text.charAt(0);
+    return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+  }
+
+  /**
+   * Same as regex "$" : end of tokens or before a final line terminator
+   */
+  private static boolean isEnd(List<Token> tokens, int index) {
+    int size = tokens.size();
+    return index == size || (index == size - 1 && isLineTerminator(tokens.get(index)))
+            || (index == size - 2 && isSeparator(tokens.get(index), '\r') && isSeparator(tokens.get(index + 1), '\n'));
+  }
+
+  static final class Token {
+
+    final String text;
+    // lower case text, for case insensitive lookup
+    final String key;
+    final boolean word;
+
+    Token(String text, boolean word) {
+      this.text = text;
+      this.word = word;
+      if (word) {
+        key = text.toLowerCase(Locale.ROOT);
+      } else {
+        int c = text.codePointAt(0);
+        key = new String(Character.toChars(Character.toLowerCase(Character.toUpperCase(c))));
+      }
+    }
+
+    @Override
+    public String toString() {
+      return text;
+    }
+  }
+
+  /**
+   * Class Pass, one clean step over tokens
+   */
+  abstract static class Pass {
+
+    /**
+     * Find next match
+     *
+     * @param tokens
+     * @param from First token index
+     * @param match Receives matched tokens range
+     * @return Match start or -1
+     */
+    abstract int next(List<Token> tokens, int from, int[] match);
+
+    /**
+     * Remove all matches, words around a removed match are joined
+     *
+     * @param tokens
+     * @return Remaining tokens
+     */
+    List<Token> remove(List<Token> tokens) {
+      List<Token> result = null;
+      int[] match = new int[2];
+      int from = 0;
+      while (from < tokens.size() && next(tokens, from, match) >= 0) {
+        if (result == null) {
+          result = new ArrayList<Token>(tokens.size());
+        }
+        append(result, tokens, from, match[0]);
+        from = Math.max(match[1], match[0] + 1);
+      }
+
+      if (result == null) {
+        return tokens;
+      }
+      append(result, tokens, from, tokens.size());
+      return result;
+    }
+
+    private static void append(List<Token> result, List<Token> tokens, int from, int to) {
+      for (int i = from; i < to; i++) {
+        Token token = tokens.get(i);
+        int last = result.size() - 1;
+        if (token.word && last >= 0 && result.get(last).word) {
+          result.set(last, new Token(result.get(last).text + token.text, true));
+        } else {
+          result.add(token);
+        }
+      }
+    }
+  }
+
+  /**
+   * Class Reloadable, pass which can be replaced while cleaners are in use
+   */
+  static final class Reloadable extends Pass {
+
+    private final AtomicReference<Pass> pass;
+
+    Reloadable(Pass pass) {
+      this.pass = new AtomicReference<Pass>(pass);
+    }
+
+    void set(Pass pass) {
+      this.pass.set(pass);
+    }
+
+    @Override
+    int next(List<Token> tokens, int from, int[] match) {
+      return pass.get().next(tokens, from, match);
+    }
+
+    @Override
+    List<Token> remove(List<Token> tokens) {
+      // same pass for all matches
+      return pass.get().remove(tokens);
+    }
+  }
+
+  enum Boundary {
+
+    // not enclosed in letters or digits
+    WORD,
+    // after a dot, at the end
+    EXTENSION,
+    // after "-[{(", before a punctuation
+    TAG,
+    // after a punctuation or a space, before "._ " and the end
+    SUFFIX
+  }
+
+  /**
+   * Class Dictionary, matches any of the given strings, entries are hashed by
+   * their first token, or by the first letters of their first word when it has
+   * wildcards
+   */
+  static final class Dictionary extends Pass {
+
+    private static final byte WORD = 0;
+    private static final byte WORD_PATTERN = 1;
+    private static final byte SEPARATOR = 2;
+    private static final byte ANY_SEPARATOR = 3;
+    private final Map<String, List<Entry>> entries = new HashMap<String, List<Entry>>();
+    private final Map<String, List<Entry>> prefixes = new HashMap<String, List<Entry>>();
+    private final SortedSet<Integer> prefixLengths = new TreeSet<Integer>();
+    private final List<Entry> words = new ArrayList<Entry>();
+    private final List<Entry> separators = new ArrayList<Entry>();
+    private final Boundary boundary;
+    private final boolean ignoreCase;
+
+    /**
+     * @param strings Strings to match, in priority order, see
+     * {@link TokenCleaner#expand(String)} for markers
+     * @param boundary
+     * @param ignoreCase
+     */
+    Dictionary(Collection<String> strings, Boundary boundary, boolean ignoreCase) {
+      this.boundary = boundary;
+      this.ignoreCase = ignoreCase;
+      int index = 0;
+      for (String string : strings) {
+        // "." matches a separator or a char inside a word
+        for (String variant : getVariants(string)) {
+          Entry entry = new Entry(index, variant);
+          if (entry.types.length > 0) {
+            add(entry);
+          }
+        }
+        index++;
+      }
+    }
+
+    private static List<String> getVariants(String string) {
+      List<String> variants = Collections.singletonList(string);
+      int index = string.indexOf(ANY);
+      while (index >= 0) {
+        List<String> product = new ArrayList<String>(variants.size() * 2);
+        for (String variant : variants) {
+          product.add(variant);
+          product.add(variant.substring(0, index) + ANY_CHAR + variant.substring(index + 1));
+        }
+        variants = product;
+        index = string.indexOf(ANY, index + 1);
+      }
+      return variants;
+    }
+
+    private void add(Entry entry) {
+      switch (entry.types[0]) {
+        case ANY_SEPARATOR:
+          separators.add(entry);
+          break;
+        case WORD_PATTERN:
+          String prefix = entry.values[0].substring(0, getPrefixLength(entry.values[0]));
+          if (prefix.length() == 0) {
+            words.add(entry);
+          } else {
+            getBucket(prefixes, prefix).add(entry);
+            prefixLengths.add(prefix.length());
+          }
+          break;
+        default:
+          getBucket(entries, entry.values[0]).add(entry);
+      }
+    }
+
+    private static List<Entry> getBucket(Map<String, List<Entry>> map, String key) {
+      List<Entry> bucket = map.get(key);
+      if (bucket == null) {
+        bucket = new ArrayList<Entry>(1);
+        map.put(key, bucket);
+      }
+      return bucket;
+    }
+
+    private static int getPrefixLength(String pattern) {
+      for (int i = 0; i < pattern.length(); i++) {
+        if (pattern.charAt(i) == ANY_CHAR || pattern.charAt(i) == NUMBER) {
+          return i;
+        }
+      }
+      return pattern.length();
+    }
+
+    @Override
+    int next(List<Token> tokens, int from, int[] match) {
+      int size = tokens.size();
+      List<Entry> candidates = new ArrayList<Entry>();
+      for (int index = Math.max(from, boundary == Boundary.EXTENSION ? 1 : 0); index < size; index++) {
+        Token token = tokens.get(index);
+        if (!isBefore(tokens, index)) {
+          continue;
+        }
+
+        if (!getCandidates(token, candidates)) {
+          continue;
+        }
+
+        int start = (boundary == Boundary.EXTENSION) ? index - 1 : index;
+        for (Entry entry : candidates) {
+          if (entry.begin && start != 0) {
+            continue;
+          }
+          int end = match(entry, tokens, index);
+          if (end >= 0) {
+            match[0] = start;
+            match[1] = end;
+            return start;
+          }
+        }
+      }
+      return -1;
+    }
+
+    /**
+     * Get entries which may start at token
+     *
+     * @param token
+     * @param candidates Receives entries in pattern order
+     * @return False if there is none
+     */
+    private boolean getCandidates(Token token, List<Entry> candidates) {
+      candidates.clear();
+      String key = ignoreCase ? token.key : token.text;
+      int buckets = addAll(candidates, entries.get(key));
+      if (token.word) {
+        for (int length : prefixLengths) {
+          if (length >= key.length()) {
+            break;
+          }
+          buckets += addAll(candidates, prefixes.get(key.substring(0, length)));
+        }
+        buckets += addAll(candidates, words);
+      } else if (!isLineTerminator(token)) {
+        buckets += addAll(candidates, separators);
+      }
+
+      if (buckets > 1) {
+        Collections.sort(candidates);
+      }
+      return buckets > 0;
+    }
+
+    private static int addAll(List<Entry> candidates, List<Entry> bucket) {
+      if (bucket == null || bucket.isEmpty()) {
+        return 0;
+      }
+      candidates.addAll(bucket);
+      return 1;
+    }
+
+    private boolean isBefore(List<Token> tokens, int index) {
+      Token previous = (index > 0) ? tokens.get(index - 1) : null;
+      switch (boundary) {
+        case WORD:
+          return previous == null || !previous.word;
+        case EXTENSION:
+          return isSeparator(previous, '.');
+        case TAG:
+          return previous != null && (isSeparator(previous, '-') || isSeparator(previous, '[') || isSeparator(previous, '{') || isSeparator(previous, '('));
+        case SUFFIX:
+          return previous != null && !previous.word && previous.text.length() == 1 && (isPunct(previous.text.charAt(0)) || isSpace(previous.text.charAt(0)));
+        default:
+          return false;
+      }
+    }
+
+    private boolean isAfter(List<Token> tokens, int index) {
+      Token next = (index < tokens.size()) ? tokens.get(index) : null;
+      switch (boundary) {
+        case WORD:
+          return next == null || !next.word;
+        case EXTENSION:
+          return isEnd(tokens, index);
+        case TAG:
+          return next != null && !next.word && next.text.length() == 1 && isPunct(next.text.charAt(0));
+        case SUFFIX:
+          while (index < tokens.size() && (isSeparator(tokens.get(index), '.') || isSeparator(tokens.get(index), '_') || isSeparator(tokens.get(index), ' '))) {
+            index++;
+          }
+          return isEnd(tokens, index);
+        default:
+          return false;
+      }
+    }
+
+    private int match(Entry entry, List<Token> tokens, int index) {
+      for (int i = 0; i < entry.types.length; i++, index++) {
+        if (index >= tokens.size()) {
+          return -1;
+        }
+
+        Token token = tokens.get(index);
+        String text = ignoreCase ? token.key : token.text;
+        switch (entry.types[i]) {
+          case WORD:
+            if (!token.word || !entry.values[i].equals(text)) {
+              return -1;
+            }
+            break;
+          case WORD_PATTERN:
+            if (!token.word || !matches(entry.values[i], 0, text, 0)) {
+              return -1;
+            }
+            break;
+          case SEPARATOR:
+            if (token.word || !entry.values[i].equals(text)) {
+              return -1;
+            }
+            break;
+          case ANY_SEPARATOR:
+            if (token.word || isLineTerminator(token)) {
+              return -1;
+            }
+            break;
+        }
+      }
+
+      if (entry.end && !isEnd(tokens, index)) {
+        return -1;
+      }
+      return isAfter(tokens, index) ? index : -1;
+    }
+
+    private static boolean matches(String pattern, int i, String text, int j) {
+      for (; i < pattern.length(); i++, j++) {
+        char c = pattern.charAt(i);
+        if (c == NUMBER) {
+          // one digit or more, try longest first
+          int end = j;
+          while (end < text.length() && text.charAt(end) >= '0' && text.charAt(end) <= '9') {
+            end++;
+          }
+          for (; end > j; end--) {
+            if (matches(pattern, i + 1, text, end)) {
+              return true;
+            }
+          }
+          return false;
+        }
+        if (j >= text.length() || (c != ANY_CHAR && c != text.charAt(j))) {
+          return false;
+        }
+      }
+      return j == text.length();
+    }
+
+    private final class Entry implements Comparable<Entry> {
+
+      // position in pattern
+      final int index;
+      final boolean begin;
+      final boolean end;
+      final byte[] types;
+      final String[] values;
+
+      Entry(int index, String string) {
+        this.index = index;
+        List<Token> tokens = tokenize(string, true);
+        begin = !tokens.isEmpty() && isSeparator(tokens.get(0), BEGIN);
+        end = !tokens.isEmpty() && isSeparator(tokens.get(tokens.size() - 1), END);
+        tokens = tokens.subList(begin ? 1 : 0, Math.max(begin ? 1 : 0, tokens.size() - (end ? 1 : 0)));
+        types = new byte[tokens.size()];
+        values = new String[tokens.size()];
+        for (int i = 0; i < types.length; i++) {
+          Token token = tokens.get(i);
+          values[i] = ignoreCase ? token.key : token.text;
+          if (isSeparator(token, ANY)) {
+            types[i] = ANY_SEPARATOR;
+          } else if (token.word) {
+            types[i] = (getPrefixLength(values[i]) < values[i].length()) ? WORD_PATTERN : WORD;
+          } else {
+            types[i] = SEPARATOR;
+          }
+        }
+      }
+
+      @Override
+      public int compareTo(Entry entry) {
+        return (index < entry.index) ? -1 : (index == entry.index ? 0 : 1);
+      }
+    }
+  }
+
+  /**
+   * Class Resolution, matches screen resolutions 640x480, 1280x720, etc
+   */
+  static final class Resolution extends Pass {
+
+    @Override
+    int next(List<Token> tokens, int from, int[] match) {
+      for (int index = from; index < tokens.size(); index++) {
+        Token token = tokens.get(index);
+        if (token.word && isResolution(token.text)) {
+          match[0] = index;
+          match[1] = index + 1;
+          return index;
+        }
+      }
+      return -1;
+    }
+
+    private static boolean isResolution(String text) {
+      int x = text.indexOf('x');
+      return x > 0 && isDimension(text, 0, x, '6') && isDimension(text, x + 1, text.length(), '4');
+    }
+
+    private static boolean isDimension(String text, int from, int to, char min) {
+      // four digits or three digits from min
+      if (to - from != 4 && (to - from != 3 || text.charAt(from) < min)) {
+        return false;
+      }
+      for (int i = from; i < to; i++) {
+        if (text.charAt(i) < '0' || text.charAt(i) > '9') {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  /**
+   * Class Brackets, matches patterns like [Action, Drama] or
+   * {ENG-XViD-MP3-DVDRiP} etc
+   */
+  static final class Brackets extends Pass {
+
+    private final boolean strict;
+
+    /**
+     * @param strict Content must have a space or a punctuation inside,
+     * otherwise a letter
+     */
+    Brackets(boolean strict) {
+      this.strict = strict;
+    }
+
+    @Override
+    int next(List<Token> tokens, int from, int[] match) {
+      int size = tokens.size();
+      for (int open = from; open < size; open++) {
+        Token token = tokens.get(open);
+        char c = token.text.charAt(0);
+        if (token.word || (c != '[' && c != '{' && c != '(')) {
+          continue;
+        }
+
+        // content ends at the first closing bracket and can not contain an opening one
+        char closing = (c == '[') ? ']' : (c == '{') ? '}' : ')';
+        int close = open + 1;
+        while (close < size && !isSeparator(tokens.get(close), c) && !isSeparator(tokens.get(close), closing)) {
+          close++;
+        }
+        if (close < size && isSeparator(tokens.get(close), closing) && accept(tokens, open + 1, close)) {
+          match[0] = open;
+          match[1] = close + 1;
+          return open;
+        }
+      }
+      return -1;
+    }
+
+    private boolean accept(List<Token> tokens, int from, int to) {
+      int length = 0;
+      for (int i = from; i < to; i++) {
+        length += tokens.get(i).text.length();
+      }
+
+      // only chars inside content count
+      int position = 0;
+      for (int i = from; i < to; i++) {
+        String text = tokens.get(i).text;
+        for (int j = 0; j < text.length(); j++, position++) {
+          char c = text.charAt(j);
+          if (position > 0 && position < length - 1 && (strict ? isSpace(c) || (isPunct(c) && c != '[' && c != ']') : isAlnum(c) && !(c >= '0' && c <= '9'))) {
+            return true;
+          }
+        }
+      }
+      return false;
+    }
+  }
+}
@@ -0,0 +1,36 @@
+/*
+ * movie-renamer-core
+ * Copyright (C) 2012-2013 Nicolas Magré
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.free.movierenamer.scrapper;
+
+/**
+ * Interface BulkCallback, receives results of bulk lookups as soon as they
+ * are available
+ *
+ * Methods are called from scrapper threads, at the same time for different
+ * keys.
+ *
+ * @param <K> Lookup key (query, search result)
+ * @param <V> Lookup result
+ * @author Nicolas Magré
+ */
+public interface BulkCallback<K, V> {
+
+  public void onResult(K key, V result);
+
+  public void onError(K key, Exception error);
+}
@@ -0,0 +1,102 @@
+/*
+ * movie-renamer-core
+ * Copyright (C) 2012-2013 Nicolas Magré
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.free.movierenamer.scrapper;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+
+import fr.free.movierenamer.settings.Settings;
+
+/**
+ * Class BulkLookup, run a lookup on many keys : duplicates are removed, cache
+ * is checked for all keys first, then misses are loaded by the bulk executor
+ *
+ * @param <K> Lookup key
+ * @param <V> Lookup result
+ * @author Nicolas Magré
+ */
+abstract class BulkLookup<K, V> {
+
+  /**
+   * @param key
+   * @return Cached value or null
+   */
+  protected abstract V getCached(K key);
+
+  protected abstract V load(K key) throws Exception;
+
+  /**
+   * Run lookup, returns when all results are given to callback
+   *
+   * @param keys
+   * @param callback
+   * @return Number of keys looked up (without duplicates)
+   * @throws InterruptedException
+   */
+  public final int execute(Collection<? extends K> keys, final BulkCallback<K, V> callback) throws InterruptedException {
+    Collection<K> uniqueKeys = new LinkedHashSet<K>(keys);
+    List<K> misses = new ArrayList<K>();
+    for (K key : uniqueKeys) {
+      V cached = getCached(key);
+      if (cached != null) {
+        callback.onResult(key, cached);
+      } else {
+        misses.add(key);
+      }
+    }
+    Settings.LOGGER.log(Level.INFO, String.format("Bulk lookup of %d keys, %d found in cache", uniqueKeys.size(), uniqueKeys.size() - misses.size()));
+
+    List<Future<?>> futures = new ArrayList<Future<?>>(misses.size());
+    try {
+      for (final K key : misses) {
+        futures.add(ScrapperManager.getBulkExecutor().submit(new Runnable() {
+          @Override
+          public void run() {
+            V value;
+            try {
+              value = load(key);
+            } catch (Exception ex) {
+              callback.onError(key, ex);
+              return;
+            }
+            callback.onResult(key, value);
+          }
+        }));
+      }
+
+      for (Future<?> future : futures) {
+        try {
+          future.get();
+        } catch (ExecutionException ex) {
+          Settings.LOGGER.log(Level.WARNING, String.format("Bulk lookup callback failed : %s", ex.getCause()), ex.getCause());
+        }
+      }
+    } finally {
+      // interrupted, do not load the remaining keys
+      for (Future<?> future : futures) {
+        future.cancel(false);
+      }
+    }
+    return uniqueKeys.size();
+  }
+}
@@ -0,0 +1,175 @@
+/*
+ * movie-renamer-core
+ * Copyright (C) 2012-2013 Nicolas Magré
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.free.movierenamer.scrapper;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.logging.Level;
+
+import fr.free.movierenamer.info.FileInfo;
+import fr.free.movierenamer.searchinfo.Media;
+import fr.free.movierenamer.settings.Settings;
+import fr.free.movierenamer.utils.ImageStore;
+import fr.free.movierenamer.utils.Sorter;
+
+/**
+ * Class MediaPrefetcher, fill scrapper cache for a file list in background
+ *
+ * For each file, the name extracted from file name is searched, results are
+ * sorted with search sorter, then info of the first result and thumbnails of
+ * all results are fetched, like an interactive search does. Files are prefetched by the low priority prefetch executor, one after
+ * another in list order.
+ *
+ * @author Nicolas Magré
+ */
+public final class MediaPrefetcher {
+
+  private final List<Future<?>> tasks = new ArrayList<Future<?>>();
+  private volatile boolean cancelled;
+
+  /**
+   * Prefetch files in background
+   *
+   * @param files
+   * @param movieScrapper Scrapper used for movie files
+   * @param tvShowScrapper Scrapper used for tv show files
+   * @return Prefetcher, can be cancelled
+   */
+  public static MediaPrefetcher prefetch(Collection<FileInfo> files, MovieScrapper movieScrapper, TvShowScrapper tvShowScrapper) {
+    ExecutorService executor = ScrapperManager.getPrefetchExecutor();
+    final MediaPrefetcher prefetcher = new MediaPrefetcher();
+    for (FileInfo file : files) {
+      final String search = file.getSearch();
+      if (search == null || search.length() == 0) {
+        continue;
+      }
+      final int year = file.getYear();
+
+      final MediaScrapper<?, ?> scrapper = (file.getType() == FileInfo.MediaType.TVSHOW) ? tvShowScrapper : movieScrapper;
+      try {
+        prefetcher.tasks.add(executor.submit(new Runnable() {
+          @Override
+          public void run() {
+            try {
+              prefetcher.prefetch(scrapper, search, year);
+            } catch (Exception ex) {
+              Settings.LOGGER.log(Level.FINE, String.format("'%s' failed to prefetch '%s' : %s", scrapper.getName(), search, ex));
+            }
+          }
+        }));
+      } catch (RejectedExecutionException ex) {
+        Settings.LOGGER.log(Level.WARNING, String.format("Prefetch rejected : %s", ex.getMessage()));
+        break;
+      }
+    }
+    return prefetcher;
+  }
+
+  private <M extends Media> void prefetch(MediaScrapper<M, ?> scrapper, String search, int year) throws Exception {
+    if (cancelled) {
+      return;
+    }
+
+    List<M> results = scrapper.search(search);
+    if (results.isEmpty() || cancelled) {
+      return;
+    }
+
+    // same first result as search result list
+    List<SortedMedia> sorted = new ArrayList<SortedMedia>();
+    for (M media : results) {
+      sorted.add(new SortedMedia(media));
+    }
+    Sorter.sort(sorted, Settings.getInstance().getSearchSorter(), year, search);
+
+    @SuppressWarnings("unchecked")
+    M media = (M) sorted.get(0).media;
+    scrapper.getInfo(media);
+    for (SortedMedia result : sorted) {
+      URL thumb = result.media.getURL();
+      if (cancelled) {
+        return;
+      }
+      if (thumb != null) {
+        ImageStore.getInstance().getBytes(thumb.toURI());
+      }
+    }
+  }
+
+  /**
+   * Search result sorted like search result list does
+   */
+  private static class SortedMedia extends Sorter.ISort {
+
+    private final Media media;
+
+    public SortedMedia(Media media) {
+      this.media = media;
+    }
+
+    @Override
+    protected String getName() {
+      return media.getName();
+    }
+
+    @Override
+    protected int getYear() {
+      return media.getYear();
+    }
+
+    @Override
+    protected long getLength() {
+      return getName().length();
+    }
+  }
+
+  private MediaPrefetcher() {
+  }
+
+  /**
+   * Stop prefetch, files not yet prefetched are skipped
+   */
+  public void cancel() {
+    cancelled = true;
+    // not interrupted, an interactive lookup may wait for the same request
+    for (Future<?> task : tasks) {
+      task.cancel(false);
+    }
+  }
+
+  public boolean isDone() {
+    for (Future<?> task : tasks) {
+      if (!task.isDone()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return Number of files to prefetch
+   */
+  public int getCount() {
+    return tasks.size();
+  }
+}
@@ -19,8 +19,13 @@ package fr.free.movierenamer.scrapper;
 
 import fr.free.movierenamer.exception.InvalidUrlException;
 import java.lang.reflect.ParameterizedType;
+import java.util.Collection;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 
 import fr.free.movierenamer.info.CastingInfo;
@@ -47,24 +52,48 @@ public abstract class MediaScrapper<M extends Media, MI extends MediaInfo> exten
   }
 
   @Override
-  protected final List<M> search(String query, Locale language) throws Exception {
+  protected final List<M> search(final String query, final Locale language) throws Exception {
     Settings.LOGGER.log(Level.INFO, String.format("Use '%s' to search media for '%s' in '%s'", getName(), query, language.getDisplayLanguage(Locale.ENGLISH)));
     CacheObject cache = getCache();
 
-    @SuppressWarnings("unchecked")
-    Class<M> genericClazz;
+    // perform actual search on cache miss, identical searches running at the same time share it
+    Callable<List<M>> loader = new Callable<List<M>>() {
+      @Override
+      public List<M> call() throws Exception {
+        return loadSearch(query, language);
+      }
+    };
+
+    // cache results and return
+    return (cache != null) ? cache.getList(CacheObject.normalize(query), language, getMediaClass(), loader) : loader.call();
+  }
+
+  @Override
+  protected final List<M> getCachedSearch(String query, Locale language) {
+    CacheObject cache = getCache();
+    return (cache != null) ? cache.getList(CacheObject.normalize(query), language, getMediaClass()) : null;
+  }
+
+  @SuppressWarnings("unchecked")
+  private Class<M> getMediaClass() {
+    return (Class<M>) getGenericClass(0);
+  }
+
+  @SuppressWarnings("unchecked")
+  private Class<MI> getInfoClass() {
+    return (Class<MI>) getGenericClass(1);
+  }
+
+  private Class<?> getGenericClass(int index) {
     try {
-      genericClazz = (Class<M>) ((ParameterizedType) getClass().getSuperclass().getGenericSuperclass()).getActualTypeArguments()[0]; // TODO put it in Utils !
+      return (Class<?>) ((ParameterizedType) getClass().getSuperclass().getGenericSuperclass()).getActualTypeArguments()[index]; // TODO put it in Utils !
     } catch (Exception ex) {
-      genericClazz = (Class<M>) ((ParameterizedType) getClass().getSuperclass().getSuperclass().getGenericSuperclass()).getActualTypeArguments()[0];
-    }
-
-    List<M> results = (cache != null) ? cache.getList(query, language, genericClazz) : null;
-    if (results != null) {
-      return results;
+      return (Class<?>) ((ParameterizedType) getClass().getSuperclass().getSuperclass().getGenericSuperclass()).getActualTypeArguments()[index];
     }
+  }
 
-    // perform actual search
+  private List<M> loadSearch(String query, Locale language) throws Exception {
+    List<M> results;
     try {
       URL url = new URL(query);
       if (!url.getHost().replace("www.", "").equals(getHost().replace("www.", ""))) {
@@ -75,9 +104,7 @@ public abstract class MediaScrapper<M extends Media, MI extends MediaInfo> exten
       results = searchMedia(query, language);
     }
     Settings.LOGGER.log(Level.INFO, String.format("'%s' returns %d media for '%s' in '%s'", getName(), results.size(), query, language.getDisplayLanguage(Locale.ENGLISH)));
-
-    // cache results and return
-    return (cache != null) ? cache.putList(query, language, genericClazz, results) : results;
+    return results;
   }
 
   protected abstract List<M> searchMedia(String query, Locale language) throws Exception;
@@ -88,43 +115,128 @@ public abstract class MediaScrapper<M extends Media, MI extends MediaInfo> exten
     return getInfo(search, getLanguage());
   }
 
-  protected final MI getInfo(M search, Locale language) throws Exception {
+  protected final MI getInfo(final M search, final Locale language) throws Exception {
     Settings.LOGGER.log(Level.INFO, String.format("Use '%s' to get media info for '%s' in '%s'", getName(), search, language.getDisplayLanguage(Locale.ENGLISH)));
     CacheObject cache = getCache();
-    @SuppressWarnings("unchecked")
-    Class<MI> genericClazz;
-    try {
-      genericClazz = (Class<MI>) ((ParameterizedType) getClass().getSuperclass().getGenericSuperclass()).getActualTypeArguments()[1]; // TODO put it in Utils !
-    } catch (Exception ex) {
-      genericClazz = (Class<MI>) ((ParameterizedType) getClass().getSuperclass().getSuperclass().getGenericSuperclass()).getActualTypeArguments()[1];
-    }
-    
-    MI info = (cache != null) ? cache.getData(search, language, genericClazz) : null;
-    if (info != null) {
-      return info;
-    }
 
-    // perform actual search
+    // perform actual search on cache miss, identical requests running at the same time share it
+    Callable<MI> loader = new Callable<MI>() {
+      @Override
+      public MI call() throws Exception {
+        return loadInfo(search, language);
+      }
+    };
+
+    // cache results and return
+    return (cache != null) ? cache.getData(search, language, getInfoClass(), loader) : loader.call();
+  }
+
+  /**
+   * Get info of many medias, duplicated medias are fetched once, cached infos
+   * are given first then other infos are fetched by the bulk executor
+   *
+   * @param searches
+   * @param callback Receives info of each media
+   * @throws InterruptedException
+   */
+  public final void getInfoAll(Collection<M> searches, BulkCallback<M, MI> callback) throws InterruptedException {
+    final Locale language = getLanguage();
+    final CacheObject cache = getCache();
+    new BulkLookup<M, MI>() {
+      @Override
+      protected MI getCached(M search) {
+        return (cache != null) ? cache.getData(search, language, getInfoClass()) : null;
+      }
+
+      @Override
+      protected MI load(M search) throws Exception {
+        return getInfo(search, language);
+      }
+    }.execute(searches, callback);
+  }
+
+  private MI loadInfo(final M search, final Locale language) throws Exception {
+    // casting is fetched while media info is
+    Future<List<CastingInfo>> casting = ScrapperManager.getExecutor().submit(new Callable<List<CastingInfo>>() {
+      @Override
+      public List<CastingInfo> call() throws Exception {
+        return getCasting(search, language);
+      }
+    });
+
+    MI info;
     info = fetchMediaInfo(search, language);
     Settings.LOGGER.log(Level.INFO, String.format("'%s' returns '%s' as info for '%s' in '%s'", getName(), info, search, language.getDisplayLanguage(Locale.ENGLISH)));
 
-    //let's fetch casting
-    List<CastingInfo> casting;
+    //let's wait for casting
+    List<CastingInfo> persons;
     try {
-      casting = getCasting(search, language);
-    } catch (Exception ex) {
-      casting = null;
+      persons = casting.get();
+    } catch (ExecutionException ex) {
+      persons = null;
     }
-    info.setCasting(casting);
-    // info.setImages(getImages(searchResult, language));
+    info.setCasting(persons);
 
-    // cache results and return
-    return (cache != null) ? cache.putData(search, language, info) : info;
+    return info;
+  }
+
+  /**
+   * Get media info in background, see {@link #getInfo(Media)}
+   *
+   * @param search
+   * @param withImages Fetch images at the same time, see
+   * {@link MediaInfo#getImages()}
+   * @return Media info future
+   */
+  public final Future<MI> getInfoAsync(M search, boolean withImages) {
+    return getInfoAsync(search, getLanguage(), withImages);
+  }
+
+  protected final Future<MI> getInfoAsync(final M search, final Locale language, boolean withImages) {
+    ExecutorService executor = ScrapperManager.getExecutor();
+    final Future<List<ImageInfo>> images = withImages ? executor.submit(new Callable<List<ImageInfo>>() {
+      @Override
+      public List<ImageInfo> call() throws Exception {
+        return getImages(search);
+      }
+    }) : null;
+
+    return executor.submit(new Callable<MI>() {
+      @Override
+      @SuppressWarnings("unchecked")
+      public MI call() throws Exception {
+        MI info = getInfo(search, language);
+        if (images != null) {
+          try {
+            // cached info is shared, images are set on a copy
+            info = (MI) info.withImages(images.get());
+          } catch (ExecutionException ex) {
+            Settings.LOGGER.log(Level.WARNING, String.format("'%s' failed to get images for '%s' : %s", getName(), search, ex.getCause()));
+          }
+        }
+        return info;
+      }
+    });
   }
 
   protected abstract MI fetchMediaInfo(M searchResult, Locale language) throws Exception;
 
-  public final List<ImageInfo> getImages(M search) throws Exception {
+  public final List<ImageInfo> getImages(final M search) throws Exception {
+    CacheObject cache = getCache();
+
+    // perform actual search on cache miss, identical requests running at the same time share it
+    Callable<List<ImageInfo>> loader = new Callable<List<ImageInfo>>() {
+      @Override
+      public List<ImageInfo> call() throws Exception {
+        return loadImages(search);
+      }
+    };
+
+    // images do not depend on language, cache results and return
+    return (cache != null) ? cache.getList(search, Locale.ROOT, ImageInfo.class, loader) : loader.call();
+  }
+
+  private List<ImageInfo> loadImages(M search) throws Exception {
     List<ImageInfo> imagesInfo = fetchImagesInfo(search);
     if (imagesInfo.isEmpty()) {
       imagesInfo = getScrapperImages(search);
@@ -142,20 +254,27 @@ public abstract class MediaScrapper<M extends Media, MI extends MediaInfo> exten
     return getCasting(search, getLanguage());
   }
 
-  protected final List<CastingInfo> getCasting(M search, Locale language) throws Exception {
+  protected final List<CastingInfo> getCasting(final M search, final Locale language) throws Exception {
     Settings.LOGGER.log(Level.INFO, String.format("Use '%s' to get casting info list for '%s' in '%s'", getName(), search, language.getDisplayLanguage(Locale.ENGLISH)));
     CacheObject cache = getCache();
-    List<CastingInfo> personsInfo = (cache != null) ? cache.getList(search, language, CastingInfo.class) : null;
-    if (personsInfo != null) {
-      return personsInfo;
-    }
 
-    // perform actual search
-    personsInfo = fetchCastingInfo(search, language);
-    Settings.LOGGER.log(Level.INFO, String.format("'%s' returns %d casting info for '%s' in '%s'", getName(), personsInfo.size(), search, language.getDisplayLanguage(Locale.ENGLISH)));
+    // perform actual search on cache miss, identical requests running at the same time share it
+    Callable<List<CastingInfo>> loader = new Callable<List<CastingInfo>>() {
+      @Override
+      public List<CastingInfo> call() throws Exception {
+        return loadCasting(search, language);
+      }
+    };
 
     // cache results and return
-    return (cache != null) ? cache.putList(search, language, CastingInfo.class, personsInfo) : personsInfo;
+    return (cache != null) ? cache.getList(search, language, CastingInfo.class, loader) : loader.call();
+  }
+
+  private List<CastingInfo> loadCasting(M search, Locale language) throws Exception {
+    List<CastingInfo> personsInfo;
+    personsInfo = fetchCastingInfo(search, language);
+    Settings.LOGGER.log(Level.INFO, String.format("'%s' returns %d casting info for '%s' in '%s'", getName(), personsInfo.size(), search, language.getDisplayLanguage(Locale.ENGLISH)));
+    return personsInfo;
   }
 
   protected abstract List<CastingInfo> fetchCastingInfo(M search, Locale language) throws Exception;
@@ -20,12 +20,15 @@ package fr.free.movierenamer.scrapper;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.TimeUnit;
 
 import fr.free.movierenamer.settings.Settings;
 import fr.free.movierenamer.utils.Cache;
 import fr.free.movierenamer.utils.CacheObject;
+import fr.free.movierenamer.utils.CacheStatistics;
 import fr.free.movierenamer.utils.LocaleUtils.AvailableLanguages;
 import fr.free.movierenamer.utils.LocaleUtils.Language;
+import fr.free.movierenamer.utils.RequestLimiter;
 import java.util.logging.Level;
 
 /**
@@ -36,15 +39,30 @@ import java.util.logging.Level;
  */
 public abstract class Scrapper {
 
+  private volatile boolean limitDeclared;
+
   public abstract String getName();
 
   protected abstract String getHost();
 
+  /**
+   * Declare host limit before the first lookup (subclass is fully built),
+   * requests are limited by URIRequest
+   */
+  private void declareRequestLimit() {
+    if (!limitDeclared) {
+      RequestLimiter.getLimiter(getHost(), getRequestLimit());
+      limitDeclared = true;
+    }
+  }
+
   protected final CacheObject getCache() {
-    String host = getHost();
+    // every lookup starts here
+    declareRequestLimit();
+    String cacheId = getCacheId();
     String cacheName = getCacheName();
-    if (host != null && cacheName != null) {
-      return new CacheObject(host, Cache.getCache(cacheName));
+    if (cacheId != null && cacheName != null) {
+      return new CacheObject(cacheId, Cache.getCache(cacheName), getCacheFreshTime(), getErrorCacheTime());
     } else {
       return null;
     }
@@ -54,6 +72,51 @@ public abstract class Scrapper {
     return null;
   }
 
+  /**
+   * @return Cache statistics of scrapper or null if scrapper has no cache
+   */
+  public final CacheStatistics getCacheStatistics() {
+    String cacheId = getCacheId();
+    return (cacheId != null && getCacheName() != null) ? CacheStatistics.getStatistics(cacheId) : null;
+  }
+
+  /**
+   * Cached results older than fresh time are returned and reloaded in
+   * background
+   *
+   * @return Fresh time in ms
+   */
+  protected long getCacheFreshTime() {
+    return TimeUnit.HOURS.toMillis(24);
+  }
+
+  /**
+   * Time a failed lookup (not found, timeout) is not retried
+   *
+   * @return Time in ms, 0 to not cache errors
+   */
+  protected long getErrorCacheTime() {
+    return TimeUnit.MINUTES.toMillis(10);
+  }
+
+  /**
+   * @return Cache id, scrappers with the same host must use different ids
+   * if they do not return the same results
+   */
+  protected String getCacheId() {
+    return getHost();
+  }
+
+  /**
+   * Request limit on scrapper host (and all hosts of its domain), called once
+   * before the first lookup
+   *
+   * @return Limit or null if host has no limit
+   */
+  protected RequestLimiter.Limit getRequestLimit() {
+    return null;
+  }
+
   @Override
   public final String toString() {
     return String.format("%s", getName());
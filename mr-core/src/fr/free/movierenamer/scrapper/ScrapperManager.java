@@ -25,9 +25,17 @@ import fr.free.movierenamer.scrapper.impl.tvshow.TheTVDBScrapper;
 import fr.free.movierenamer.scrapper.impl.tvshow.TvRageScrapper;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 
 import fr.free.movierenamer.scrapper.impl.OpenSubtitlesScrapper;
@@ -38,6 +46,12 @@ import fr.free.movierenamer.scrapper.impl.movie.FilmstartsScrapper;
 import fr.free.movierenamer.scrapper.impl.movie.ScreenRushScrapper;
 import fr.free.movierenamer.scrapper.impl.movie.SensacineScrapper;
 import fr.free.movierenamer.scrapper.impl.movie.UniversalScrapper;
+import fr.free.movierenamer.info.FileInfo;
+import fr.free.movierenamer.info.MovieInfo;
+import fr.free.movierenamer.info.TvShowInfo;
+import fr.free.movierenamer.searchinfo.Movie;
+import fr.free.movierenamer.searchinfo.Subtitle;
+import fr.free.movierenamer.searchinfo.TvShow;
 import fr.free.movierenamer.settings.Settings;
 import fr.free.movierenamer.utils.LocaleUtils;
 import fr.free.movierenamer.utils.LocaleUtils.AvailableLanguages;
@@ -54,8 +68,56 @@ public class ScrapperManager {
    * <code>map</code> existing scrapper list
    */
   private static final Map<Class<? extends Scrapper>, Scrapper> map = new LinkedHashMap<Class<? extends Scrapper>, Scrapper>(0);
+  /**
+   * <code>executor</code> runs scrapper requests in parallel, unbounded
+   * because tasks may wait for other tasks (requests are limited by host)
+   */
+  private static final ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactory() {
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "Scrapper-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  });
+  /**
+   * <code>bulkExecutor</code> runs bulk lookups, bounded so a large bulk
+   * lookup does not start one thread per media (each lookup runs its own
+   * requests on <code>executor</code>)
+   */
+  private static final ThreadPoolExecutor bulkExecutor = new ThreadPoolExecutor(8, 8, 30L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "Bulk-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  });
+
+  /**
+   * <code>prefetchExecutor</code> fills cache in background, few low priority
+   * threads so interactive lookups are not slowed down
+   */
+  private static final ThreadPoolExecutor prefetchExecutor = new ThreadPoolExecutor(2, 2, 30L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "Prefetch-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      thread.setPriority(Thread.MIN_PRIORITY);
+      return thread;
+    }
+  });
 
   static {
+    bulkExecutor.allowCoreThreadTimeOut(true);
+    prefetchExecutor.allowCoreThreadTimeOut(true);
+
     // movie
     getScrapper(AllocineScrapper.class);
     getScrapper(AdorocinemaScrapper.class);
@@ -99,6 +161,42 @@ public class ScrapperManager {
     return scrapper;
   }
 
+  public static ExecutorService getExecutor() {
+    return executor;
+  }
+
+  public static ExecutorService getBulkExecutor() {
+    return bulkExecutor;
+  }
+
+  public static ExecutorService getPrefetchExecutor() {
+    return prefetchExecutor;
+  }
+
+  public static MediaPrefetcher prefetch(Collection<FileInfo> files) {
+    return MediaPrefetcher.prefetch(files, getMovieScrapper(), getTvShowScrapper());
+  }
+
+  public static void searchAllMovies(Collection<String> queries, BulkCallback<String, List<Movie>> callback) throws InterruptedException {
+    getMovieScrapper().searchAll(queries, callback);
+  }
+
+  public static void getMovieInfoAll(Collection<Movie> movies, BulkCallback<Movie, MovieInfo> callback) throws InterruptedException {
+    getMovieScrapper().getInfoAll(movies, callback);
+  }
+
+  public static void searchAllTvShows(Collection<String> queries, BulkCallback<String, List<TvShow>> callback) throws InterruptedException {
+    getTvShowScrapper().searchAll(queries, callback);
+  }
+
+  public static void getTvShowInfoAll(Collection<TvShow> tvShows, BulkCallback<TvShow, TvShowInfo> callback) throws InterruptedException {
+    getTvShowScrapper().getInfoAll(tvShows, callback);
+  }
+
+  public static void searchAllSubtitles(Collection<String> queries, BulkCallback<String, List<Subtitle>> callback) throws InterruptedException {
+    getSubtitleScrapper().searchAll(queries, callback);
+  }
+
   public static MovieScrapper getMovieScrapper() {
     Settings settings = Settings.getInstance();
     MovieScrapper scrapper = getScrapper(settings.getSearchMovieScrapper());
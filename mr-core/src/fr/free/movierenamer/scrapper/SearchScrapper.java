@@ -26,6 +26,7 @@ import fr.free.movierenamer.settings.Settings;
 import fr.free.movierenamer.utils.LocaleUtils;
 import fr.free.movierenamer.utils.LocaleUtils.AvailableLanguages;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.logging.Level;
 
@@ -88,6 +89,40 @@ public abstract class SearchScrapper<SR extends SearchResult> extends Scrapper {
 
   protected abstract List<SR> search(String query, Locale language) throws Exception;
 
+  /**
+   * Search many queries, duplicated queries are searched once, cached results
+   * are given first then other queries are searched by the bulk executor
+   *
+   * @param queries
+   * @param callback Receives search results of each query
+   * @throws InterruptedException
+   */
+  public final void searchAll(Collection<String> queries, BulkCallback<String, List<SR>> callback) throws InterruptedException {
+    final Locale lang = getLanguage();
+    new BulkLookup<String, List<SR>>() {
+      @Override
+      protected List<SR> getCached(String query) {
+        return getCachedSearch(query, lang);
+      }
+
+      @Override
+      protected List<SR> load(String query) throws Exception {
+        return search(query, lang);
+      }
+    }.execute(queries, callback);
+  }
+
+  /**
+   * Get search results from cache only
+   *
+   * @param query
+   * @param language
+   * @return Cached results or null
+   */
+  protected List<SR> getCachedSearch(String query, Locale language) {
+    return null;
+  }
+
   @Override
   protected final String getCacheName() {
     return "short";
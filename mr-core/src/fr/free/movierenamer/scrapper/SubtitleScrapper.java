@@ -66,7 +66,8 @@ public abstract class SubtitleScrapper extends SearchScrapper<Subtitle> {
   public final List<Subtitle> search(String query, Locale language) throws Exception {
     Settings.LOGGER.log(Level.INFO, String.format("Use '%s' to search subtitles for '%s' in '%s'", getName(), query, language.getDisplayLanguage(Locale.ENGLISH)));
     CacheObject cache = getCache();
-    List<Subtitle> results = (cache != null) ? cache.getList(query, language, Subtitle.class) : null;
+    String key = CacheObject.normalize(query);
+    List<Subtitle> results = (cache != null) ? cache.getList(key, language, Subtitle.class) : null;
     if (results != null) {
       return results;
     }
@@ -76,7 +77,13 @@ public abstract class SubtitleScrapper extends SearchScrapper<Subtitle> {
     Settings.LOGGER.log(Level.INFO, String.format("'%s' returns %d subtitle(s) for '%s' in '%s'", getName(), results.size(), query, language.getDisplayLanguage(Locale.ENGLISH)));
 
     // cache results and return
-    return (cache != null) ? cache.putList(query, language, Subtitle.class, results) : results;
+    return (cache != null) ? cache.putList(key, language, Subtitle.class, results) : results;
+  }
+
+  @Override
+  protected final List<Subtitle> getCachedSearch(String query, Locale language) {
+    CacheObject cache = getCache();
+    return (cache != null) ? cache.getList(CacheObject.normalize(query), language, Subtitle.class) : null;
   }
 
   public final List<Subtitle> searchById(IdInfo id) {
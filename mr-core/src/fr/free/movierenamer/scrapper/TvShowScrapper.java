@@ -19,6 +19,8 @@ package fr.free.movierenamer.scrapper;
 
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -44,26 +46,39 @@ public abstract class TvShowScrapper extends MediaScrapper<TvShow, TvShowInfo> {
     super(supportedLanguages);
   }
 
+  @Override
+  protected long getCacheFreshTime() {
+    // new episodes of running shows
+    return TimeUnit.HOURS.toMillis(6);
+  }
+
   protected abstract List<EpisodeInfo> fetchEpisodesInfoList(TvShow tvShow, Locale language) throws Exception;
 
   public final List<EpisodeInfo> getEpisodesInfoList(TvShow tvShow) throws Exception {
     return getEpisodesInfoList(tvShow, getLanguage());
   }
 
-  protected final List<EpisodeInfo> getEpisodesInfoList(TvShow tvShow, Locale language) throws Exception {
+  protected final List<EpisodeInfo> getEpisodesInfoList(final TvShow tvShow, final Locale language) throws Exception {
     Settings.LOGGER.log(Level.INFO, String.format("Use '%s' to get episode info list for '%s' in '%s'", getName(), tvShow, language.getDisplayLanguage(Locale.ENGLISH)));
     CacheObject cache = getCache();
-    List<EpisodeInfo> episodes = (cache != null) ? cache.getList(tvShow, language, EpisodeInfo.class) : null;
-    if (episodes != null) {
-      return episodes;
-    }
 
-    // perform actual search
-    episodes = fetchEpisodesInfoList(tvShow, language);
-    Settings.LOGGER.log(Level.INFO, String.format("'%s' returns %d episode info for '%s' in '%s'", getName(), episodes.size(), tvShow, language.getDisplayLanguage(Locale.ENGLISH)));
+    // perform actual search on cache miss, episodes of a season folder share the same request
+    Callable<List<EpisodeInfo>> loader = new Callable<List<EpisodeInfo>>() {
+      @Override
+      public List<EpisodeInfo> call() throws Exception {
+        return loadEpisodesInfoList(tvShow, language);
+      }
+    };
 
     // cache results and return
-    return (cache != null) ? cache.putList(tvShow, language, EpisodeInfo.class, episodes) : episodes;
+    return (cache != null) ? cache.getList(tvShow, language, EpisodeInfo.class, loader) : loader.call();
+  }
+
+  private List<EpisodeInfo> loadEpisodesInfoList(TvShow tvShow, Locale language) throws Exception {
+    List<EpisodeInfo> episodes;
+    episodes = fetchEpisodesInfoList(tvShow, language);
+    Settings.LOGGER.log(Level.INFO, String.format("'%s' returns %d episode info for '%s' in '%s'", getName(), episodes.size(), tvShow, language.getDisplayLanguage(Locale.ENGLISH)));
+    return episodes;
   }
 
   @Override
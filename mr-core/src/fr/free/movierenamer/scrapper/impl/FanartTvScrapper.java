@@ -22,7 +22,9 @@ import fr.free.movierenamer.info.ImageInfo.ImageCategoryProperty;
 import fr.free.movierenamer.scrapper.ImageScrapper;
 import fr.free.movierenamer.searchinfo.Media;
 import fr.free.movierenamer.settings.Settings;
+import fr.free.movierenamer.utils.JSONFilter;
 import fr.free.movierenamer.utils.JSONUtils;
+import fr.free.movierenamer.utils.RequestLimiter;
 import fr.free.movierenamer.utils.URIRequest;
 import java.net.URL;
 import java.util.ArrayList;
@@ -42,6 +44,8 @@ public abstract class FanartTvScrapper<M extends Media> extends ImageScrapper<M>
   protected final String host = "api.fanart.tv/webservice";
   protected final String name = "FanartTV";
   protected final String apikey;
+  private static final RequestLimiter.Limit limit = new RequestLimiter.Limit(2, 5, 4, 5000);
+  private volatile JSONFilter filter;
 
   protected FanartTvScrapper() {
     String key = Settings.decodeApkKey(Settings.getApplicationProperty("fanarttv.apkapikey"));
@@ -65,7 +69,7 @@ public abstract class FanartTvScrapper<M extends Media> extends ImageScrapper<M>
 
     URL searchUrl = new URL("http", host, "/" + getTypeName() + "/" + apikey + "/" + media.getMediaId() + "/");// Last slash is required
 
-    JSONObject json = URIRequest.getJsonDocument(searchUrl.toURI());
+    JSONObject json = URIRequest.getJsonDocument(searchUrl.toURI(), getFilter());
     JSONObject jmedia = JSONUtils.selectFirstObject(json);
 
     List<ImageInfo> imagesInfos = new ArrayList<ImageInfo>();
@@ -92,6 +96,24 @@ public abstract class FanartTvScrapper<M extends Media> extends ImageScrapper<M>
     return imagesInfos;
   }
 
+  /**
+   * Only image fields of supported tags are parsed, root key is the media name
+   *
+   * @return Json filter
+   */
+  private JSONFilter getFilter() {
+    if (filter == null) {
+      List<String> paths = new ArrayList<String>();
+      for (String tag : getTags()) {
+        paths.add("*/" + tag + "/id");
+        paths.add("*/" + tag + "/url");
+        paths.add("*/" + tag + "/lang");
+      }
+      filter = new JSONFilter(paths.toArray(new String[paths.size()]));
+    }
+    return filter;
+  }
+
   protected abstract String getTypeName();
 
   protected abstract List<String> getTags();
@@ -107,4 +129,9 @@ public abstract class FanartTvScrapper<M extends Media> extends ImageScrapper<M>
   protected String getHost() {
     return host;
   }
+
+  @Override
+  protected RequestLimiter.Limit getRequestLimit() {
+    return limit;
+  }
 }
@@ -25,6 +25,7 @@ import java.util.EnumMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
@@ -65,10 +66,16 @@ public class SubsceneSubtitleScrapper extends SubtitleScrapper {
     return host;
   }
 
+  @Override
+  protected long getErrorCacheTime() {
+    // html pages often time out under load, failed lookups are retried sooner
+    return TimeUnit.MINUTES.toMillis(2);
+  }
+
   @Override
   protected List<Subtitle> searchSubtitles(String query, Locale language) throws Exception {
     URL searchUrl = new URL("http", host, "/subtitles/title.aspx?q=" + URIRequest.encode(query));
-    Document dom = URIRequest.getHtmlDocument(searchUrl.toURI());
+    Document dom = URIRequest.getHtmlDocument(searchUrl.toURI(), true);
 
     List<Node> nodes = XPathUtils.selectNodes("//H2//following::DIV[@class='title']//A", dom);
     List<Subtitle> subtitles = new ArrayList<Subtitle>(nodes.size());
@@ -94,7 +101,7 @@ public class SubsceneSubtitleScrapper extends SubtitleScrapper {
 
   @Override
   protected List<SubtitleInfo> fetchSubtitlesInfo(Subtitle subtitle, Locale language) throws Exception {
-    Document dom = URIRequest.getHtmlDocument(subtitle.getURL().toURI(), new URIRequest.RequestProperty("Cookie", "Filter=" + language.getDisplayLanguage()));
+    Document dom = URIRequest.getHtmlDocument(subtitle.getURL().toURI(), true, new URIRequest.RequestProperty("Cookie", "Filter=" + language.getDisplayLanguage()));
 
     List<Node> rows = XPathUtils.selectNodes("//TD[@class='a1']", dom);
     List<SubtitleInfo> subtitles = new ArrayList<SubtitleInfo>();
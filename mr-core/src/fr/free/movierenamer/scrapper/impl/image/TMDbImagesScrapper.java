@@ -23,6 +23,7 @@ import fr.free.movierenamer.scrapper.impl.movie.TMDbScrapper;
 import fr.free.movierenamer.searchinfo.Movie;
 import fr.free.movierenamer.settings.Settings;
 import fr.free.movierenamer.utils.JSONUtils;
+import fr.free.movierenamer.utils.RequestLimiter;
 import fr.free.movierenamer.utils.ScrapperUtils.TmdbImageSize;
 import fr.free.movierenamer.utils.URIRequest;
 import java.net.URL;
@@ -114,4 +115,10 @@ public class TMDbImagesScrapper extends ImageScrapper<Movie> {
   protected String getHost() {
     return host;
   }
+
+  @Override
+  protected RequestLimiter.Limit getRequestLimit() {
+    // same domain and limiter as TMDbScrapper
+    return TMDbScrapper.LIMIT;
+  }
 }
@@ -26,6 +26,7 @@ import fr.free.movierenamer.scrapper.MovieScrapper;
 import fr.free.movierenamer.searchinfo.Movie;
 import fr.free.movierenamer.settings.Settings;
 import fr.free.movierenamer.utils.LocaleUtils;
+import fr.free.movierenamer.utils.RequestLimiter;
 import fr.free.movierenamer.utils.ScrapperUtils;
 import fr.free.movierenamer.utils.StringUtils;
 import fr.free.movierenamer.utils.URIRequest;
@@ -39,6 +40,7 @@ import java.util.EnumMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -57,6 +59,8 @@ public abstract class AlloGroupScrapper extends MovieScrapper {
   private final Pattern runtimePattern = Pattern.compile("(\\d+)h (\\d+)min");
   private final Pattern imdbIdPattern = Pattern.compile("tt(\\d+{7})");
   private final String imdbIdLookupHost = "passion-xbmc.org";
+  // html pages, each allocine site has its own limiter (host)
+  private static final RequestLimiter.Limit limit = new RequestLimiter.Limit(2, 5, 4, 8000);
 
   protected interface ITag {
 
@@ -102,6 +106,17 @@ public abstract class AlloGroupScrapper extends MovieScrapper {
 
   protected abstract MotionPictureRating getRatingScale();
 
+  @Override
+  protected RequestLimiter.Limit getRequestLimit() {
+    return limit;
+  }
+
+  @Override
+  protected long getErrorCacheTime() {
+    // html pages often time out under load, failed lookups are retried sooner
+    return TimeUnit.MINUTES.toMillis(2);
+  }
+
   protected String getLongId(String str) {
     return null;
   }
@@ -128,7 +143,7 @@ public abstract class AlloGroupScrapper extends MovieScrapper {
 
   @Override
   protected final List<Movie> searchMedia(URL searchUrl, Locale language) throws Exception {
-    Document dom = URIRequest.getHtmlDocument(searchUrl.toURI());
+    Document dom = URIRequest.getHtmlDocument(searchUrl.toURI(), true);
 
     // select movie results
     List<Node> nodes = XPathUtils.selectNodes("//TABLE[@class='totalwidth noborder purehtml']//TR", dom);
@@ -206,7 +221,7 @@ public abstract class AlloGroupScrapper extends MovieScrapper {
   @Override
   protected MovieInfo fetchMediaInfo(Movie movie, Locale language) throws Exception {
     URL searchUrl = new URL("http", getHost(), getMoviePageString(movie.getMediaId()));
-    Document dom = URIRequest.getHtmlDocument(searchUrl.toURI());
+    Document dom = URIRequest.getHtmlDocument(searchUrl.toURI(), true);
 
     List<String> genres = new ArrayList<String>();
     List<Locale> countries = new ArrayList<Locale>();
@@ -340,7 +355,7 @@ public abstract class AlloGroupScrapper extends MovieScrapper {
     URL searchUrl = new URL("http", getHost(), getCastingPageString(movie.getMediaId()));
     List<CastingInfo> casting = new ArrayList<CastingInfo>();
 
-    Document dom = URIRequest.getHtmlDocument(searchUrl.toURI());
+    Document dom = URIRequest.getHtmlDocument(searchUrl.toURI(), true);
 
     List<Node> nodes = XPathUtils.selectNodes("//DIV[@class='media_list_02 media_list_hl margin_10b']/UL/LI", dom);
     for (Node node : nodes) {
@@ -428,7 +443,7 @@ public abstract class AlloGroupScrapper extends MovieScrapper {
 
   private IdInfo imdbIdLookup(IdInfo alloId) {
     try {
-      Document dom = URIRequest.getHtmlDocument(new URL("http", imdbIdLookupHost, "/scraper/index2.php?Page=ViewMovie&ID=" + alloId.getId()).toURI());
+      Document dom = URIRequest.getHtmlDocument(new URL("http", imdbIdLookupHost, "/scraper/index2.php?Page=ViewMovie&ID=" + alloId.getId()).toURI(), true);
       try {
         String id = XPathUtils.getAttribute("href", XPathUtils.selectNode("//A[contains(@href, 'imdb.com/')]", dom));
 
@@ -23,6 +23,7 @@ import java.util.EnumMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -41,6 +42,7 @@ import fr.free.movierenamer.scrapper.MovieScrapper;
 import fr.free.movierenamer.searchinfo.Movie;
 import fr.free.movierenamer.utils.LocaleUtils;
 import fr.free.movierenamer.utils.LocaleUtils.AvailableLanguages;
+import fr.free.movierenamer.utils.RequestLimiter;
 import fr.free.movierenamer.utils.ScrapperUtils;
 import fr.free.movierenamer.utils.StringUtils;
 import fr.free.movierenamer.utils.URIRequest;
@@ -58,6 +60,8 @@ public class IMDbScrapper extends MovieScrapper {
   private static final String host = "www.imdb.com";
   private static final String name = "IMDb";
   private static final String CHARSET = URIRequest.ISO;
+  // html pages, be nice with imdb
+  private static final RequestLimiter.Limit limit = new RequestLimiter.Limit(2, 5, 4, 8000);
   private final Pattern mpaaCodePattern = Pattern.compile("Rated ([RPGN][GC]?(?:-\\d{2})?)");
 
   public IMDbScrapper() {
@@ -74,6 +78,17 @@ public class IMDbScrapper extends MovieScrapper {
     return host;
   }
 
+  @Override
+  protected RequestLimiter.Limit getRequestLimit() {
+    return limit;
+  }
+
+  @Override
+  protected long getErrorCacheTime() {
+    // html pages often time out under load, failed lookups are retried sooner
+    return TimeUnit.MINUTES.toMillis(2);
+  }
+
   @Override
   protected Locale getDefaultLanguage() {
     return Locale.ENGLISH;
@@ -98,7 +113,7 @@ public class IMDbScrapper extends MovieScrapper {
 
   @Override
   protected List<Movie> searchMedia(URL searchUrl, Locale language) throws Exception {
-    Document dom = URIRequest.getHtmlDocument(searchUrl.toURI(), getRequestProperties(language));
+    Document dom = URIRequest.getHtmlDocument(searchUrl.toURI(), true, getRequestProperties(language));
 
     // select movie results
     List<Node> nodes = XPathUtils.selectNodes("//TABLE[@class='findList']//TR", dom);
@@ -163,7 +178,7 @@ public class IMDbScrapper extends MovieScrapper {
   @Override
   protected MovieInfo fetchMediaInfo(Movie movie, Locale language) throws Exception {
     URL searchUrl = new URL("http", host, String.format("/title/%s/combined", movie.getMediaId()));
-    Document dom = URIRequest.getHtmlDocument(searchUrl.toURI(), getRequestProperties(language));
+    Document dom = URIRequest.getHtmlDocument(searchUrl.toURI(), true, getRequestProperties(language));
 
     Map<MovieProperty, String> fields = new EnumMap<MovieProperty, String>(MovieProperty.class);
     Map<MovieInfo.MovieMultipleProperty, List<?>> multipleFields = new EnumMap<MovieInfo.MovieMultipleProperty, List<?>>(MovieInfo.MovieMultipleProperty.class);
@@ -282,7 +297,7 @@ public class IMDbScrapper extends MovieScrapper {
     Node plot = XPathUtils.selectNode(String.format("//A[@href='/title/%s/plotsummary']", movie.getMediaId()), dom);
     if (plot != null) {
       searchUrl = new URL("http", host, String.format("/title/%s/plotsummary", movie.getMediaId()));
-      dom = URIRequest.getHtmlDocument(searchUrl.toURI(), getRequestProperties(language));
+      dom = URIRequest.getHtmlDocument(searchUrl.toURI(), true, getRequestProperties(language));
       List<Node> nodes = XPathUtils.selectNodes("//P[@class='plotpar'][1]/descendant::text()[not(ancestor::I) and . != '\n']", dom);
       overview = "";
       for (Node pnode : nodes) {
@@ -343,7 +358,7 @@ public class IMDbScrapper extends MovieScrapper {
   @Override
   protected List<ImageInfo> getScrapperImages(Movie movie) throws Exception {
     URL searchUrl = new URL("http", host, String.format("/title/%s/mediaindex", movie.getMediaId()));
-    Document dom = URIRequest.getHtmlDocument(searchUrl.toURI(), getRequestProperties(getDefaultLanguage()));
+    Document dom = URIRequest.getHtmlDocument(searchUrl.toURI(), true, getRequestProperties(getDefaultLanguage()));
 
     List<ImageInfo> images = new ArrayList<ImageInfo>();
 
@@ -363,7 +378,7 @@ public class IMDbScrapper extends MovieScrapper {
   }
 
   private List<ImageInfo> getImages(URL url, ImageCategoryProperty imgtype, Locale language) throws Exception {
-    Document dom = URIRequest.getHtmlDocument(url.toURI(), getRequestProperties(language));
+    Document dom = URIRequest.getHtmlDocument(url.toURI(), true, getRequestProperties(language));
     List<ImageInfo> images = new ArrayList<ImageInfo>();
     List<Node> nodes = XPathUtils.selectNodes("//DIV[@class='thumb_list']//IMG", dom);
 
@@ -382,7 +397,7 @@ public class IMDbScrapper extends MovieScrapper {
   @Override
   protected List<CastingInfo> fetchCastingInfo(Movie movie, Locale language) throws Exception {
     URL searchUrl = new URL("http", host, String.format("/title/%s/fullcredits", movie.getMediaId()));
-    Document dom = URIRequest.getHtmlDocument(searchUrl.toURI(), getRequestProperties(language));
+    Document dom = URIRequest.getHtmlDocument(searchUrl.toURI(), true, getRequestProperties(language));
 
     List<CastingInfo> casting = new ArrayList<CastingInfo>();
 
@@ -25,9 +25,11 @@ import fr.free.movierenamer.info.MovieInfo.MovieProperty;
 import fr.free.movierenamer.scrapper.MovieScrapper;
 import fr.free.movierenamer.searchinfo.Movie;
 import fr.free.movierenamer.settings.Settings;
+import fr.free.movierenamer.utils.JSONFilter;
 import fr.free.movierenamer.utils.JSONUtils;
 import fr.free.movierenamer.utils.LocaleUtils.AvailableLanguages;
 import fr.free.movierenamer.utils.NumberUtils;
+import fr.free.movierenamer.utils.RequestLimiter;
 import fr.free.movierenamer.utils.ScrapperUtils;
 import fr.free.movierenamer.utils.ScrapperUtils.TmdbImageSize;
 import fr.free.movierenamer.utils.URIRequest;
@@ -56,6 +58,14 @@ public class TMDbScrapper extends MovieScrapper {
   private static final String apiHost = "api." + host;
   private static final String name = "TheMovieDb";
   private static final String version = "3";
+  // TMDb allows 30 requests every 10 seconds, shared with TMDbImagesScrapper
+  public static final RequestLimiter.Limit LIMIT = new RequestLimiter.Limit(2, 10, 8, 5000);
+  // only fields mapped in MovieInfo and CastingInfo are parsed
+  private static final JSONFilter infoFilter = new JSONFilter("id", "imdb_id", "title", "original_title", "vote_average", "vote_count",
+          "release_date", "overview", "runtime", "budget", "tagline", "belongs_to_collection/name", "countries/iso_3166_1", "countries/certification",
+          "genres/name", "production_countries/iso_3166_1", "production_companies/name", "keywords/keywords/name");
+  private static final JSONFilter castingFilter = new JSONFilter("cast/name", "cast/character", "cast/profile_path",
+          "crew/name", "crew/character", "crew/profile_path", "crew/job");
   private final String apikey;
   public static final String imageUrl = "http://cf2.imgobject.com/t/p/";
 
@@ -78,6 +88,11 @@ public class TMDbScrapper extends MovieScrapper {
     return host;
   }
 
+  @Override
+  protected RequestLimiter.Limit getRequestLimit() {
+    return LIMIT;
+  }
+
   @Override
   protected Locale getDefaultLanguage() {
     return Locale.ENGLISH;
@@ -176,7 +191,7 @@ public class TMDbScrapper extends MovieScrapper {
   @Override
   protected MovieInfo fetchMediaInfo(Movie movie, Locale language) throws Exception {
     URL searchUrl = new URL("http", apiHost, "/" + version + "/movie/" + movie.getId() + "?api_key=" + apikey + "&language=" + language.getLanguage() + "&append_to_response=releases,keywords");
-    JSONObject json = URIRequest.getJsonDocument(searchUrl.toURI());
+    JSONObject json = URIRequest.getJsonDocument(searchUrl.toURI(), infoFilter);
 
     Map<MovieProperty, String> fields = new EnumMap<MovieProperty, String>(MovieProperty.class);
     Map<MovieInfo.MovieMultipleProperty, List<?>> multipleFields = new EnumMap<MovieInfo.MovieMultipleProperty, List<?>>(MovieInfo.MovieMultipleProperty.class);
@@ -242,7 +257,7 @@ public class TMDbScrapper extends MovieScrapper {
   @Override
   protected List<CastingInfo> fetchCastingInfo(Movie movie, Locale language) throws Exception {
     URL searchUrl = new URL("http", apiHost, "/" + version + "/movie/" + movie.getId() + "/casts?api_key=" + apikey);
-    JSONObject json = URIRequest.getJsonDocument(searchUrl.toURI());
+    JSONObject json = URIRequest.getJsonDocument(searchUrl.toURI(), castingFilter);
 
     List<CastingInfo> casting = new ArrayList<CastingInfo>();
 
@@ -9,6 +9,7 @@ import fr.free.movierenamer.info.MovieInfo;
 import fr.free.movierenamer.scrapper.MovieScrapper;
 import fr.free.movierenamer.scrapper.ScrapperManager;
 import fr.free.movierenamer.searchinfo.Movie;
+import fr.free.movierenamer.settings.Settings;
 import fr.free.movierenamer.utils.LocaleUtils;
 import fr.free.movierenamer.utils.LocaleUtils.AvailableLanguages;
 import fr.free.movierenamer.utils.URIRequest;
@@ -18,6 +19,14 @@ import java.util.EnumMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
 
 /**
  * Class UniversalScrapper : Search movie on several scrapper (based on imdb)
@@ -28,6 +37,8 @@ public class UniversalScrapper extends MovieScrapper {// TODO
 
   private static final String host = "www.imdb.com";
   private static final String name = "Universal";
+  // IMDb search is overdue after this delay (ms), TMDb is asked too
+  private static final long HEDGE_DELAY = 2000;
 
   public UniversalScrapper() {
     super(LocaleUtils.AvailableLanguages.values());
@@ -36,82 +47,281 @@ public class UniversalScrapper extends MovieScrapper {// TODO
   @Override
   protected List<Movie> searchMedia(String query, Locale language) throws Exception {
     URL searchUrl = new URL("http", host, "/find?s=tt&ref_=fn_tt&q=" + URIRequest.encode(query));
-    return searchMedia(searchUrl, language);
+    return hedgedSearch(searchUrl, query);
   }
 
   @Override
   protected List<Movie> searchMedia(URL searchUrl, Locale language) throws Exception {
-    List<Movie> movies;
+    // no title to search on TMDb
+    return hedgedSearch(searchUrl, null);
+  }
 
-    movies = ScrapperManager.getScrapper(IMDbScrapper.class).search(searchUrl.toString());
+  /**
+   * Hedged search, IMDb results first. TMDb is asked only when IMDb gives
+   * nothing or is overdue, then first results win
+   *
+   * @param searchUrl IMDb search url
+   * @param title Title to search on TMDb, null for IMDb only
+   * @return Movies
+   * @throws Exception
+   */
+  private List<Movie> hedgedSearch(URL searchUrl, String title) throws Exception {
+    CompletionService<List<Movie>> completion = new ExecutorCompletionService<List<Movie>>(ScrapperManager.getExecutor());
+    List<ScrapperCall<List<Movie>>> pending = new ArrayList<ScrapperCall<List<Movie>>>();
+    List<Exception> errors = new ArrayList<Exception>();
+    pending.add(submitSearch(completion, IMDbScrapper.class, searchUrl.toString()));
+    boolean hedged = (title == null);
+    List<Movie> movies = null;
 
-    if (movies.isEmpty()) {
-      movies = ScrapperManager.getScrapper(TMDbScrapper.class).search(searchUrl.toString());
-    }
+    while (!pending.isEmpty()) {
+      Future<List<Movie>> future = hedged ? poll(completion, pending) : completion.poll(HEDGE_DELAY, TimeUnit.MILLISECONDS);
+      if (future == null) {
+        if (!hedged) {
+          Settings.LOGGER.log(Level.INFO, String.format("IMDbScrapper is overdue, search '%s' on TMDbScrapper too", title));
+          pending.add(submitSearch(completion, TMDbScrapper.class, title));
+          hedged = true;
+          continue;
+        }
 
-//    List<MovieScrapper> scrappers = ScrapperManager.getMovieScrapperList(lang);
-//    for(MovieScrapper sc : scrappers) {
-//      System.out.println(sc.getName());
-//    }
-//    if(scrappers.contains(host))
+        // all remaining scrappers are too slow
+        for (ScrapperCall<List<Movie>> call : pending) {
+          tooSlow(call, errors);
+        }
+        break;
+      }
 
+      ScrapperCall<List<Movie>> call = remove(pending, future);
+      List<Movie> result = getResult(call, errors);
+      if (result != null && !result.isEmpty()) {
+        // running request goes on and fills the cache
+        return result;
+      }
+      if (result != null) {
+        movies = result;
+      }
+      if (!hedged) {
+        pending.add(submitSearch(completion, TMDbScrapper.class, title));
+        hedged = true;
+      }
+    }
+
+    if (movies == null) {
+      // all scrappers failed, nothing to cache
+      throw errors.get(0);
+    }
     return movies;
   }
 
+  private ScrapperCall<List<Movie>> submitSearch(CompletionService<List<Movie>> completion, final Class<? extends MovieScrapper> scrapperClass, final String query) {
+    ScrapperCall<List<Movie>> call = new ScrapperCall<List<Movie>>(scrapperClass) {
+      @Override
+      protected List<Movie> run() throws Exception {
+        return ScrapperManager.getScrapper(scrapperClass).search(query);
+      }
+    };
+    call.future = completion.submit(call);
+    return call;
+  }
+
+  /**
+   * Wait for the first result of pending calls, until the last deadline
+   *
+   * @return Done future or null if all pending calls are too slow
+   * @throws InterruptedException
+   */
+  private static <T> Future<T> poll(CompletionService<T> completion, List<ScrapperCall<T>> pending) throws InterruptedException {
+    while (true) {
+      long deadline = Long.MIN_VALUE;
+      boolean waiting = false;
+      for (ScrapperCall<T> call : pending) {
+        long callDeadline = call.getDeadline();
+        waiting |= (callDeadline == 0);
+        deadline = Math.max(deadline, callDeadline != 0 ? callDeadline : System.nanoTime() + getTimeOut());
+      }
+
+      Future<T> future = completion.poll(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+      if (future != null || !waiting) {
+        return future;
+      }
+      for (ScrapperCall<T> call : pending) {
+        if (call.getDeadline() == 0) {
+          // still not started
+          return null;
+        }
+      }
+      // started meanwhile, wait until its own deadline
+    }
+  }
+
+  private static <T> ScrapperCall<T> remove(List<ScrapperCall<T>> pending, Future<T> future) {
+    for (int i = 0; i < pending.size(); i++) {
+      if (pending.get(i).future == future) {
+        return pending.remove(i);
+      }
+    }
+    throw new IllegalStateException("Unknown future");
+  }
+
+  private static long getTimeOut() {
+    return TimeUnit.SECONDS.toNanos(Settings.getInstance().getSearchScrapperTimeOut());
+  }
+
+  /**
+   * Wait for a scrapper result until its deadline. A too slow call is not
+   * interrupted, it may be a shared lookup, it goes on and fills the cache
+   *
+   * @param <T>
+   * @param call
+   * @param errors Receives scrapper error
+   * @return Result or null if scrapper failed or was too slow
+   * @throws InterruptedException
+   */
+  private static <T> T getResult(ScrapperCall<T> call, List<Exception> errors) throws InterruptedException {
+    String scrapper = call.scrapperClass.getSimpleName();
+    try {
+      while (true) {
+        long deadline = call.getDeadline();
+        try {
+          // not started yet, waits at most a whole time out for it to start
+          return call.future.get(deadline == 0 ? getTimeOut() : Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException ex) {
+          if (deadline != 0 || call.getDeadline() == 0) {
+            throw ex;
+          }
+          // started meanwhile, wait until its own deadline
+        }
+      }
+    } catch (ExecutionException ex) {
+      Settings.LOGGER.log(Level.WARNING, String.format("%s failed : %s", scrapper, ex.getCause()));
+      errors.add(ex.getCause() instanceof Exception ? (Exception) ex.getCause() : ex);
+    } catch (TimeoutException ex) {
+      tooSlow(call, errors);
+    }
+    return null;
+  }
+
+  private static void tooSlow(ScrapperCall<?> call, List<Exception> errors) {
+    String scrapper = call.scrapperClass.getSimpleName();
+    Settings.LOGGER.log(Level.WARNING, String.format("%s is too slow, ignored", scrapper));
+    // a call which is not started will not run
+    call.future.cancel(false);
+    errors.add(new TimeoutException(String.format("%s is too slow", scrapper)));
+  }
+
   @Override
-  protected MovieInfo fetchMediaInfo(Movie searchResult, Locale language) throws Exception {
+  protected MovieInfo fetchMediaInfo(final Movie searchResult, Locale language) throws Exception {
     AvailableLanguages lang = AvailableLanguages.valueOf(language.getLanguage());
     Map<MovieInfo.MovieProperty, String> fields = new EnumMap<MovieInfo.MovieProperty, String>(MovieInfo.MovieProperty.class);
     Map<MovieInfo.MovieMultipleProperty, List<?>> multipleFields = new EnumMap<MovieInfo.MovieMultipleProperty, List<?>>(MovieInfo.MovieMultipleProperty.class);
 
-    List<MovieScrapper> scrappers = ScrapperManager.getMovieScrapperList(lang);
-    List<MovieInfo> infos = new ArrayList<MovieInfo>();
-    for (MovieScrapper scrapper : scrappers) {
+    // all scrappers run at the same time, each one with its own deadline
+    List<MovieScrapper> scrappers = new ArrayList<MovieScrapper>();
+    List<ScrapperCall<MovieInfo>> infos = new ArrayList<ScrapperCall<MovieInfo>>();
+    for (final MovieScrapper scrapper : ScrapperManager.getMovieScrapperList(lang)) {
       if (scrapper.getName().equals(getName()) || AlloGroupScrapper.class.isAssignableFrom(scrapper.getClass())) {
         continue;
       }
-      MovieInfo info = scrapper.getInfo(searchResult);
-
-      // Merge info
-      // TODO
-      for (MovieInfo.MovieProperty property : MovieInfo.MovieProperty.values()) {
-        if (scrapper.getClass() == IMDbScrapper.class) {
-          if (!property.isLanguageDepends()) {
-            String cvalue = fields.get(property);
-            String nvalue = info.get(property);
-            if ((cvalue == null || cvalue.equals("")) && nvalue != null && !nvalue.equals("")) {
-              fields.put(property, nvalue);
-            }
-          }
-        } else {
+      scrappers.add(scrapper);
+      ScrapperCall<MovieInfo> call = new ScrapperCall<MovieInfo>(scrapper.getClass()) {
+        @Override
+        protected MovieInfo run() throws Exception {
+          return scrapper.getInfo(searchResult);
+        }
+      };
+      call.future = ScrapperManager.getExecutor().submit(call);
+      infos.add(call);
+    }
+
+    // merge in scrapper order (first value wins), each info is merged as soon
+    // as it and the previous ones are there
+    List<Exception> errors = new ArrayList<Exception>();
+    boolean found = false;
+    for (int i = 0; i < scrappers.size(); i++) {
+      MovieScrapper scrapper = scrappers.get(i);
+      MovieInfo info = getResult(infos.get(i), errors);
+      if (info != null) {
+        merge(scrapper, info, fields, multipleFields);
+        found = true;
+      }
+    }
+
+    if (!found && !errors.isEmpty()) {
+      // all scrappers failed, an empty info must not be cached
+      throw errors.get(0);
+    }
+    return new MovieInfo(fields, multipleFields);
+  }
+
+  private static void merge(MovieScrapper scrapper, MovieInfo info, Map<MovieInfo.MovieProperty, String> fields, Map<MovieInfo.MovieMultipleProperty, List<?>> multipleFields) {
+    // Merge info
+    // TODO
+    for (MovieInfo.MovieProperty property : MovieInfo.MovieProperty.values()) {
+      if (scrapper.getClass() == IMDbScrapper.class) {
+        if (!property.isLanguageDepends()) {
           String cvalue = fields.get(property);
           String nvalue = info.get(property);
           if ((cvalue == null || cvalue.equals("")) && nvalue != null && !nvalue.equals("")) {
             fields.put(property, nvalue);
           }
         }
+      } else {
+        String cvalue = fields.get(property);
+        String nvalue = info.get(property);
+        if ((cvalue == null || cvalue.equals("")) && nvalue != null && !nvalue.equals("")) {
+          fields.put(property, nvalue);
+        }
       }
+    }
 
-      for (MovieInfo.MovieMultipleProperty property : MovieInfo.MovieMultipleProperty.values()) {
-        if (scrapper.getClass() == IMDbScrapper.class) {
-          if (!property.isLanguageDepends()) {
-            List<?> cvalue = multipleFields.get(property);
-            List<?> nvalue = info.get(property);
-            if ((cvalue == null || cvalue.isEmpty()) && nvalue != null && !nvalue.isEmpty()) {
-              multipleFields.put(property, nvalue);
-            }
-          }
-        } else {
+    for (MovieInfo.MovieMultipleProperty property : MovieInfo.MovieMultipleProperty.values()) {
+      if (scrapper.getClass() == IMDbScrapper.class) {
+        if (!property.isLanguageDepends()) {
           List<?> cvalue = multipleFields.get(property);
           List<?> nvalue = info.get(property);
           if ((cvalue == null || cvalue.isEmpty()) && nvalue != null && !nvalue.isEmpty()) {
             multipleFields.put(property, nvalue);
           }
         }
+      } else {
+        List<?> cvalue = multipleFields.get(property);
+        List<?> nvalue = info.get(property);
+        if ((cvalue == null || cvalue.isEmpty()) && nvalue != null && !nvalue.isEmpty()) {
+          multipleFields.put(property, nvalue);
+        }
       }
     }
+  }
 
-    return new MovieInfo(fields, multipleFields);
+  /**
+   * Scrapper call, its deadline starts when it runs, not when it is submitted
+   * (it may wait for a free executor thread)
+   *
+   * @param <T>
+   */
+  private static abstract class ScrapperCall<T> implements Callable<T> {
+
+    private final Class<?> scrapperClass;
+    private volatile long deadline;
+    private Future<T> future;
+
+    public ScrapperCall(Class<?> scrapperClass) {
+      this.scrapperClass = scrapperClass;
+    }
+
+    @Override
+    public T call() throws Exception {
+      deadline = System.nanoTime() + getTimeOut();
+      return run();
+    }
+
+    protected abstract T run() throws Exception;
+
+    /**
+     * @return System.nanoTime() deadline or 0 if not started
+     */
+    public long getDeadline() {
+      return deadline;
+    }
   }
 
   @Override
@@ -133,4 +343,16 @@ public class UniversalScrapper extends MovieScrapper {// TODO
   protected String getHost() {
     return host;
   }
+
+  @Override
+  protected long getErrorCacheTime() {
+    // fails only when every provider failed, mostly on network errors
+    return TimeUnit.MINUTES.toMillis(1);
+  }
+
+  @Override
+  protected String getCacheId() {
+    // same host as IMDbScrapper, but not the same results
+    return name;
+  }
 }
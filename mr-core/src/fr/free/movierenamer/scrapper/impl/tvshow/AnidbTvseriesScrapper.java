@@ -19,6 +19,7 @@ package fr.free.movierenamer.scrapper.impl.tvshow;
 
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.TimeUnit;
 
 import fr.free.movierenamer.info.CastingInfo;
 import fr.free.movierenamer.info.EpisodeInfo;
@@ -55,6 +56,12 @@ public class AnidbTvseriesScrapper extends TvShowScrapper {
     return host;
   }
 
+  @Override
+  protected long getErrorCacheTime() {
+    // anidb bans clients repeating requests, failed lookups are not retried soon
+    return TimeUnit.MINUTES.toMillis(30);
+  }
+
   @Override
   protected Locale getDefaultLanguage() {
     return Locale.ENGLISH;
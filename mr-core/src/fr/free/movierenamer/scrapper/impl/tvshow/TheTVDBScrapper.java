@@ -29,8 +29,6 @@ import java.util.Map;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
-import javax.xml.parsers.DocumentBuilderFactory;
-
 import org.w3c.dom.Document;
 import org.w3c.dom.Node;
 
@@ -49,6 +47,7 @@ import fr.free.movierenamer.searchinfo.TvShow;
 import fr.free.movierenamer.settings.Settings;
 import fr.free.movierenamer.utils.EpisodeUtils;
 import fr.free.movierenamer.utils.LocaleUtils.AvailableLanguages;
+import fr.free.movierenamer.utils.RequestLimiter;
 import fr.free.movierenamer.utils.ScrapperUtils;
 import fr.free.movierenamer.utils.URIRequest;
 import fr.free.movierenamer.utils.XPathUtils;
@@ -63,6 +62,7 @@ public class TheTVDBScrapper extends TvShowScrapper {
 
   private static final String host = "www.thetvdb.com";
   private static final String name = "TheTVDB";
+  private static final RequestLimiter.Limit limit = new RequestLimiter.Limit(5, 10, 4, 5000);
   /**
    * @see http://thetvdb.com/?tab=apiregister
    */
@@ -99,6 +99,11 @@ public class TheTVDBScrapper extends TvShowScrapper {
     return host;
   }
 
+  @Override
+  protected RequestLimiter.Limit getRequestLimit() {
+    return limit;
+  }
+
   @Override
   protected Locale getDefaultLanguage() {
     return Locale.ENGLISH;
@@ -166,32 +171,51 @@ public class TheTVDBScrapper extends TvShowScrapper {
 
   @Override
   protected List<EpisodeInfo> fetchEpisodesInfoList(TvShow tvShow, Locale language) throws Exception {
-    Document seriesRecord = getTvShowRecord(tvShow, language.getLanguage());
+    EpisodeListHandler handler = new EpisodeListHandler();
+    streamTvShowRecord(tvShow, language.getLanguage(), handler, "Data/Series", "Data/Episode");
 
-    // we could get the series name from the search result, but the language may
-    // not match the given parameter
-    String seriesName = XPathUtils.selectString("Data/Series/SeriesName", seriesRecord);
-    String seriesStartDate = XPathUtils.selectString("Data/Series/FirstAired", seriesRecord);
+    List<EpisodeInfo> episodes = handler.episodes;
+    EpisodeUtils.sortEpisodes(episodes);
 
-    List<Node> nodes = XPathUtils.selectNodes("Data/Episode", seriesRecord);
+    // add specials at the end
+    episodes.addAll(handler.specials);
 
-    List<EpisodeInfo> episodes = new ArrayList<EpisodeInfo>(nodes.size());
-    List<EpisodeInfo> specials = new ArrayList<EpisodeInfo>(5);
+    return episodes;
+  }
+
+  /**
+   * Class EpisodeListHandler, episodes are built while series record is read
+   */
+  private static class EpisodeListHandler implements XPathUtils.ElementHandler {
+
+    private final List<EpisodeInfo> episodes = new ArrayList<EpisodeInfo>();
+    private final List<EpisodeInfo> specials = new ArrayList<EpisodeInfo>(5);
+    private String seriesName = "";
+    private String seriesStartDate = "";
+
+    @Override
+    public void handle(XPathUtils.XmlElement element) {
+      if (element.getName().equals("Series")) {
+        // we could get the series name from the search result, but the language may
+        // not match the given parameter (series comes before episodes)
+        seriesName = getString(element.getTextContent("SeriesName"));
+        seriesStartDate = getString(element.getTextContent("FirstAired"));
+        return;
+      }
 
-    for (Node node : nodes) {
       Map<EpisodeProperty, String> fields = new EnumMap<EpisodeProperty, String>(EpisodeProperty.class);
       fields.put(EpisodeProperty.tvShowName, seriesName);
       fields.put(EpisodeProperty.tvShowStartDate, seriesStartDate);
-      fields.put(EpisodeProperty.name, XPathUtils.getTextContent("EpisodeName", node));
-      fields.put(EpisodeProperty.absolute, XPathUtils.getTextContent("absolute_number", node));
-      fields.put(EpisodeProperty.airdate, XPathUtils.getTextContent("FirstAired", node));
+      fields.put(EpisodeProperty.name, element.getTextContent("EpisodeName"));
+      fields.put(EpisodeProperty.absolute, element.getTextContent("absolute_number"));
+      fields.put(EpisodeProperty.airdate, element.getTextContent("FirstAired"));
 
-      Integer episodeNumber = XPathUtils.getIntegerContent("EpisodeNumber", node);
-      Integer seasonNumber = XPathUtils.getIntegerContent("SeasonNumber", node);
+      Integer episodeNumber = element.getIntegerContent("EpisodeNumber");
+      Integer seasonNumber = element.getIntegerContent("SeasonNumber");
 
       if (seasonNumber == null || seasonNumber == 0) {
         // handle as special episode
-        Integer airsBefore = XPathUtils.getIntegerContent("airsbefore_season", node);
+        Integer airsBefore = element.getIntegerContent("airsbefore_season");
         if (airsBefore != null) {
           seasonNumber = airsBefore;
         }
@@ -212,12 +236,9 @@ public class TheTVDBScrapper extends TvShowScrapper {
       }
     }
 
-    EpisodeUtils.sortEpisodes(episodes);
-
-    // add specials at the end
-    episodes.addAll(specials);
-
-    return episodes;
+    private static String getString(String value) {
+      return value != null ? value : "";
+    }
   }
 
   @Override
@@ -266,12 +287,12 @@ public class TheTVDBScrapper extends TvShowScrapper {
     return casting;
   }
 
-  private final Document getTvShowRecord(TvShow tvShow, String languageCode) throws Exception {
+  private void streamTvShowRecord(TvShow tvShow, String languageCode, XPathUtils.ElementHandler handler, String... paths) throws Exception {
     URL tvShowRecord = new URL("http", host, "/api/" + apikey + "/series/" + tvShow.getMediaId() + "/all/" + languageCode + ".zip");
 
     try {
 
-      ZipInputStream zipInputStream = new ZipInputStream(tvShowRecord.openStream());
+      ZipInputStream zipInputStream = new ZipInputStream(URIRequest.getInputStream(tvShowRecord.toURI()));
       ZipEntry zipEntry;
 
       try {
@@ -279,7 +300,8 @@ public class TheTVDBScrapper extends TvShowScrapper {
 
         while ((zipEntry = zipInputStream.getNextEntry()) != null) {
           if (tvShowRecordName.equals(zipEntry.getName())) {
-            return DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(zipInputStream);
+            XPathUtils.streamElements(zipInputStream, handler, paths);
+            return;
           }
         }
 
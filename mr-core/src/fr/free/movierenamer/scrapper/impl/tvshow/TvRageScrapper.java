@@ -26,6 +26,7 @@ import java.util.EnumMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -75,6 +76,12 @@ public class TvRageScrapper extends TvShowScrapper {
     return host;
   }
 
+  @Override
+  protected long getErrorCacheTime() {
+    // service outages last a few minutes
+    return TimeUnit.MINUTES.toMillis(5);
+  }
+
   @Override
   protected Locale getDefaultLanguage() {
     return Locale.ENGLISH;
@@ -144,42 +151,44 @@ public class TvRageScrapper extends TvShowScrapper {
   }
 
   @Override
-  protected List<EpisodeInfo> fetchEpisodesInfoList(TvShow tvShow, Locale language) throws Exception {
+  protected List<EpisodeInfo> fetchEpisodesInfoList(final TvShow tvShow, Locale language) throws Exception {
     URL episodeListUrl = new URL("http", host, "/feeds/episode_list.php?sid=" + tvShow.getMediaId());
-    Document dom = URIRequest.getXmlDocument(episodeListUrl.toURI());
 
-    List<EpisodeInfo> episodes = new ArrayList<EpisodeInfo>(25);
-    List<EpisodeInfo> specials = new ArrayList<EpisodeInfo>(5);
-
-    // episodes and specials
-    for (Node node : XPathUtils.selectNodes("//episode", dom)) {
-      Map<EpisodeProperty, String> fields = new EnumMap<EpisodeProperty, String>(EpisodeProperty.class);
-      fields.put(EpisodeProperty.tvShowName, tvShow.getName());
-      fields.put(EpisodeProperty.tvShowStartDate, Integer.toString(tvShow.getYear()));
-
-      fields.put(EpisodeProperty.name, XPathUtils.getTextContent("title", node));
-
-      Integer episodeNumber = XPathUtils.getIntegerContent("seasonnum", node);
-      String seasonIdentifier = XPathUtils.getAttribute("no", node.getParentNode());
-      Integer seasonNumber = seasonIdentifier == null ? null : new Integer(seasonIdentifier);
-      fields.put(EpisodeProperty.airdate, XPathUtils.getTextContent("airdate", node));
-
-      // check if we have season and episode number, if not it must be a special episode
-      if (episodeNumber == null || seasonNumber == null) {
-        // handle as special episode
-        seasonNumber = XPathUtils.getIntegerContent("season", node);
-        Integer specialNumber = EpisodeUtils.filterBySeason(specials, seasonNumber).size() + 1;
-        fields.put(EpisodeProperty.episode, episodeNumber.toString());
-        fields.put(EpisodeProperty.season, seasonNumber.toString());
-        fields.put(EpisodeProperty.special, specialNumber.toString());
-        specials.add(new EpisodeInfo(fields));
-      } else {
-        // handle as normal episode
-        fields.put(EpisodeProperty.episode, episodeNumber.toString());
-        fields.put(EpisodeProperty.season, seasonNumber.toString());
-        episodes.add(new EpisodeInfo(fields));
+    final List<EpisodeInfo> episodes = new ArrayList<EpisodeInfo>(25);
+    final List<EpisodeInfo> specials = new ArrayList<EpisodeInfo>(5);
+
+    // episodes and specials, built while episode list is read
+    URIRequest.getXmlElements(episodeListUrl.toURI(), new XPathUtils.ElementHandler() {
+      @Override
+      public void handle(XPathUtils.XmlElement element) {
+        Map<EpisodeProperty, String> fields = new EnumMap<EpisodeProperty, String>(EpisodeProperty.class);
+        fields.put(EpisodeProperty.tvShowName, tvShow.getName());
+        fields.put(EpisodeProperty.tvShowStartDate, Integer.toString(tvShow.getYear()));
+
+        fields.put(EpisodeProperty.name, element.getTextContent("title"));
+
+        Integer episodeNumber = element.getIntegerContent("seasonnum");
+        String seasonIdentifier = element.getParent().getAttribute("no");
+        Integer seasonNumber = seasonIdentifier == null ? null : new Integer(seasonIdentifier);
+        fields.put(EpisodeProperty.airdate, element.getTextContent("airdate"));
+
+        // check if we have season and episode number, if not it must be a special episode
+        if (episodeNumber == null || seasonNumber == null) {
+          // handle as special episode
+          seasonNumber = element.getIntegerContent("season");
+          Integer specialNumber = EpisodeUtils.filterBySeason(specials, seasonNumber).size() + 1;
+          fields.put(EpisodeProperty.episode, episodeNumber.toString());
+          fields.put(EpisodeProperty.season, seasonNumber.toString());
+          fields.put(EpisodeProperty.special, specialNumber.toString());
+          specials.add(new EpisodeInfo(fields));
+        } else {
+          // handle as normal episode
+          fields.put(EpisodeProperty.episode, episodeNumber.toString());
+          fields.put(EpisodeProperty.season, seasonNumber.toString());
+          episodes.add(new EpisodeInfo(fields));
+        }
       }
-    }
+    }, "//episode");
 
     // add specials at the end
     episodes.addAll(specials);
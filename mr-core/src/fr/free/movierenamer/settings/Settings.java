@@ -180,6 +180,7 @@ public final class Settings {
     tvShowFilenameRmDupSpace(Boolean.TRUE, SettingsType.RENAME, SettingsSubType.TVSHOWFILENAME), // (Boolean.TRUE.toString()),
     // Cache
     cacheClear(Boolean.FALSE, SettingsType.GENERAL, SettingsSubType.CACHE), // (Boolean.FALSE.toString()),
+    cacheHttpResponse(Boolean.TRUE, SettingsType.GENERAL, SettingsSubType.CACHE), // (Boolean.TRUE.toString()),
     // Search
     searchNbResult(2, SettingsType.SEARCH, SettingsSubType.GENERAL), // (Integer.decode("2").toString()),
     searchDisplayApproximateResult(Boolean.FALSE, SettingsType.SEARCH, SettingsSubType.GENERAL), // (Boolean.FALSE.toString()),
@@ -188,8 +189,11 @@ public final class Settings {
     searchSubtitleScrapper(OpenSubtitlesScrapper.class, SettingsType.SEARCH, SettingsSubType.SCRAPPER), // (IMDbScrapper.class.toString()),// FIXME
     searchScrapperLang(AvailableLanguages.en, SettingsType.SEARCH, SettingsSubType.LANGUAGE),// (Locale.ENGLISH.toString()),
     searchSort(Sorter.SorterType.LEVEN_YEAR, SettingsType.SEARCH, SettingsSubType.GENERAL), // (Boolean.TRUE.toString()),
+    searchScrapperTimeOut(30, SettingsType.SEARCH, SettingsSubType.GENERAL), // (Integer.decode("30").toString()),
     // http param
     httpRequestTimeOut(30, SettingsType.NETWORK, SettingsSubType.GENERAL), // (Integer.decode("30").toString()),
+    httpConnectTimeOut(10, SettingsType.NETWORK, SettingsSubType.GENERAL), // (Integer.decode("10").toString()),
+    httpMaxConnectionsPerHost(4, SettingsType.NETWORK, SettingsSubType.GENERAL), // (Integer.decode("4").toString()),
     httpCustomUserAgent("", SettingsType.NETWORK, SettingsSubType.GENERAL), // Mozilla/5.0 (Windows NT 5.1; rv:10.0.2) Gecko/20100101 Firefox/10.0.2
     // Proxy
     proxyIsOn(Boolean.FALSE, SettingsType.NETWORK, SettingsSubType.PROXY, true), // (Boolean.FALSE.toString()),
@@ -476,6 +480,10 @@ public final class Settings {
     return Boolean.parseBoolean(get(SettingsProperty.cacheClear));
   }
 
+  public boolean isCacheHttpResponse() {
+    return Boolean.parseBoolean(get(SettingsProperty.cacheHttpResponse));
+  }
+
   @SuppressWarnings("unchecked")
   public Class<? extends MovieScrapper> getSearchMovieScrapper() {
     try {
@@ -511,6 +519,10 @@ public final class Settings {
     return Sorter.SorterType.valueOf(get(SettingsProperty.searchSort));
   }
 
+  public int getSearchScrapperTimeOut() {
+    return Integer.parseInt(get(SettingsProperty.searchScrapperTimeOut));
+  }
+
   public int getSearchNbResult() {
     return Integer.parseInt(get(SettingsProperty.searchNbResult));
   }
@@ -535,6 +547,14 @@ public final class Settings {
     return Integer.parseInt(get(SettingsProperty.httpRequestTimeOut));
   }
 
+  public int getHttpConnectTimeOut() {
+    return Integer.parseInt(get(SettingsProperty.httpConnectTimeOut));
+  }
+
+  public int getHttpMaxConnectionsPerHost() {
+    return Integer.parseInt(get(SettingsProperty.httpMaxConnectionsPerHost));
+  }
+
   public String getHttpCustomUserAgent() {
     return get(SettingsProperty.httpCustomUserAgent);
   }
@@ -1,6 +1,6 @@
 /*
  * movie-renamer-core
- * Copyright (C) 2012 Nicolas Magré
+ * Copyright (C) 2012-2013 Nicolas Magré
  *
  * This program is free software: you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -17,26 +17,54 @@
  */
 package fr.free.movierenamer.utils;
 
+import fr.free.movierenamer.info.InfoCodec;
 import fr.free.movierenamer.settings.Settings;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.io.Serializable;
 import java.nio.channels.FileLock;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
-import java.util.logging.Logger;
-import net.sf.ehcache.CacheManager;
-import net.sf.ehcache.Element;
 
 /**
- * Class Cache
+ * Class Cache, two levels cache : values are kept in memory (bounded by
+ * bytes) and stored on disk, values evicted from memory are read back from
+ * disk. Disk stores are shared by all running instances (see
+ * {@link SegmentStore})
  *
  * @author Nicolas Magré
  * @author Simon QUÉMÉNEUR
  */
-public final class Cache {
+public final class Cache implements CacheMBean {
+
+  private static final long MB = 1024 * 1024;
+  private static final Map<String, Config> configs = new HashMap<String, Config>();
+  private static final Config defaultConfig = new Config(MB, 0, TimeUnit.SECONDS.toMillis(120));
+  private static final Map<String, Cache> caches = new LinkedHashMap<String, Cache>();
+  private static final List<CacheCodec> codecs = new ArrayList<CacheCodec>();
+  private static final SerializationCodec serializationCodec = new SerializationCodec();
+  private static File diskStoreDir;
+
   static {
+    // short-lived (48 hours)
+    configs.put("short", new Config(4 * MB, 32 * MB, TimeUnit.HOURS.toMillis(48)));
+    // medium-lived (1 week)
+    configs.put("medium", new Config(4 * MB, 64 * MB, TimeUnit.DAYS.toMillis(7)));
+    // very long-lived (one month)
+    configs.put("long", new Config(16 * MB, 128 * MB, TimeUnit.DAYS.toMillis(30)));
+
+    codecs.add(new InfoCodec());
+    codecs.add(serializationCodec);
+
     Cache.initializeCache();
     if (Settings.getInstance().isCacheClear()) {
       Cache.clearAllCache();
@@ -44,126 +72,368 @@ public final class Cache {
   }
 
   private static void initializeCache() {
-    // prepare cache folder for this application instance
+    // all application instances share the same disk stores
     File cacheRoot = new File(Settings.appFolder, "cache");
+    diskStoreDir = cacheRoot;
+    removeLegacyStores(cacheRoot);
+  }
 
-    try {
-      for (int i = 0; true; i++) {
-        File cache = new File(cacheRoot, String.format("%d", i));
-        if (!cache.isDirectory() && !cache.mkdirs()) {
-          throw new IOException("Failed to create cache dir: " + cache);
-        }
+  /**
+   * Remove per instance disk stores ("0", "1", ..., "default") left by
+   * previous versions, unless they are still locked by a running instance
+   */
+  private static void removeLegacyStores(File cacheRoot) {
+    File[] folders = cacheRoot.listFiles();
+    if (folders == null) {
+      return;
+    }
 
-        File lockFile = new File(cache, ".lock");
-        final RandomAccessFile handle = new RandomAccessFile(lockFile, "rw");
-        final FileLock lock = handle.getChannel().tryLock();
-        if (lock != null) {
-          // setup cache dir for ehcache
-          System.setProperty("ehcache.disk.store.dir", cache.getAbsolutePath());
-
-          // make sure to orderly shutdown cache
-          Runtime.getRuntime().addShutdownHook(new Thread() {
-
-            @Override
-            public void run() {
-              CacheManager.getInstance().shutdown();
-              try {
-                lock.release();
-              } catch (Exception e) {
-                Settings.LOGGER.log(Level.WARNING, e.toString());
-              }
-              try {
-                handle.close();
-              } catch (Exception e) {
-                Settings.LOGGER.log(Level.WARNING, e.toString());
+    for (File folder : folders) {
+      if (!folder.isDirectory() || !(folder.getName().matches("\\d+") || folder.getName().equals("default"))) {
+        continue;
+      }
+
+      try {
+        RandomAccessFile handle = new RandomAccessFile(new File(folder, ".lock"), "rw");
+        try {
+          FileLock lock = handle.getChannel().tryLock();
+          if (lock == null) {
+            continue;
+          }
+          try {
+            File[] files = folder.listFiles();
+            for (File file : files != null ? files : new File[0]) {
+              if (!file.getName().equals(".lock")) {
+                delete(file);
               }
             }
-          });
-
-          // cache for this application instance is successfully set up and locked
-          // handle is close in previous hook !
-          return;
+          } finally {
+            lock.release();
+          }
+        } finally {
+          handle.close();
         }
+        delete(folder);
+      } catch (IOException e) {
+        Settings.LOGGER.log(Level.WARNING, e.toString());
+      }
+    }
+  }
 
-        // try next lock file
-        handle.close();
+  private static void delete(File file) {
+    File[] files = file.listFiles();
+    if (files != null) {
+      for (File child : files) {
+        delete(child);
       }
-    } catch (Exception e) {
-      Settings.LOGGER.log(Level.WARNING, e.toString(), e);
     }
+    file.delete();
+  }
 
-    // use cache root itself as fail-safe fallback
-    System.setProperty("ehcache.disk.store.dir", new File(cacheRoot, "default").getAbsolutePath());
+  /**
+   * Add a codec for disk store, codecs added last are tried first
+   *
+   * @param codec
+   */
+  public synchronized static void addCodec(CacheCodec codec) {
+    codecs.add(0, codec);
+  }
+
+  private synchronized static CacheCodec getCodec(Object value) {
+    for (CacheCodec codec : codecs) {
+      if (codec.canEncode(value)) {
+        return codec;
+      }
+    }
+    return null;
+  }
+
+  private synchronized static CacheCodec getCodec(int id) {
+    for (CacheCodec codec : codecs) {
+      if (codec.getId() == id) {
+        return codec;
+      }
+    }
+    return null;
   }
 
   public synchronized static Cache getCache(String name) {
-    return new Cache(CacheManager.getInstance().getCache(name));
+    Cache cache = caches.get(name);
+    if (cache == null) {
+      Config config = configs.get(name);
+      cache = new Cache(name, config != null ? config : defaultConfig);
+      caches.put(name, cache);
+      CacheStatistics.registerMBean(cache, "Cache", name);
+    }
+    return cache;
+  }
+
+  /**
+   * @return Caches in use
+   */
+  public synchronized static List<Cache> getCaches() {
+    return new ArrayList<Cache>(caches.values());
   }
 
   public synchronized static void clearCache(String name) {
-  	net.sf.ehcache.Cache cache = CacheManager.getInstance().getCache(name);
-  	if (cache != null) {
-      Settings.LOGGER.log(Level.FINER, String.format("Clear cache %s", cache.getName()));
-  		cache.removeAll();
-  	}
+    Cache cache = caches.get(name);
+    if (cache == null && configs.containsKey(name)) {
+      cache = getCache(name);
+    }
+    if (cache != null) {
+      Settings.LOGGER.log(Level.FINER, String.format("Clear cache %s", name));
+      cache.clear();
+    }
   }
 
   public synchronized static void clearAllCache() {
-    for (String cacheName : CacheManager.getInstance().getCacheNames()) {
+    for (String cacheName : configs.keySet()) {
       clearCache(cacheName);
     }
+    for (String cacheName : new ArrayList<String>(caches.keySet())) {
+      clearCache(cacheName);
+    }
+    HttpResponseCache.getInstance().clear();
+    ImageStore.getInstance().clear();
+  }
+
+  private static final int DEFAULT_WEIGHT = 1024;
+  private final String name;
+  private final long timeToLive;
+  private final MemoryStore memory;
+  private final SegmentStore disk;
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong diskHits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+  private Cache(String name, Config config) {
+    this.name = name;
+    timeToLive = config.timeToLive;
+    memory = new MemoryStore(config.maxMemoryBytes);
+    disk = (config.maxDiskBytes > 0) ? new SegmentStore(new File(diskStoreDir, name), config.maxDiskBytes) : null;
   }
 
-  private final net.sf.ehcache.Cache cache;
+  @Override
+  public String getName() {
+    return name;
+  }
 
-  protected Cache(net.sf.ehcache.Cache cache) {
-    this.cache = cache;
+  public void put(Object key, Object value) {
+    put(key, value, timeToLive);
   }
 
-  public synchronized void put(Object key, Object value) {
+  /**
+   * Add value with its own time to live
+   *
+   * @param key
+   * @param value
+   * @param timeToLive Time to live (ms)
+   */
+  public void put(Object key, Object value, long timeToLive) {
     try {
-      Settings.LOGGER.log(Level.FINER, String.format("Add object to cache %s", cache.getName()));
-      cache.put(new Element(key, value));
-      Settings.LOGGER.log(Level.FINEST, String.format("Cache %s is now %s octets", cache.getName(), getSize()));
+      Settings.LOGGER.log(Level.FINER, String.format("Add object to cache %s", name));
+      long expires = System.currentTimeMillis() + timeToLive;
+      byte[] keyBytes = null;
+      byte[] data = null;
+      CacheCodec codec = (disk != null) ? getCodec(value) : null;
+      if (codec != null) {
+        keyBytes = serializationCodec.encode(key);
+        try {
+          data = codec.encode(value);
+        } catch (IOException e) {
+          // value contains a type unknown by codec
+          Settings.LOGGER.log(Level.FINEST, e.getMessage());
+          codec = serializationCodec;
+          data = codec.encode(value);
+        }
+      }
+
+      memory.put(key, new Entry(value, data != null ? keyBytes.length + data.length : getWeight(key, value), expires));
+      if (data != null) {
+        disk.put(keyBytes, expires, codec.getId(), data);
+      }
+      Settings.LOGGER.log(Level.FINEST, String.format("Cache %s is now %s octets", name, getMemorySize()));
     } catch (Throwable e) {
       Settings.LOGGER.log(Level.WARNING, e.getMessage());
       remove(key); // fail-safe
     }
   }
 
+  /**
+   * Weight of a value not stored on disk, encoded once to get its size
+   *
+   * @param key
+   * @param value
+   * @return Encoded size or default weight if value can not be encoded
+   */
+  private static int getWeight(Object key, Object value) {
+    CacheCodec codec = getCodec(value);
+    if (codec == null) {
+      return DEFAULT_WEIGHT;
+    }
+
+    try {
+      int keyLength = serializationCodec.encode(key).length;
+      try {
+        return keyLength + codec.encode(value).length;
+      } catch (IOException e) {
+        // value contains a type unknown by codec
+        return keyLength + serializationCodec.encode(value).length;
+      }
+    } catch (IOException e) {
+      Settings.LOGGER.log(Level.FINEST, e.getMessage());
+      return DEFAULT_WEIGHT;
+    }
+  }
+
   public Object get(Object key) {
     return get(key, Object.class);
   }
 
   public <T> T get(Object key, Class<T> type) {
+    Element<T> element = getElement(key, type);
+    return (element != null) ? element.getValue() : null;
+  }
+
+  /**
+   * Get value with its expiration time
+   *
+   * @param <T>
+   * @param key
+   * @param type
+   * @return Element or null if not cached
+   */
+  public <T> Element<T> getElement(Object key, Class<T> type) {
     try {
-      Element element = cache.get(key);
-      if (element != null && key.equals(element.getKey())) {
-        return type.cast(element.getValue());
+      Entry entry = memory.get(key);
+      if (entry != null) {
+        hits.incrementAndGet();
+        return new Element<T>(type.cast(entry.value), entry.expires);
+      }
+
+      entry = (disk != null) ? read(serializationCodec.encode(key)) : null;
+      if (entry != null) {
+        diskHits.incrementAndGet();
+        memory.put(key, entry);
+        return new Element<T>(type.cast(entry.value), entry.expires);
       }
     } catch (Exception e) {
       Settings.LOGGER.log(Level.WARNING, e.getMessage(), e);
       remove(key); // fail-safe
     }
 
+    misses.incrementAndGet();
     return null;
   }
 
-  public synchronized void remove(Object key) {
+  private Entry read(byte[] keyBytes) throws IOException {
+    SegmentStore.Record record = disk.get(keyBytes);
+    if (record == null) {
+      return null;
+    }
+
+    CacheCodec codec = getCodec(record.codecId);
+    if (codec == null) {
+      throw new IOException(String.format("Unknown codec %d for cache %s", record.codecId, name));
+    }
+    return new Entry(codec.decode(record.data), keyBytes.length + record.data.length, record.expires);
+  }
+
+  public void remove(Object key) {
     try {
-      cache.remove(key);
+      memory.remove(key);
+      if (disk != null) {
+        disk.remove(serializationCodec.encode(key));
+      }
     } catch (Exception e) {
       Settings.LOGGER.log(Level.WARNING, e.getMessage(), e);
     }
   }
 
+  private void clear() {
+    memory.clear();
+    if (disk != null) {
+      try {
+        disk.clear();
+      } catch (IOException e) {
+        Settings.LOGGER.log(Level.WARNING, e.getMessage(), e);
+      }
+    }
+  }
+
+  /**
+   * @return Size of values kept in memory and on disk
+   */
+  @Override
   public long getSize() {
-    long size = 0;
-    size = cache.getMemoryStoreSize();
-    size = cache.getDiskStoreSize();
-    size = cache.getSize();
-    size = cache.calculateInMemorySize();
-    return size;
+    return getMemorySize() + getDiskSize();
+  }
+
+  /**
+   * @return Size of values kept in memory (encoded size)
+   */
+  @Override
+  public long getMemorySize() {
+    return memory.getSize();
+  }
+
+  /**
+   * @return Size of disk store files
+   */
+  @Override
+  public long getDiskSize() {
+    return (disk != null) ? disk.getSize() : 0;
+  }
+
+  /**
+   * @return Default time to live (ms)
+   */
+  @Override
+  public long getTimeToLive() {
+    return timeToLive;
+  }
+
+  /**
+   * @return Memory hits
+   */
+  @Override
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  @Override
+  public long getDiskHitCount() {
+    return diskHits.get();
+  }
+
+  @Override
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  /**
+   * @return Memory and disk hits ratio
+   */
+  @Override
+  public double getHitRatio() {
+    long hit = hits.get() + diskHits.get();
+    long total = hit + misses.get();
+    return total > 0 ? (double) hit / total : 0;
+  }
+
+  @Override
+  public long getEvictionCount() {
+    return memory.getEvictionCount();
+  }
+
+  @Override
+  public long getDiskEvictionCount() {
+    return (disk != null) ? disk.getEvictionCount() : 0;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%s : %d hits (%d disk), %d misses, %d/%d evictions, %d bytes in memory, %d bytes on disk", name, getHitCount() + getDiskHitCount(), getDiskHitCount(), getMissCount(), getEvictionCount(), getDiskEvictionCount(), getMemorySize(), getDiskSize());
   }
 
   public static class CacheKey implements Serializable {
@@ -194,4 +464,169 @@ public final class Cache {
       return Arrays.toString(fields);
     }
   }
+
+  /**
+   * Class Element, cached value
+   *
+   * @param <T> Value type
+   */
+  public static final class Element<T> {
+
+    private final T value;
+    private final long expirationTime;
+
+    private Element(T value, long expirationTime) {
+      this.value = value;
+      this.expirationTime = expirationTime;
+    }
+
+    public T getValue() {
+      return value;
+    }
+
+    public long getExpirationTime() {
+      return expirationTime;
+    }
+  }
+
+  private static class Config {
+
+    private final long maxMemoryBytes;
+    private final long maxDiskBytes;
+    private final long timeToLive;
+
+    /**
+     * @param maxMemoryBytes Max size of memory store
+     * @param maxDiskBytes Max size of disk store, 0 for memory only
+     * @param timeToLive Time to live in ms
+     */
+    public Config(long maxMemoryBytes, long maxDiskBytes, long timeToLive) {
+      this.maxMemoryBytes = maxMemoryBytes;
+      this.maxDiskBytes = maxDiskBytes;
+      this.timeToLive = timeToLive;
+    }
+  }
+
+  private static class Entry {
+
+    private final Object value;
+    private final int weight;
+    private final long expires;
+
+    public Entry(Object value, int weight, long expires) {
+      this.value = value;
+      this.weight = weight;
+      this.expires = expires;
+    }
+
+    public boolean isExpired() {
+      return System.currentTimeMillis() > expires;
+    }
+  }
+
+  /**
+   * Class MemoryStore, LRU bounded by bytes, split in segments locked
+   * separately
+   */
+  private static class MemoryStore {
+
+    private static final int SEGMENTS = 8;
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final AtomicLong evictions = new AtomicLong();
+
+    public MemoryStore(long maxBytes) {
+      for (int i = 0; i < SEGMENTS; i++) {
+        segments[i] = new Segment(maxBytes / SEGMENTS);
+      }
+    }
+
+    private Segment getSegment(Object key) {
+      int hash = key.hashCode();
+      return segments[(hash ^ (hash >>> 16)) & (SEGMENTS - 1)];
+    }
+
+    public Entry get(Object key) {
+      Segment segment = getSegment(key);
+      synchronized (segment) {
+        Entry entry = segment.get(key);
+        if (entry == null) {
+          return null;
+        }
+        if (entry.isExpired()) {
+          segment.removeEntry(key);
+          return null;
+        }
+        return entry;
+      }
+    }
+
+    public void put(Object key, Entry entry) {
+      Segment segment = getSegment(key);
+      synchronized (segment) {
+        segment.removeEntry(key);
+        if (entry.weight > segment.maxBytes) {
+          // would evict everything, only kept on disk
+          return;
+        }
+
+        segment.put(key, entry);
+        segment.size += entry.weight;
+        Iterator<Entry> it = segment.values().iterator();
+        while (segment.size > segment.maxBytes && it.hasNext()) {
+          segment.size -= it.next().weight;
+          it.remove();
+          evictions.incrementAndGet();
+        }
+      }
+    }
+
+    public void remove(Object key) {
+      Segment segment = getSegment(key);
+      synchronized (segment) {
+        segment.removeEntry(key);
+      }
+    }
+
+    public void clear() {
+      for (Segment segment : segments) {
+        synchronized (segment) {
+          segment.clear();
+          segment.size = 0;
+        }
+      }
+    }
+
+    public long getSize() {
+      long size = 0;
+      for (Segment segment : segments) {
+        synchronized (segment) {
+          size += segment.size;
+        }
+      }
+      return size;
+    }
+
+    public long getEvictionCount() {
+      return evictions.get();
+    }
+  }
+
+  private static class Segment extends LinkedHashMap<Object, Entry> {
+
+    private static final long serialVersionUID = 1L;
+    private final long maxBytes;
+    private long size;
+
+    public Segment(long maxBytes) {
+      super(16, 0.75f, true);
+      this.maxBytes = maxBytes;
+    }
+
+    public void removeEntry(Object key) {
+      Entry entry = remove(key);
+      if (entry != null) {
+        size -= entry.weight;
+      }
+    }
+  }
 }
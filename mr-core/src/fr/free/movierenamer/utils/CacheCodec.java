@@ -0,0 +1,40 @@
+/*
+ * movie-renamer-core
+ * Copyright (C) 2012-2013 Nicolas Magré
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.free.movierenamer.utils;
+
+import java.io.IOException;
+
+/**
+ * Interface CacheCodec, encodes values stored in the disk tier of
+ * {@link Cache}
+ *
+ * @author Nicolas Magré
+ */
+public interface CacheCodec {
+
+  /**
+   * @return Codec id, stored with each entry (must never change)
+   */
+  public int getId();
+
+  public boolean canEncode(Object value);
+
+  public byte[] encode(Object value) throws IOException;
+
+  public Object decode(byte[] data) throws IOException;
+}
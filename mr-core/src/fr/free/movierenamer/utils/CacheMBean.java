@@ -0,0 +1,48 @@
+/*
+ * movie-renamer-core
+ * Copyright (C) 2012-2013 Nicolas Magré
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.free.movierenamer.utils;
+
+/**
+ * Interface CacheMBean, cache statistics exposed by JMX
+ *
+ * @author Nicolas Magré
+ */
+public interface CacheMBean {
+
+  String getName();
+
+  long getTimeToLive();
+
+  long getHitCount();
+
+  long getDiskHitCount();
+
+  long getMissCount();
+
+  double getHitRatio();
+
+  long getEvictionCount();
+
+  long getDiskEvictionCount();
+
+  long getMemorySize();
+
+  long getDiskSize();
+
+  long getSize();
+}
@@ -17,32 +17,77 @@
  */
 package fr.free.movierenamer.utils;
 
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.logging.Level;
-import java.util.logging.Logger;
 
-import fr.free.movierenamer.scrapper.SearchScrapper;
+import fr.free.movierenamer.scrapper.ScrapperManager;
 import fr.free.movierenamer.settings.Settings;
 import fr.free.movierenamer.utils.Cache.CacheKey;
 
 /**
  * Class CacheObject
  *
+ * Values older than fresh time are returned at once and reloaded in
+ * background. Load errors (not found, timeout, ...) can be cached for a
+ * short time, the same error is thrown until then.
+ *
  * @author Nicolas Magré
  * @author Simon QUÉMÉNEUR
  */
 public class CacheObject {
+  private static final ConcurrentMap<CacheKey, Boolean> refreshing = new ConcurrentHashMap<CacheKey, Boolean>();
   private final String id;
   private final Cache cache;
+  private final long freshTime;
+  private final long errorTime;
+  private final CacheStatistics statistics;
 
   public CacheObject(String id, Cache cache) {
+    this(id, cache, cache.getTimeToLive(), 0);
+  }
+
+  /**
+   * @param id
+   * @param cache
+   * @param freshTime Time (ms) a value is fresh
+   * @param errorTime Time (ms) a load error is cached, 0 to not cache errors
+   */
+  public CacheObject(String id, Cache cache, long freshTime, long errorTime) {
     this.id = id;
     this.cache = cache;
+    this.freshTime = freshTime;
+    this.errorTime = errorTime;
+    statistics = CacheStatistics.getStatistics(id);
   }
 
-  protected String normalize(String query) {
-    return query == null ? null : query.trim().toLowerCase();
+  /**
+   * @return Statistics of lookups done with a loader
+   */
+  public CacheStatistics getStatistics() {
+    return statistics;
+  }
+
+  /**
+   * Canonical search key, queries which only differ by case, punctuation or
+   * spaces share the same cache entry
+   *
+   * @param query
+   * @return Search key
+   */
+  public static String normalize(String query) {
+    if (query == null || query.contains("://")) {
+      // url search
+      return query;
+    }
+    return StringUtils.removePunctuation(query).toLowerCase(Locale.ROOT);
   }
 
   public synchronized <T> List<T> putList(Object key, Locale language, Class<T> type, List<T> object) {
@@ -78,6 +123,159 @@ public class CacheObject {
     return null;
   }
 
+  /**
+   * Get list from cache or load it, identical loads running at the same time
+   * are done only once
+   *
+   * @param <T>
+   * @param key
+   * @param language
+   * @param type
+   * @param loader Called on cache miss, result is cached
+   * @return Cached or loaded list
+   * @throws Exception Loader exception
+   */
+  public <T> List<T> getList(Object key, Locale language, Class<T> type, Callable<List<T>> loader) throws Exception {
+    return get(new CacheKey(id, key, type, language), List.class, loader);
+  }
+
+  /**
+   * Get data from cache or load it, identical loads running at the same time
+   * are done only once
+   *
+   * @param <T>
+   * @param key
+   * @param language
+   * @param type
+   * @param loader Called on cache miss, result is cached
+   * @return Cached or loaded data
+   * @throws Exception Loader exception
+   */
+  public <T> T getData(Object key, Locale language, Class<T> type, Callable<T> loader) throws Exception {
+    return get(new CacheKey(id, key, language), type, loader);
+  }
+
+  @SuppressWarnings("unchecked")
+  private <V> V get(final CacheKey cacheKey, final Class<?> type, final Callable<V> loader) throws Exception {
+    Cache.Element<?> element = cache.getElement(cacheKey, type);
+    if (element != null) {
+      if (System.currentTimeMillis() >= element.getExpirationTime() - cache.getTimeToLive() + freshTime) {
+        statistics.staleHit();
+        refresh(cacheKey, loader);
+      } else {
+        statistics.hit();
+      }
+      return (V) element.getValue();
+    }
+
+    Exception error = cache.get(getErrorKey(cacheKey), Exception.class);
+    if (error != null) {
+      statistics.errorHit();
+      Settings.LOGGER.log(Level.FINE, String.format("Cached error for %s : %s", cacheKey, error));
+      throw copyError(error);
+    }
+
+    statistics.miss();
+    return SingleFlight.execute(cacheKey, new Callable<V>() {
+      @Override
+      public V call() throws Exception {
+        // a load may have ended between cache check and flight start
+        Cache.Element<?> element = cache.getElement(cacheKey, type);
+        if (element != null) {
+          return (V) element.getValue();
+        }
+
+        V value;
+        long start = System.nanoTime();
+        try {
+          value = loader.call();
+        } catch (Exception ex) {
+          statistics.load(System.nanoTime() - start, true);
+          if (errorTime > 0 && isCacheable(ex)) {
+            cache.put(getErrorKey(cacheKey), ex, errorTime);
+          }
+          throw ex;
+        }
+        statistics.load(System.nanoTime() - start, false);
+        cache.put(cacheKey, value);
+        return value;
+      }
+    });
+  }
+
+  /**
+   * Cached error is shared, each caller gets its own exception (and stack
+   * trace) of the same type, caused by cached error
+   */
+  private static Exception copyError(Exception error) {
+    try {
+      Exception copy = error.getClass().getConstructor(String.class).newInstance(error.getMessage());
+      copy.initCause(error);
+      return copy;
+    } catch (Exception ex) {
+      // no message constructor or cause already set
+      return new IOException(error.getMessage(), error);
+    }
+  }
+
+  private static CacheKey getErrorKey(CacheKey cacheKey) {
+    return new CacheKey("error", cacheKey);
+  }
+
+  /**
+   * Throttling (429, 503, ...) and connection errors are not cached, they must
+   * be retried
+   *
+   * @return True if error will probably happen again (not found, timeout)
+   */
+  private static boolean isCacheable(Exception error) {
+    return error instanceof FileNotFoundException || error instanceof SocketTimeoutException;
+  }
+
+  /**
+   * Reload stale value in background, stale value stays in cache if reload
+   * fails
+   */
+  private <V> void refresh(final CacheKey cacheKey, final Callable<V> loader) {
+    if (refreshing.putIfAbsent(cacheKey, Boolean.TRUE) != null) {
+      return;
+    }
+
+    Settings.LOGGER.log(Level.FINE, String.format("Refresh stale cache entry %s", cacheKey));
+    try {
+      ScrapperManager.getExecutor().submit(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            SingleFlight.execute(cacheKey, new Callable<V>() {
+              @Override
+              public V call() throws Exception {
+                statistics.refresh();
+                V value;
+                long start = System.nanoTime();
+                try {
+                  value = loader.call();
+                } catch (Exception ex) {
+                  statistics.load(System.nanoTime() - start, true);
+                  throw ex;
+                }
+                statistics.load(System.nanoTime() - start, false);
+                cache.put(cacheKey, value);
+                return value;
+              }
+            });
+          } catch (Exception ex) {
+            Settings.LOGGER.log(Level.WARNING, String.format("Failed to refresh %s : %s", cacheKey, ex));
+          } finally {
+            refreshing.remove(cacheKey);
+          }
+        }
+      });
+    } catch (RejectedExecutionException ex) {
+      refreshing.remove(cacheKey);
+    }
+  }
+
   public <T> T getData(Object key, Locale language, Class<T> type) {
     try {
       T value = cache.get(new CacheKey(id, key, language), type);
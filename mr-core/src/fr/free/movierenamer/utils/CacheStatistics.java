@@ -0,0 +1,235 @@
+/*
+ * movie-renamer-core
+ * Copyright (C) 2012-2013 Nicolas Magré
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.free.movierenamer.utils;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Level;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import fr.free.movierenamer.settings.Settings;
+
+/**
+ * Class CacheStatistics, lookups of a {@link CacheObject} id (a scrapper) :
+ * hits, misses, loads and load time histogram
+ *
+ * Statistics are shared by all cache objects with the same id and registered
+ * as MBean "fr.free.movierenamer:type=CacheStatistics,name=id".
+ *
+ * @author Nicolas Magré
+ */
+public final class CacheStatistics implements CacheStatisticsMBean {
+
+  private static final ConcurrentMap<String, CacheStatistics> statistics = new ConcurrentHashMap<String, CacheStatistics>();
+  // upper bound (ms) of each histogram bucket, last bucket has no bound
+  private static final long[] buckets = {10, 50, 100, 250, 500, 1000, 2500, 5000, 10000, Long.MAX_VALUE};
+  private final String id;
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong staleHits = new AtomicLong();
+  private final AtomicLong errorHits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong loads = new AtomicLong();
+  private final AtomicLong loadErrors = new AtomicLong();
+  private final AtomicLong refreshes = new AtomicLong();
+  private final AtomicLong loadTime = new AtomicLong();
+  private final AtomicLongArray histogram = new AtomicLongArray(buckets.length);
+
+  /**
+   * Get statistics of id, created on first use
+   *
+   * @param id
+   * @return Statistics
+   */
+  public static CacheStatistics getStatistics(String id) {
+    CacheStatistics stats = statistics.get(id);
+    if (stats == null) {
+      stats = new CacheStatistics(id);
+      CacheStatistics previous = statistics.putIfAbsent(id, stats);
+      if (previous != null) {
+        return previous;
+      }
+      registerMBean(stats, "CacheStatistics", id);
+    }
+    return stats;
+  }
+
+  /**
+   * @return Statistics of all ids
+   */
+  public static List<CacheStatistics> getAllStatistics() {
+    return new ArrayList<CacheStatistics>(statistics.values());
+  }
+
+  static void registerMBean(Object mbean, String type, String name) {
+    try {
+      ObjectName objectName = new ObjectName(String.format("fr.free.movierenamer:type=%s,name=%s", type, ObjectName.quote(name)));
+      if (!ManagementFactory.getPlatformMBeanServer().isRegistered(objectName)) {
+        ManagementFactory.getPlatformMBeanServer().registerMBean(mbean, objectName);
+      }
+    } catch (JMException ex) {
+      Settings.LOGGER.log(Level.WARNING, String.format("Failed to register %s MBean %s : %s", type, name, ex));
+    }
+  }
+
+  private CacheStatistics(String id) {
+    this.id = id;
+  }
+
+  void hit() {
+    hits.incrementAndGet();
+  }
+
+  void staleHit() {
+    hits.incrementAndGet();
+    staleHits.incrementAndGet();
+  }
+
+  void errorHit() {
+    errorHits.incrementAndGet();
+  }
+
+  void miss() {
+    misses.incrementAndGet();
+  }
+
+  void refresh() {
+    refreshes.incrementAndGet();
+  }
+
+  /**
+   * @param nanos Load time in ns
+   * @param failed
+   */
+  void load(long nanos, boolean failed) {
+    loads.incrementAndGet();
+    if (failed) {
+      loadErrors.incrementAndGet();
+    }
+    long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+    loadTime.addAndGet(millis);
+    int bucket = 0;
+    while (millis >= buckets[bucket]) {
+      bucket++;
+    }
+    histogram.incrementAndGet(bucket);
+  }
+
+  @Override
+  public String getId() {
+    return id;
+  }
+
+  @Override
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  @Override
+  public long getStaleHitCount() {
+    return staleHits.get();
+  }
+
+  @Override
+  public long getErrorHitCount() {
+    return errorHits.get();
+  }
+
+  @Override
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  @Override
+  public double getHitRatio() {
+    long hit = hits.get();
+    long total = hit + misses.get();
+    return total > 0 ? (double) hit / total : 0;
+  }
+
+  @Override
+  public long getLoadCount() {
+    return loads.get();
+  }
+
+  @Override
+  public long getLoadErrorCount() {
+    return loadErrors.get();
+  }
+
+  @Override
+  public long getRefreshCount() {
+    return refreshes.get();
+  }
+
+  /**
+   * @return Average load time (ms)
+   */
+  @Override
+  public double getAverageLoadTime() {
+    long count = loads.get();
+    return count > 0 ? (double) loadTime.get() / count : 0;
+  }
+
+  /**
+   * @return Upper bound (ms, excluded) of each histogram bucket
+   */
+  @Override
+  public long[] getLoadTimeBuckets() {
+    return buckets.clone();
+  }
+
+  /**
+   * @return Number of loads in each bucket, see {@link #getLoadTimeBuckets()}
+   */
+  @Override
+  public long[] getLoadTimeHistogram() {
+    long[] counts = new long[buckets.length];
+    for (int i = 0; i < counts.length; i++) {
+      counts[i] = histogram.get(i);
+    }
+    return counts;
+  }
+
+  @Override
+  public void reset() {
+    hits.set(0);
+    staleHits.set(0);
+    errorHits.set(0);
+    misses.set(0);
+    loads.set(0);
+    loadErrors.set(0);
+    refreshes.set(0);
+    loadTime.set(0);
+    for (int i = 0; i < buckets.length; i++) {
+      histogram.set(i, 0);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%s : %d hits (%d stale, %d errors), %d misses, %d loads (%d failed), %.1f ms per load", id, getHitCount(), getStaleHitCount(), getErrorHitCount(), getMissCount(), getLoadCount(), getLoadErrorCount(), getAverageLoadTime());
+  }
+}
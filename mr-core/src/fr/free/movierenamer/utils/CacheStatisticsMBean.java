@@ -0,0 +1,52 @@
+/*
+ * movie-renamer-core
+ * Copyright (C) 2012-2013 Nicolas Magré
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.free.movierenamer.utils;
+
+/**
+ * Interface CacheStatisticsMBean, scrapper cache statistics exposed by JMX
+ *
+ * @author Nicolas Magré
+ */
+public interface CacheStatisticsMBean {
+
+  String getId();
+
+  long getHitCount();
+
+  long getStaleHitCount();
+
+  long getErrorHitCount();
+
+  long getMissCount();
+
+  double getHitRatio();
+
+  long getLoadCount();
+
+  long getLoadErrorCount();
+
+  long getRefreshCount();
+
+  double getAverageLoadTime();
+
+  long[] getLoadTimeBuckets();
+
+  long[] getLoadTimeHistogram();
+
+  void reset();
+}
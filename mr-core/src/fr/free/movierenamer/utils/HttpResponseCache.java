@@ -0,0 +1,456 @@
+/*
+ * movie-renamer-core
+ * Copyright (C) 2012-2013 Nicolas Magré
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.free.movierenamer.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+import fr.free.movierenamer.settings.Settings;
+
+/**
+ * Class HttpResponseCache, raw http responses with their validators (ETag,
+ * Last-Modified) stored on disk
+ *
+ * Next request on the same url is sent with If-None-Match/If-Modified-Since,
+ * on "304 Not Modified" the body is read from disk instead of network.
+ * Bodies are stored as received (still gzip/deflate encoded). Binary and
+ * large responses are not stored, least recently used responses are removed
+ * when cache is full and responses not used for a month are removed.
+ *
+ * @author Nicolas Magré
+ */
+public final class HttpResponseCache {
+
+  private static final int VERSION = 1;
+  private static final int HTTP_NOT_MODIFIED = 304;
+  private static final long MAX_BYTES = 64 * 1024 * 1024;
+  private static final long MAX_ENTRY_BYTES = 2 * 1024 * 1024;
+  private static final long MAX_AGE = TimeUnit.DAYS.toMillis(30);
+  private final File folder;
+  private final long maxBytes;
+  private final AtomicLong size = new AtomicLong();
+
+  private static class HttpResponseCacheHolder {
+
+    // Settings can not be used by URIRequest before settings file is loaded
+    private static final HttpResponseCache instance = new HttpResponseCache(new File(new File(Settings.appFolder, "cache"), "http"));
+  }
+
+  public static HttpResponseCache getInstance() {
+    return HttpResponseCacheHolder.instance;
+  }
+
+  public HttpResponseCache(File folder) {
+    this(folder, MAX_BYTES);
+  }
+
+  HttpResponseCache(File folder, long maxBytes) {
+    this.folder = folder;
+    this.maxBytes = maxBytes;
+    // remove old responses, compute size
+    evict();
+  }
+
+  /**
+   * Prepare a request, validators of cached response are added to connection
+   *
+   * @param connection Connection not yet connected
+   * @return Request or null if response can not be cached
+   */
+  public Request open(URLConnection connection) {
+    if (!(connection instanceof HttpURLConnection) || !Settings.getInstance().isCacheHttpResponse()) {
+      return null;
+    }
+
+    HttpURLConnection http = (HttpURLConnection) connection;
+    if (!"GET".equals(http.getRequestMethod())) {
+      return null;
+    }
+
+    // same url with other headers (language, api key, ...) may be another response
+    String key = StringUtils.bytesToHex(StringUtils.getSha1(http.getURL().toString() + http.getRequestProperties()));
+    Request request = new Request(http, new File(folder, key));
+    Entry entry = request.entry;
+    if (entry != null) {
+      if (entry.etag.length() > 0) {
+        http.addRequestProperty("If-None-Match", entry.etag);
+      }
+      if (entry.lastModified.length() > 0) {
+        http.addRequestProperty("If-Modified-Since", entry.lastModified);
+      }
+    }
+    return request;
+  }
+
+  /**
+   * Remove all cached responses
+   */
+  public void clear() {
+    File[] files = folder.listFiles();
+    if (files == null) {
+      return;
+    }
+
+    Settings.LOGGER.log(Level.FINER, String.format("Clear http response cache %s", folder));
+    for (File file : files) {
+      if (!file.delete()) {
+        Settings.LOGGER.log(Level.WARNING, String.format("Failed to delete %s", file));
+      }
+    }
+    size.set(0);
+  }
+
+  /**
+   * @return Size of cached responses
+   */
+  public long getSize() {
+    return size.get();
+  }
+
+  /**
+   * Remove responses not used for a long time, then least recently used
+   * responses until cache is 90% full
+   */
+  private synchronized void evict() {
+    File[] files = folder.listFiles();
+    if (files == null) {
+      size.set(0);
+      return;
+    }
+
+    long now = System.currentTimeMillis();
+    long total = 0;
+    final Map<File, Long> lastUsed = new HashMap<File, Long>();
+    List<File> entries = new ArrayList<File>();
+    for (File file : files) {
+      long modified = file.lastModified();
+      if (now - modified > MAX_AGE) {
+        // also temporary files left by a crash
+        file.delete();
+        continue;
+      }
+      if (file.getName().endsWith(".tmp")) {
+        // response being stored
+        continue;
+      }
+      lastUsed.put(file, modified);
+      entries.add(file);
+      total += file.length();
+    }
+
+    if (total > maxBytes) {
+      Collections.sort(entries, new Comparator<File>() {
+        @Override
+        public int compare(File f1, File f2) {
+          return lastUsed.get(f1).compareTo(lastUsed.get(f2));
+        }
+      });
+
+      for (int i = 0; i < entries.size() && total > maxBytes * 9 / 10; i++) {
+        long length = entries.get(i).length();
+        if (entries.get(i).delete()) {
+          total -= length;
+        }
+      }
+      Settings.LOGGER.log(Level.FINER, String.format("Http response cache evicted to %d octets", total));
+    }
+    size.set(total);
+  }
+
+  /**
+   * @return True if response is binary (image, archive, ...)
+   */
+  private static boolean isBinary(String contentType) {
+    return contentType.startsWith("image/") || contentType.startsWith("video/") || contentType.startsWith("audio/")
+            || contentType.startsWith("application/zip") || contentType.startsWith("application/x-zip") || contentType.startsWith("application/octet-stream");
+  }
+
+  private static Entry readEntry(DataInputStream in) throws IOException {
+    if (in.readInt() != VERSION) {
+      throw new IOException("Unsupported http cache entry version");
+    }
+    Entry entry = new Entry();
+    entry.etag = in.readUTF();
+    entry.lastModified = in.readUTF();
+    entry.contentType = in.readUTF();
+    entry.contentEncoding = in.readUTF();
+    return entry;
+  }
+
+  private static void writeEntry(DataOutputStream out, Entry entry) throws IOException {
+    out.writeInt(VERSION);
+    out.writeUTF(entry.etag);
+    out.writeUTF(entry.lastModified);
+    out.writeUTF(entry.contentType);
+    out.writeUTF(entry.contentEncoding);
+  }
+
+  private static String nonNull(String value) {
+    return value != null ? value : "";
+  }
+
+  private static String toNull(String value) {
+    return value.length() > 0 ? value : null;
+  }
+
+  private static class Entry {
+
+    private String etag;
+    private String lastModified;
+    private String contentType;
+    private String contentEncoding;
+  }
+
+  /**
+   * Class Request, a request which may be answered from cache
+   */
+  public final class Request {
+
+    private final HttpURLConnection connection;
+    private final File file;
+    private final Entry entry;
+    private boolean notModified;
+
+    private Request(HttpURLConnection connection, File file) {
+      this.connection = connection;
+      this.file = file;
+      this.entry = getEntry();
+    }
+
+    private Entry getEntry() {
+      if (!file.isFile()) {
+        return null;
+      }
+
+      try {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 512));
+        try {
+          return readEntry(in);
+        } finally {
+          in.close();
+        }
+      } catch (IOException ex) {
+        Settings.LOGGER.log(Level.WARNING, String.format("Corrupted http cache entry %s : %s", file, ex.getMessage()));
+        file.delete();
+        return null;
+      }
+    }
+
+    /**
+     * Get response body, from cache on "304 Not Modified" or from network
+     * (stored in cache while it is read)
+     *
+     * @param inputStream Network input stream
+     * @return Response body, still encoded (see
+     * {@link #getContentEncoding()})
+     * @throws IOException
+     */
+    public InputStream getInputStream(InputStream inputStream) throws IOException {
+      int code = connection.getResponseCode();
+      if (code == HTTP_NOT_MODIFIED && entry != null) {
+        inputStream.close();// give connection back to transport
+        notModified = true;
+        Settings.LOGGER.log(Level.FINE, String.format("Not modified, read %s from cache", connection.getURL()));
+        // last used date for eviction
+        file.setLastModified(System.currentTimeMillis());
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        readEntry(in);
+        return in;
+      }
+
+      if (code != HttpURLConnection.HTTP_OK) {
+        return inputStream;
+      }
+
+      Entry response = new Entry();
+      response.etag = nonNull(connection.getHeaderField("ETag"));
+      response.lastModified = nonNull(connection.getHeaderField("Last-Modified"));
+      response.contentType = nonNull(connection.getContentType());
+      response.contentEncoding = nonNull(connection.getContentEncoding());
+      if (response.etag.length() == 0 && response.lastModified.length() == 0 || isBinary(response.contentType) || connection.getContentLength() > MAX_ENTRY_BYTES) {
+        if (entry != null) {
+          file.delete();
+        }
+        return inputStream;
+      }
+
+      try {
+        if (!folder.isDirectory() && !folder.mkdirs()) {
+          throw new IOException("Failed to create cache dir: " + folder);
+        }
+        return new StoreInputStream(inputStream, file, response);
+      } catch (IOException ex) {
+        Settings.LOGGER.log(Level.WARNING, ex.getMessage());
+        return inputStream;
+      }
+    }
+
+    public String getContentType() {
+      return notModified ? toNull(entry.contentType) : connection.getContentType();
+    }
+
+    public String getContentEncoding() {
+      return notModified ? toNull(entry.contentEncoding) : connection.getContentEncoding();
+    }
+  }
+
+  /**
+   * Class StoreInputStream, copy network stream to a temporary file, file
+   * replaces cache entry once the whole response is read, response is not
+   * stored if it is too large
+   */
+  private class StoreInputStream extends FilterInputStream {
+
+    private final File file;
+    private final File tmpFile;
+    private DataOutputStream out;
+    private long length;
+
+    public StoreInputStream(InputStream in, File file, Entry entry) throws IOException {
+      super(in);
+      this.file = file;
+      tmpFile = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+      out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+      try {
+        writeEntry(out, entry);
+      } catch (IOException ex) {
+        discard();
+        throw ex;
+      }
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = super.read();
+      if (b >= 0) {
+        store(new byte[]{(byte) b}, 0, 1);
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int n = super.read(b, off, len);
+      if (n > 0) {
+        store(b, off, n);
+      }
+      return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      // skipped bytes must be stored too
+      byte[] buffer = new byte[(int) Math.min(n, 4096)];
+      int read = read(buffer, 0, buffer.length);
+      return Math.max(read, 0);
+    }
+
+    @Override
+    public boolean markSupported() {
+      return false;
+    }
+
+    private void store(byte[] b, int off, int len) {
+      if (out == null) {
+        return;
+      }
+
+      length += len;
+      if (length > MAX_ENTRY_BYTES) {
+        Settings.LOGGER.log(Level.FINE, String.format("Response too large for http cache %s", file));
+        discard();
+        return;
+      }
+
+      try {
+        out.write(b, off, len);
+      } catch (IOException ex) {
+        Settings.LOGGER.log(Level.WARNING, ex.getMessage());
+        discard();
+      }
+    }
+
+    private void discard() {
+      try {
+        out.close();
+      } catch (IOException ex) {
+        // file is deleted anyway
+      }
+      out = null;
+      tmpFile.delete();
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        if (out != null) {
+          // parsers may stop before the end, read the rest (needed to keep socket alive anyway)
+          byte[] buffer = new byte[4096];
+          while (read(buffer, 0, buffer.length) >= 0) {
+            // stored
+          }
+        }
+      } catch (IOException ex) {
+        if (out != null) {
+          discard();
+        }
+      } finally {
+        super.close();
+      }
+
+      if (out == null) {
+        return;
+      }
+
+      try {
+        out.close();
+        out = null;
+        long previous = file.length();
+        // renameTo does not replace existing file on all platforms
+        if (!tmpFile.renameTo(file) && !(file.delete() && tmpFile.renameTo(file))) {
+          throw new IOException("Failed to store http cache entry " + file);
+        }
+        if (size.addAndGet(file.length() - previous) > maxBytes) {
+          evict();
+        }
+      } catch (IOException ex) {
+        Settings.LOGGER.log(Level.WARNING, ex.getMessage());
+        tmpFile.delete();
+      }
+    }
+  }
+}
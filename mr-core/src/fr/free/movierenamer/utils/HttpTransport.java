@@ -0,0 +1,49 @@
+/*
+ * movie-renamer-core
+ * Copyright (C) 2012-2013 Nicolas Magré
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.free.movierenamer.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URLConnection;
+
+/**
+ * Interface HttpTransport, network layer used by {@link URIRequest}
+ *
+ * @author Nicolas Magré
+ */
+public interface HttpTransport {
+
+  /**
+   * Create a connection for uri, not connected yet
+   *
+   * @param uri
+   * @return Connection (proxy and timeouts already set)
+   * @throws IOException
+   */
+  public URLConnection openConnection(URI uri) throws IOException;
+
+  /**
+   * Connect and get raw (not decoded) response body
+   *
+   * @param connection Connection created by {@link #openConnection(URI)}
+   * @return Response stream, closing it gives the connection back to the transport
+   * @throws IOException
+   */
+  public InputStream getInputStream(URLConnection connection) throws IOException;
+}
@@ -0,0 +1,249 @@
+/*
+ * movie-renamer-core
+ * Copyright (C) 2012-2013 Nicolas Magré
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.free.movierenamer.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+import fr.free.movierenamer.settings.Settings;
+import fr.free.movierenamer.utils.Cache.CacheKey;
+
+/**
+ * Class ImageStore, images stored on disk as downloaded (compressed), files
+ * are named by the hash of their content
+ *
+ * Image url is mapped to content hash in "long" cache, same image from many
+ * urls is stored once. Least recently used images are removed when store is
+ * full.
+ *
+ * @author Nicolas Magré
+ */
+public final class ImageStore {
+
+  private static final long MAX_BYTES = 256 * 1024 * 1024;
+  private final File folder;
+  private final long maxBytes;
+  private final AtomicLong size = new AtomicLong();
+
+  private static class ImageStoreHolder {
+
+    private static final ImageStore instance = new ImageStore(new File(new File(Settings.appFolder, "cache"), "images"), MAX_BYTES);
+  }
+
+  public static ImageStore getInstance() {
+    return ImageStoreHolder.instance;
+  }
+
+  ImageStore(File folder, long maxBytes) {
+    this.folder = folder;
+    this.maxBytes = maxBytes;
+    File[] files = folder.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        size.addAndGet(file.length());
+      }
+    }
+  }
+
+  private static CacheKey getKey(URI uri) {
+    return new CacheKey("image", uri.toString());
+  }
+
+  private File getFile(URI uri) {
+    String hash = Cache.getCache("long").get(getKey(uri), String.class);
+    return (hash != null) ? new File(folder, hash) : null;
+  }
+
+  /**
+   * @param uri
+   * @return True if image is stored
+   */
+  public boolean contains(URI uri) {
+    File file = getFile(uri);
+    return file != null && file.isFile();
+  }
+
+  /**
+   * Get image bytes from store, or download and store them, identical
+   * downloads running at the same time are done once
+   *
+   * @param uri Image uri
+   * @return Image file content
+   * @throws IOException
+   */
+  public byte[] getBytes(final URI uri) throws IOException {
+    byte[] bytes = read(uri);
+    if (bytes != null) {
+      return bytes;
+    }
+
+    try {
+      return SingleFlight.execute(getKey(uri), new Callable<byte[]>() {
+        @Override
+        public byte[] call() throws Exception {
+          byte[] bytes = read(uri);
+          return (bytes != null) ? bytes : download(uri);
+        }
+      });
+    } catch (IOException ex) {
+      throw ex;
+    } catch (Exception ex) {
+      throw new IOException(ex.toString());
+    }
+  }
+
+  private byte[] read(URI uri) throws IOException {
+    File file = getFile(uri);
+    if (file == null) {
+      return null;
+    }
+    if (!file.isFile()) {
+      // removed from store
+      Cache.getCache("long").remove(getKey(uri));
+      return null;
+    }
+
+    byte[] bytes = readAll(new FileInputStream(file));
+    file.setLastModified(System.currentTimeMillis());
+    return bytes;
+  }
+
+  private byte[] download(URI uri) throws IOException {
+    byte[] bytes = readAll(URIRequest.getInputStream(uri));
+    String hash = StringUtils.bytesToHex(StringUtils.getSha1(bytes));
+    File file = new File(folder, hash);
+    if (!file.isFile()) {
+      try {
+        write(file, bytes);
+      } catch (IOException ex) {
+        Settings.LOGGER.log(Level.WARNING, String.format("Failed to store image %s : %s", uri, ex.getMessage()));
+        return bytes;
+      }
+    }
+
+    Cache.getCache("long").put(getKey(uri), hash);
+    return bytes;
+  }
+
+  private static byte[] readAll(InputStream in) throws IOException {
+    try {
+      ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+      byte[] buffer = new byte[8192];
+      int n;
+      while ((n = in.read(buffer)) >= 0) {
+        out.write(buffer, 0, n);
+      }
+      return out.toByteArray();
+    } finally {
+      in.close();
+    }
+  }
+
+  void write(File file, byte[] bytes) throws IOException {
+    if (!folder.isDirectory() && !folder.mkdirs()) {
+      throw new IOException("Failed to create cache dir: " + folder);
+    }
+
+    File tmpFile = File.createTempFile(file.getName(), ".tmp", folder);
+    OutputStream out = new FileOutputStream(tmpFile);
+    try {
+      out.write(bytes);
+    } finally {
+      out.close();
+    }
+
+    // same content may be stored by another instance meanwhile, it is
+    // already counted in size
+    boolean exists = file.isFile();
+    if (!tmpFile.renameTo(file) && !file.isFile()) {
+      tmpFile.delete();
+      throw new IOException("Failed to store image " + file);
+    }
+    tmpFile.delete();
+    if (!exists && size.addAndGet(bytes.length) > maxBytes) {
+      evict();
+    }
+  }
+
+  /**
+   * Remove least recently used images until store is 90% full
+   */
+  private synchronized void evict() {
+    File[] files = folder.listFiles();
+    if (files == null || size.get() <= maxBytes) {
+      return;
+    }
+
+    final Map<File, Long> lastModified = new HashMap<File, Long>();
+    for (File file : files) {
+      lastModified.put(file, file.lastModified());
+    }
+    Arrays.sort(files, new Comparator<File>() {
+      @Override
+      public int compare(File f1, File f2) {
+        return lastModified.get(f1).compareTo(lastModified.get(f2));
+      }
+    });
+
+    for (int i = 0; i < files.length && size.get() > maxBytes * 9 / 10; i++) {
+      long length = files[i].length();
+      if (files[i].delete()) {
+        size.addAndGet(-length);
+      }
+    }
+    Settings.LOGGER.log(Level.FINER, String.format("Image store evicted to %d octets", size.get()));
+  }
+
+  /**
+   * @return Size of stored images
+   */
+  public long getSize() {
+    return size.get();
+  }
+
+  /**
+   * Remove all stored images
+   */
+  public synchronized void clear() {
+    File[] files = folder.listFiles();
+    if (files == null) {
+      return;
+    }
+
+    Settings.LOGGER.log(Level.FINER, String.format("Clear image store %s", folder));
+    for (File file : files) {
+      if (!file.delete()) {
+        Settings.LOGGER.log(Level.WARNING, String.format("Failed to delete %s", file));
+      }
+    }
+    size.set(0);
+  }
+}
@@ -0,0 +1,360 @@
+/*
+ * movie-renamer-core
+ * Copyright (C) 2012-2013 Nicolas Magré
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.free.movierenamer.utils;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+
+/**
+ * Class JSONFilter, streaming json parser which only builds the selected
+ * paths
+ *
+ * Paths use {@link JSONUtils} syntax ("cast/name"), arrays are transparent
+ * and "*" matches any key. The whole value found at the end of a path is
+ * kept. The result can be read with {@link JSONUtils} as if the whole
+ * document was parsed, other fields are only scanned, without building any
+ * string, number, map or list. A filter is immutable and can be shared by
+ * threads.
+ *
+ * @author Nicolas Magré
+ */
+public final class JSONFilter {
+
+  private static final String ANY = "*";
+  private final Node root = new Node();
+
+  public JSONFilter(String... paths) {
+    for (String path : paths) {
+      Node node = root;
+      for (String key : path.split("/")) {
+        Node child = node.children.get(key);
+        if (child == null) {
+          child = new Node();
+          node.children.put(key, child);
+        }
+        node = child;
+      }
+      node.keepAll = true;
+    }
+    root.mergeAny();
+  }
+
+  /**
+   * Parse json document, only selected paths are built
+   *
+   * @param reader
+   * @return Filtered document, null if document is not an object
+   * @throws IOException
+   */
+  public JSONObject parse(Reader reader) throws IOException {
+    Object result = new Parser(reader).parse(root);
+    return result instanceof JSONObject ? (JSONObject) result : null;
+  }
+
+  private static class Node {
+
+    private final Map<String, Node> children = new HashMap<String, Node>();
+    private boolean keepAll;
+
+    /**
+     * Keys matched by "*" and by their name must follow both paths
+     */
+    private void mergeAny() {
+      Node any = children.get(ANY);
+      for (Map.Entry<String, Node> child : children.entrySet()) {
+        if (any != null && !child.getKey().equals(ANY)) {
+          child.getValue().merge(any);
+        }
+        child.getValue().mergeAny();
+      }
+    }
+
+    private void merge(Node node) {
+      keepAll |= node.keepAll;
+      for (Map.Entry<String, Node> child : node.children.entrySet()) {
+        Node mergedChild = children.get(child.getKey());
+        if (mergedChild == null) {
+          mergedChild = new Node();
+          children.put(child.getKey(), mergedChild);
+        }
+        mergedChild.merge(child.getValue());
+      }
+    }
+
+    private Node getChild(String key) {
+      if (keepAll) {
+        return this;
+      }
+      Node child = children.get(key);
+      return child != null ? child : children.get(ANY);
+    }
+  }
+
+  /**
+   * Class Parser, recursive descent parser, values of skipped paths are
+   * scanned without being built
+   */
+  private static class Parser {
+
+    private final Reader reader;
+    private final char[] buffer = new char[8192];
+    private final StringBuilder sb = new StringBuilder();
+    private int position;
+    private int limit;
+    private long offset;
+
+    public Parser(Reader reader) {
+      this.reader = reader;
+    }
+
+    public Object parse(Node node) throws IOException {
+      Object value = readValue(node);
+      if (nextToken() != -1) {
+        throw error("end of document");
+      }
+      return value;
+    }
+
+    private int read() throws IOException {
+      if (position == limit) {
+        offset += limit;
+        limit = reader.read(buffer, 0, buffer.length);
+        position = 0;
+        if (limit <= 0) {
+          limit = 0;
+          return -1;
+        }
+      }
+      return buffer[position++];
+    }
+
+    private void unread() {
+      position--;
+    }
+
+    private int nextToken() throws IOException {
+      int c;
+      do {
+        c = read();
+      } while (c == ' ' || c == '\n' || c == '\r' || c == '\t');
+      return c;
+    }
+
+    private IOException error(String expected) {
+      return new IOException(String.format("Invalid json document, %s expected at %d", expected, offset + position));
+    }
+
+    /**
+     * Read a value
+     *
+     * @param node Path node of value, null to skip value
+     * @return Value or null if skipped
+     */
+    private Object readValue(Node node) throws IOException {
+      int c = nextToken();
+      switch (c) {
+        case '{':
+          return readObject(node);
+        case '[':
+          return readArray(node);
+        case '"':
+          return readString(node != null);
+        case 't':
+          readLiteral("rue");
+          return Boolean.TRUE;
+        case 'f':
+          readLiteral("alse");
+          return Boolean.FALSE;
+        case 'n':
+          readLiteral("ull");
+          return null;
+        default:
+          if (c == '-' || (c >= '0' && c <= '9')) {
+            unread();
+            return readNumber(node != null);
+          }
+          throw error("value");
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    private JSONObject readObject(Node node) throws IOException {
+      JSONObject object = (node != null) ? new JSONObject() : null;
+      int c = nextToken();
+      if (c == '}') {
+        return object;
+      }
+
+      while (true) {
+        if (c != '"') {
+          throw error("key");
+        }
+        String key = readString(node != null);
+        if (nextToken() != ':') {
+          throw error("':'");
+        }
+        Node child = (node != null) ? node.getChild(key) : null;
+        Object value = readValue(child);
+        if (child != null) {
+          object.put(key, value);
+        }
+
+        c = nextToken();
+        if (c == '}') {
+          return object;
+        }
+        if (c != ',') {
+          throw error("',' or '}'");
+        }
+        c = nextToken();
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    private JSONArray readArray(Node node) throws IOException {
+      // arrays are transparent, elements use the array path
+      JSONArray array = (node != null) ? new JSONArray() : null;
+      int c = nextToken();
+      if (c == ']') {
+        return array;
+      }
+      if (c == -1) {
+        throw error("value");
+      }
+
+      unread();
+      while (true) {
+        Object value = readValue(node);
+        if (array != null) {
+          array.add(value);
+        }
+
+        c = nextToken();
+        if (c == ']') {
+          return array;
+        }
+        if (c != ',') {
+          throw error("',' or ']'");
+        }
+      }
+    }
+
+    private String readString(boolean build) throws IOException {
+      if (build) {
+        sb.setLength(0);
+      }
+
+      while (true) {
+        int c = read();
+        switch (c) {
+          case -1:
+            throw error("'\"'");
+          case '"':
+            return build ? sb.toString() : null;
+          case '\\':
+            c = readEscape();
+            break;
+          default:
+        }
+        if (build) {
+          sb.append((char) c);
+        }
+      }
+    }
+
+    private int readEscape() throws IOException {
+      int c = read();
+      switch (c) {
+        case 'b':
+          return '\b';
+        case 'f':
+          return '\f';
+        case 'n':
+          return '\n';
+        case 'r':
+          return '\r';
+        case 't':
+          return '\t';
+        case 'u':
+          int code = 0;
+          for (int i = 0; i < 4; i++) {
+            int digit = Character.digit(read(), 16);
+            if (digit < 0) {
+              throw error("hex digit");
+            }
+            code = (code << 4) + digit;
+          }
+          return code;
+        case -1:
+          throw error("escape");
+        default:
+          // '"', '\\', '/'
+          return c;
+      }
+    }
+
+    /**
+     * Read number, same types as json-simple (Long or Double)
+     */
+    private Number readNumber(boolean build) throws IOException {
+      if (build) {
+        sb.setLength(0);
+      }
+
+      boolean decimal = false;
+      while (true) {
+        int c = read();
+        if (c >= '0' && c <= '9' || c == '-' || c == '+') {
+          // digit
+        } else if (c == '.' || c == 'e' || c == 'E') {
+          decimal = true;
+        } else {
+          if (c != -1) {
+            unread();
+          }
+          break;
+        }
+        if (build) {
+          sb.append((char) c);
+        }
+      }
+
+      if (!build) {
+        return null;
+      }
+      try {
+        return decimal ? (Number) Double.valueOf(sb.toString()) : (Number) Long.valueOf(sb.toString());
+      } catch (NumberFormatException ex) {
+        throw error("number");
+      }
+    }
+
+    private void readLiteral(String rest) throws IOException {
+      for (int i = 0; i < rest.length(); i++) {
+        if (read() != rest.charAt(i)) {
+          throw error("literal");
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,174 @@
+/*
+ * movie-renamer-core
+ * Copyright (C) 2012-2013 Nicolas Magré
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.free.movierenamer.utils;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import fr.free.movierenamer.settings.Settings;
+
+/**
+ * Class PooledHttpTransport, default {@link HttpTransport}
+ *
+ * Sockets are kept alive by the JDK keep-alive cache as long as response
+ * streams are read and closed, this class limits the number of connections
+ * opened at the same time on each host.
+ *
+ * @author Nicolas Magré
+ */
+public class PooledHttpTransport implements HttpTransport {
+
+  private final ConcurrentMap<String, Semaphore> hosts = new ConcurrentHashMap<String, Semaphore>();
+  private final AtomicBoolean keepAliveInit = new AtomicBoolean(false);
+
+  @Override
+  public URLConnection openConnection(URI uri) throws IOException {
+    if (!isHttp(uri)) {
+      return uri.toURL().openConnection();
+    }
+
+    // Settings can not be used before, settings file is loaded with URIRequest
+    Settings settings = Settings.getInstance();
+    initKeepAlive(settings);
+
+    URLConnection connection;
+    if (Proxy.Type.HTTP.name().equalsIgnoreCase(uri.getScheme()) && settings.isProxyIsOn()) {
+      Proxy proxy = new Proxy(Proxy.Type.HTTP, new InetSocketAddress(settings.getProxyUrl(), settings.getProxyPort()));
+      connection = uri.toURL().openConnection(proxy);
+    } else {
+      connection = uri.toURL().openConnection();
+    }
+
+    connection.setConnectTimeout(settings.getHttpConnectTimeOut() * 1000); // in ms
+    connection.setReadTimeout(settings.getHttpRequestTimeOut() * 1000); // in ms
+    return connection;
+  }
+
+  @Override
+  public InputStream getInputStream(URLConnection connection) throws IOException {
+    if (!(connection instanceof HttpURLConnection)) {
+      return connection.getInputStream();
+    }
+
+    Semaphore slot = getHostSlot(connection.getURL());
+    try {
+      slot.acquire();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting a connection to " + connection.getURL().getHost());
+    }
+
+    try {
+      return new PooledInputStream(connection.getInputStream(), slot);
+    } catch (IOException ex) {
+      consumeErrorStream((HttpURLConnection) connection);
+      slot.release();
+      throw ex;
+    } catch (RuntimeException ex) {
+      slot.release();
+      throw ex;
+    }
+  }
+
+  private Semaphore getHostSlot(URL url) {
+    int port = url.getPort() != -1 ? url.getPort() : url.getDefaultPort();
+    String key = url.getHost().toLowerCase() + ":" + port;
+    Semaphore slot = hosts.get(key);
+    if (slot == null) {
+      slot = new Semaphore(Math.max(1, Settings.getInstance().getHttpMaxConnectionsPerHost()), true);
+      Semaphore previous = hosts.putIfAbsent(key, slot);
+      if (previous != null) {
+        slot = previous;
+      }
+    }
+    return slot;
+  }
+
+  private void initKeepAlive(Settings settings) {
+    if (keepAliveInit.compareAndSet(false, true)) {
+      // only used by HttpURLConnection if set before the first request
+      if (System.getProperty("http.keepAlive") == null) {
+        System.setProperty("http.keepAlive", "true");
+      }
+      if (System.getProperty("http.maxConnections") == null) {
+        System.setProperty("http.maxConnections", String.valueOf(Math.max(1, settings.getHttpMaxConnectionsPerHost())));
+      }
+    }
+  }
+
+  /**
+   * Read error body, otherwise the socket can not be reused
+   *
+   * @param connection
+   */
+  private static void consumeErrorStream(HttpURLConnection connection) {
+    InputStream error = connection.getErrorStream();
+    if (error == null) {
+      return;
+    }
+
+    try {
+      byte[] buffer = new byte[4096];
+      while (error.read(buffer) >= 0) {
+        // skip
+      }
+      error.close();
+    } catch (IOException ex) {
+      // socket will not be reused
+    }
+  }
+
+  private static boolean isHttp(URI uri) {
+    String scheme = uri.getScheme();
+    return "http".equalsIgnoreCase(scheme) || "https".equalsIgnoreCase(scheme);
+  }
+
+  private static class PooledInputStream extends FilterInputStream {
+
+    private final Semaphore slot;
+    private final AtomicBoolean released = new AtomicBoolean(false);
+
+    public PooledInputStream(InputStream in, Semaphore slot) {
+      super(in);
+      this.slot = slot;
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        super.close();
+      } finally {
+        if (released.compareAndSet(false, true)) {
+          slot.release();
+        }
+      }
+    }
+  }
+}
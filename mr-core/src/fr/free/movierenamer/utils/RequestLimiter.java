@@ -0,0 +1,320 @@
+/*
+ * movie-renamer-core
+ * Copyright (C) 2012-2013 Nicolas Magré
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.free.movierenamer.utils;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import fr.free.movierenamer.settings.Settings;
+
+/**
+ * Class RequestLimiter, throttle requests sent to a host
+ *
+ * A token bucket limits the request rate and an AIMD governor limits the
+ * number of requests running at the same time : concurrency grows by one
+ * each time a full window of requests succeeds and is halved on network
+ * error or when a response is slower than the latency threshold.
+ *
+ * Limiters are declared by scrappers and used by {@link URIRequest} for each
+ * request, hosts of the same domain (api.themoviedb.org, themoviedb.org)
+ * share the same limiter.
+ *
+ * @author Nicolas Magré
+ */
+public final class RequestLimiter {
+
+  private static final ConcurrentMap<String, RequestLimiter> limiters = new ConcurrentHashMap<String, RequestLimiter>();
+  private static final RequestLimiter unlimited = new RequestLimiter("*", null);
+  private final String host;
+  private final Limit limit;
+  // token bucket
+  private double tokens;
+  private long lastRefill;
+  // AIMD governor
+  private double concurrency;
+  private int running;
+  private long lastDecrease;
+
+  /**
+   * Get limiter of host, limit is only used the first time a host is seen
+   *
+   * @param host
+   * @param limit Limit, null for no limit
+   * @return Limiter shared by all scrappers of host
+   */
+  public static RequestLimiter getLimiter(String host, Limit limit) {
+    if (host == null || limit == null) {
+      if (limit != null) {
+        Settings.LOGGER.log(Level.WARNING, "Request limit declared without host, requests are not limited");
+      }
+      return unlimited;
+    }
+
+    String key = getHostKey(host);
+    RequestLimiter limiter = limiters.get(key);
+    if (limiter == null) {
+      limiter = new RequestLimiter(key, limit);
+      RequestLimiter previous = limiters.putIfAbsent(key, limiter);
+      if (previous != null) {
+        limiter = previous;
+      }
+    }
+    return limiter;
+  }
+
+  /**
+   * Get limiter declared for host
+   *
+   * @param host
+   * @return Limiter of host or a limiter without limit if no scrapper declared
+   * a limit for host
+   */
+  public static RequestLimiter getLimiter(String host) {
+    RequestLimiter limiter = host != null ? limiters.get(getHostKey(host)) : null;
+    return limiter != null ? limiter : unlimited;
+  }
+
+  /**
+   * Get domain of host, "api.themoviedb.org" and "themoviedb.org" give
+   * "themoviedb.org"
+   *
+   * @param host Host, may be followed by a path
+   * @return Host key
+   */
+  static String getHostKey(String host) {
+    int index = host.indexOf('/');
+    if (index >= 0) {
+      host = host.substring(0, index);
+    }
+    host = host.toLowerCase(Locale.ENGLISH);
+
+    String[] labels = host.split("\\.");
+    int nbLabel = labels.length;
+    if (nbLabel <= 2 || labels[nbLabel - 1].isEmpty() || Character.isDigit(labels[nbLabel - 1].charAt(0))) {
+      // ip address or domain
+      return host;
+    }
+
+    // keep "screenrush.co.uk" and not "co.uk"
+    int keep = (labels[nbLabel - 1].length() == 2 && labels[nbLabel - 2].length() <= 3) ? 3 : 2;
+    StringBuilder key = new StringBuilder();
+    for (int i = nbLabel - keep; i < nbLabel; i++) {
+      if (key.length() > 0) {
+        key.append('.');
+      }
+      key.append(labels[i]);
+    }
+    return key.toString();
+  }
+
+  private RequestLimiter(String host, Limit limit) {
+    this.host = host;
+    this.limit = limit;
+    if (limit != null) {
+      tokens = limit.getBurst();
+      concurrency = limit.getInitialConcurrency();
+    }
+    lastRefill = System.nanoTime();
+    lastDecrease = lastRefill;
+  }
+
+  /**
+   * Wait until a request can be sent
+   *
+   * @return Permit to release when request is done
+   * @throws InterruptedIOException
+   */
+  public Permit acquire() throws InterruptedIOException {
+    if (limit == null) {
+      return new Permit(this, System.nanoTime());
+    }
+
+    try {
+      long wait;
+      synchronized (this) {
+        while (running >= (int) concurrency) {
+          wait();
+        }
+        running++;
+        wait = reserveToken();
+      }
+
+      if (wait > 0) {
+        Settings.LOGGER.log(Level.FINEST, String.format("Wait %d ms before sending request to %s", TimeUnit.NANOSECONDS.toMillis(wait), host));
+        TimeUnit.NANOSECONDS.sleep(wait);
+      }
+    } catch (InterruptedException ex) {
+      synchronized (this) {
+        running--;
+        notifyAll();
+      }
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting to send request to " + host);
+    }
+
+    return new Permit(this, System.nanoTime());
+  }
+
+  /**
+   * Take a token, bucket can go in debt, caller has to wait until the debt is
+   * paid back
+   *
+   * @return Time to wait in ns
+   */
+  private long reserveToken() {
+    long now = System.nanoTime();
+    tokens = Math.min(limit.getBurst(), tokens + (now - lastRefill) * limit.getRate() / TimeUnit.SECONDS.toNanos(1));
+    lastRefill = now;
+    tokens--;
+    if (tokens >= 0) {
+      return 0;
+    }
+    return (long) (-tokens * TimeUnit.SECONDS.toNanos(1) / limit.getRate());
+  }
+
+  private synchronized void release(long start, long response, Throwable error) {
+    if (limit == null) {
+      return;
+    }
+
+    running--;
+    long now = System.nanoTime();
+    // latency is the time to response, reading a large body is not congestion
+    long latency = (response != 0 ? response : now) - start;
+    boolean congestion = isCongestion(error) || latency > TimeUnit.MILLISECONDS.toNanos(limit.getLatencyThreshold());
+    if (congestion) {
+      // only one decrease for requests sent before the last decrease
+      if (start > lastDecrease) {
+        concurrency = Math.max(1, concurrency / 2);
+        lastDecrease = now;
+        Settings.LOGGER.log(Level.FINE, String.format("Decrease concurrency on %s to %d", host, (int) concurrency));
+      }
+    } else if (error == null) {
+      concurrency = Math.min(limit.getMaxConcurrency(), concurrency + 1 / concurrency);
+    }
+    notifyAll();
+  }
+
+  private static boolean isCongestion(Throwable error) {
+    // 404 does not mean that host is overloaded
+    return error instanceof IOException && !(error instanceof FileNotFoundException);
+  }
+
+  public String getHost() {
+    return host;
+  }
+
+  public synchronized int getConcurrency() {
+    return limit == null ? Integer.MAX_VALUE : (int) concurrency;
+  }
+
+  public synchronized int getRunning() {
+    return running;
+  }
+
+  /**
+   * Class Permit, given by {@link RequestLimiter#acquire()}
+   */
+  public static final class Permit {
+
+    private final RequestLimiter limiter;
+    private final long start;
+    private long response;
+    private Throwable error;
+    private boolean released;
+
+    private Permit(RequestLimiter limiter, long start) {
+      this.limiter = limiter;
+      this.start = start;
+    }
+
+    /**
+     * Response (headers) is received, the body may still be read before the
+     * permit is released
+     */
+    public void setResponded() {
+      if (response == 0) {
+        response = System.nanoTime();
+      }
+    }
+
+    public void setError(Throwable error) {
+      this.error = error;
+    }
+
+    public void release() {
+      if (!released) {
+        released = true;
+        limiter.release(start, response, error);
+      }
+    }
+  }
+
+  /**
+   * Class Limit, declared by each scrapper
+   */
+  public static final class Limit {
+
+    private final double rate;
+    private final int burst;
+    private final int maxConcurrency;
+    private final long latencyThreshold;
+
+    /**
+     * @param rate Requests per second
+     * @param burst Requests that can be sent at once after an idle period
+     * @param maxConcurrency Max requests running at the same time
+     * @param latencyThreshold Slower requests (in ms) decrease concurrency
+     */
+    public Limit(double rate, int burst, int maxConcurrency, long latencyThreshold) {
+      if (rate <= 0 || burst < 1 || maxConcurrency < 1) {
+        throw new IllegalArgumentException("rate, burst and maxConcurrency must be positive");
+      }
+      this.rate = rate;
+      this.burst = burst;
+      this.maxConcurrency = maxConcurrency;
+      this.latencyThreshold = latencyThreshold;
+    }
+
+    public double getRate() {
+      return rate;
+    }
+
+    public int getBurst() {
+      return burst;
+    }
+
+    public int getMaxConcurrency() {
+      return maxConcurrency;
+    }
+
+    public int getInitialConcurrency() {
+      return Math.min(2, maxConcurrency);
+    }
+
+    public long getLatencyThreshold() {
+      return latencyThreshold;
+    }
+  }
+}
@@ -0,0 +1,616 @@
+/*
+ * movie-renamer-core
+ * Copyright (C) 2012-2013 Nicolas Magré
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.free.movierenamer.utils;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.zip.CRC32;
+
+import fr.free.movierenamer.settings.Settings;
+
+/**
+ * Class SegmentStore, disk store shared by all processes using the same
+ * folder
+ *
+ * Entries are appended to segment files (a new segment is started when the
+ * last one is full), appends are serialized between processes by a file
+ * lock. Readers never lock : an in-memory index (key hash to record
+ * location) is filled by scanning segment tails. Writers count appends and
+ * clears in a small memory mapped state file, readers only scan again when
+ * these counters have changed. A clear replaces the whole index and segment
+ * readers (segment ids are reused after a clear). Each record has a checksum
+ * and its full key, a torn or reused record is read as a miss. When the store
+ * is full, oldest segments are removed.
+ *
+ * @author Nicolas Magré
+ */
+final class SegmentStore {
+
+  private static final int MAGIC = 0x4D524331;
+  private static final int TOMBSTONE = -1;
+  private static final String EXTENSION = ".log";
+  // magic, body length, expires, key hash
+  private static final int HEADER_LENGTH = 4 + 4 + 8 + 20;
+  private static final int MAX_RECORD_LENGTH = 64 * 1024 * 1024;
+  // state file : append count, clear count
+  private static final String STATE = ".state";
+  private static final int APPENDS = 0;
+  private static final int CLEARS = 8;
+  private final File folder;
+  private final long maxBytes;
+  private final long segmentBytes;
+  private final MappedByteBuffer state;
+  private volatile View view = new View();
+  // counters seen by last scan
+  private volatile long scannedAppends = -1;
+  private volatile long scannedClears = -1;
+  // segment id -> scanned length, guarded by scanLock
+  private final Map<Long, Long> scanned = new TreeMap<Long, Long>();
+  private final Object scanLock = new Object();
+  private long lastSegment;
+  private final AtomicLong evictions = new AtomicLong();
+
+  /**
+   * Class Record, stored entry
+   */
+  static final class Record {
+
+    final long expires;
+    final int codecId;
+    final byte[] data;
+
+    private Record(long expires, int codecId, byte[] data) {
+      this.expires = expires;
+      this.codecId = codecId;
+      this.data = data;
+    }
+  }
+
+  /**
+   * Class View, index and segment readers, replaced as a whole on clear
+   */
+  private static final class View {
+
+    private final ConcurrentMap<String, Location> index = new ConcurrentHashMap<String, Location>();
+    private final ConcurrentMap<Long, RandomAccessFile> readers = new ConcurrentHashMap<Long, RandomAccessFile>();
+  }
+
+  private static final class Location {
+
+    private final long segment;
+    private final long offset;
+    private final long expires;
+    private final boolean removed;
+
+    public Location(long segment, long offset, long expires, boolean removed) {
+      this.segment = segment;
+      this.offset = offset;
+      this.expires = expires;
+      this.removed = removed;
+    }
+
+    public boolean isAfter(Location other) {
+      return segment > other.segment || segment == other.segment && offset > other.offset;
+    }
+  }
+
+  /**
+   * @param folder Store folder
+   * @param maxBytes Max size of all segments
+   */
+  public SegmentStore(File folder, long maxBytes) {
+    this.folder = folder;
+    this.maxBytes = maxBytes;
+    segmentBytes = Math.max(1024 * 1024, maxBytes / 16);
+    state = mapState();
+  }
+
+  private MappedByteBuffer mapState() {
+    try {
+      if (!folder.isDirectory() && !folder.mkdirs()) {
+        throw new IOException("Failed to create cache dir: " + folder);
+      }
+
+      RandomAccessFile file = new RandomAccessFile(new File(folder, STATE), "rw");
+      try {
+        // mapping stays valid once file is closed
+        return file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, 16);
+      } finally {
+        file.close();
+      }
+    } catch (IOException ex) {
+      // segment files are checked instead
+      Settings.LOGGER.log(Level.WARNING, String.format("Failed to map disk cache state %s : %s", folder, ex.getMessage()));
+      return null;
+    }
+  }
+
+  private long getState(int counter) {
+    return (state != null) ? state.getLong(counter) : 0;
+  }
+
+  /**
+   * Increment a state counter, called with file lock
+   *
+   * @return New counter value
+   */
+  private long incrementState(int counter) {
+    long value = getState(counter) + 1;
+    if (state != null) {
+      state.putLong(counter, value);
+    }
+    return value;
+  }
+
+  private static String getHash(byte[] key) {
+    return StringUtils.bytesToHex(StringUtils.getSha1(key));
+  }
+
+  private File getSegmentFile(long segment) {
+    return new File(folder, String.format("%016d%s", segment, EXTENSION));
+  }
+
+  /**
+   * @return Segment ids on disk, in append order
+   */
+  private long[] listSegments() {
+    String[] names = folder.list();
+    if (names == null) {
+      return new long[0];
+    }
+
+    long[] segments = new long[names.length];
+    int count = 0;
+    for (String name : names) {
+      if (name.endsWith(EXTENSION)) {
+        try {
+          segments[count++] = Long.parseLong(name.substring(0, name.length() - EXTENSION.length()));
+        } catch (NumberFormatException ex) {
+          // not a segment
+        }
+      }
+    }
+    segments = Arrays.copyOf(segments, count);
+    Arrays.sort(segments);
+    return segments;
+  }
+
+  /**
+   * Get entry
+   *
+   * @param key Serialized key
+   * @return Record or null if not found or expired
+   * @throws IOException
+   */
+  public Record get(byte[] key) throws IOException {
+    if (hasNewRecords()) {
+      refresh();
+    }
+
+    String hash = getHash(key);
+    View current = view;
+    Location location = current.index.get(hash);
+    if (location == null || location.removed || System.currentTimeMillis() > location.expires) {
+      return null;
+    }
+
+    Record record;
+    try {
+      record = read(current, location, key);
+    } catch (FileNotFoundException ex) {
+      // segment removed by another process
+      record = null;
+    } catch (ClosedChannelException ex) {
+      // store cleared meanwhile
+      return null;
+    }
+    if (record == null) {
+      current.index.remove(hash, location);
+    }
+    return record;
+  }
+
+  private Record read(View current, Location location, byte[] key) throws IOException {
+    FileChannel channel = getReader(current, location.segment);
+    ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+    if (!readFully(channel, header, location.offset) || header.getInt(0) != MAGIC) {
+      return null;
+    }
+    int bodyLength = header.getInt(4);
+    if (bodyLength < 0 || bodyLength > MAX_RECORD_LENGTH) {
+      return null;
+    }
+
+    ByteBuffer body = ByteBuffer.allocate(bodyLength + 4);
+    if (!readFully(channel, body, location.offset + HEADER_LENGTH)) {
+      return null;
+    }
+    CRC32 crc = new CRC32();
+    crc.update(header.array(), 8, HEADER_LENGTH - 8);
+    crc.update(body.array(), 0, bodyLength);
+    if ((int) crc.getValue() != body.getInt(bodyLength)) {
+      Settings.LOGGER.log(Level.FINE, String.format("Corrupted record in %s at %d", getSegmentFile(location.segment), location.offset));
+      return null;
+    }
+
+    body.rewind();
+    byte[] storedKey = new byte[body.getInt()];
+    body.get(storedKey);
+    if (!Arrays.equals(key, storedKey)) {
+      // hash collision or segment reused after a clear
+      return null;
+    }
+    int codecId = body.getInt();
+    byte[] data = new byte[body.getInt()];
+    body.get(data);
+    return new Record(header.getLong(8), codecId, data);
+  }
+
+  private FileChannel getReader(View current, long segment) throws IOException {
+    RandomAccessFile reader = current.readers.get(segment);
+    if (reader == null) {
+      reader = new RandomAccessFile(getSegmentFile(segment), "r");
+      RandomAccessFile previous = current.readers.putIfAbsent(segment, reader);
+      if (previous != null) {
+        reader.close();
+        reader = previous;
+      }
+    }
+    return reader.getChannel();
+  }
+
+  private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+    while (buffer.hasRemaining()) {
+      int n = channel.read(buffer, position + buffer.position());
+      if (n < 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Lock free check of state counters, segment files are only checked if
+   * state file could not be mapped (records are always appended to last
+   * segment, or to a new one)
+   *
+   * @return True if another process added or removed records since last
+   * scan
+   */
+  private boolean hasNewRecords() {
+    if (state != null) {
+      return state.getLong(APPENDS) != scannedAppends || state.getLong(CLEARS) != scannedClears;
+    }
+
+    synchronized (scanLock) {
+      Long length = scanned.get(lastSegment);
+      return length == null || getSegmentFile(lastSegment).length() != length || getSegmentFile(lastSegment + 1).exists();
+    }
+  }
+
+  /**
+   * Scan records appended since last scan
+   */
+  private void refresh() throws IOException {
+    synchronized (scanLock) {
+      // counters are read first, later changes are seen by next check
+      long appends = getState(APPENDS);
+      long clears = getState(CLEARS);
+      long[] segments = listSegments();
+      long lastOnDisk = segments.length > 0 ? segments[segments.length - 1] : 0;
+      if (scannedClears >= 0 && clears != scannedClears || lastOnDisk < lastSegment && !scanned.isEmpty()) {
+        // cleared by another process, segment ids start again
+        Settings.LOGGER.log(Level.FINE, String.format("Disk cache %s was cleared", folder));
+        reset();
+      }
+
+      // forget removed segments
+      Iterator<Long> it = scanned.keySet().iterator();
+      while (it.hasNext()) {
+        long segment = it.next();
+        if (Arrays.binarySearch(segments, segment) < 0) {
+          it.remove();
+          forget(segment);
+        }
+      }
+
+      for (long segment : segments) {
+        scan(segment);
+      }
+      lastSegment = Math.max(lastSegment, lastOnDisk);
+      scannedAppends = appends;
+      scannedClears = clears;
+    }
+  }
+
+  /**
+   * Scan segment from last scanned position to its last complete record
+   *
+   * @return Length of complete records
+   */
+  private long scan(long segment) throws IOException {
+    Long start = scanned.get(segment);
+    long position = (start != null) ? start : 0;
+    RandomAccessFile file;
+    try {
+      file = new RandomAccessFile(getSegmentFile(segment), "r");
+    } catch (FileNotFoundException ex) {
+      return position;
+    }
+
+    try {
+      long length = file.length();
+      byte[] keyHash = new byte[20];
+      while (position + HEADER_LENGTH <= length) {
+        file.seek(position);
+        int magic = file.readInt();
+        int bodyLength = file.readInt();
+        long expires = file.readLong();
+        file.readFully(keyHash);
+        long end = position + HEADER_LENGTH + bodyLength + 4;
+        if (magic != MAGIC || bodyLength < 0 || bodyLength > MAX_RECORD_LENGTH || end > length) {
+          // record being written (or torn by a crash)
+          break;
+        }
+
+        // codec id is after key
+        file.seek(position + HEADER_LENGTH + 4 + file.readInt());
+        boolean removed = file.readInt() == TOMBSTONE;
+        index(StringUtils.bytesToHex(keyHash), new Location(segment, position, expires, removed));
+        position = end;
+      }
+    } finally {
+      file.close();
+    }
+
+    scanned.put(segment, position);
+    return position;
+  }
+
+  /**
+   * Add location to index, unless index has a newer one
+   */
+  private void index(String hash, Location location) {
+    ConcurrentMap<String, Location> index = view.index;
+    while (true) {
+      Location current = index.putIfAbsent(hash, location);
+      if (current == null || !location.isAfter(current) || index.replace(hash, current, location)) {
+        return;
+      }
+    }
+  }
+
+  private void forget(long segment) {
+    View current = view;
+    Iterator<Location> it = current.index.values().iterator();
+    while (it.hasNext()) {
+      if (it.next().segment == segment) {
+        it.remove();
+      }
+    }
+
+    close(current.readers.remove(segment));
+  }
+
+  private static void close(RandomAccessFile reader) {
+    if (reader != null) {
+      try {
+        reader.close();
+      } catch (IOException ex) {
+        // already removed
+      }
+    }
+  }
+
+  /**
+   * Start again with a new view, readers of old one may still read
+   * removed segments (or a new segment with the same id)
+   */
+  private void reset() {
+    View old = view;
+    view = new View();
+    for (RandomAccessFile reader : old.readers.values()) {
+      close(reader);
+    }
+    scanned.clear();
+    lastSegment = 0;
+  }
+
+  /**
+   * Add entry
+   *
+   * @param key Serialized key
+   * @param expires Expiration time (ms)
+   * @param codecId Id of codec used to encode data
+   * @param data Encoded value
+   * @throws IOException
+   */
+  public void put(byte[] key, long expires, int codecId, byte[] data) throws IOException {
+    append(key, expires, codecId, data);
+  }
+
+  /**
+   * Remove entry, a removal record is appended so other processes see it
+   *
+   * @param key Serialized key
+   * @throws IOException
+   */
+  public void remove(byte[] key) throws IOException {
+    Location location = view.index.get(getHash(key));
+    if (location != null && !location.removed) {
+      append(key, 0, TOMBSTONE, new byte[0]);
+    }
+  }
+
+  private synchronized void append(byte[] key, long expires, int codecId, byte[] data) throws IOException {
+    byte[] keyHash = StringUtils.getSha1(key);
+    ByteBuffer record = ByteBuffer.allocate(HEADER_LENGTH + 4 + key.length + 8 + data.length + 4);
+    record.putInt(MAGIC);
+    record.putInt(4 + key.length + 8 + data.length);
+    record.putLong(expires);
+    record.put(keyHash);
+    record.putInt(key.length);
+    record.put(key);
+    record.putInt(codecId);
+    record.putInt(data.length);
+    record.put(data);
+    CRC32 crc = new CRC32();
+    crc.update(record.array(), 8, record.position() - 8);
+    record.putInt((int) crc.getValue());
+    record.flip();
+
+    FileLock lock = lock();
+    try {
+      synchronized (scanLock) {
+        refresh();
+        long segment = lastSegment;
+        long position = (segment > 0) ? scan(segment) : 0;
+        if (segment == 0 || position >= segmentBytes) {
+          segment = ++lastSegment;
+          position = 0;
+        }
+
+        RandomAccessFile file = new RandomAccessFile(getSegmentFile(segment), "rw");
+        try {
+          if (file.length() > position) {
+            // no one else is writing, end of file is a torn record
+            Settings.LOGGER.log(Level.WARNING, String.format("Truncate torn record in %s at %d", getSegmentFile(segment), position));
+            file.setLength(position);
+          }
+          FileChannel channel = file.getChannel();
+          while (record.hasRemaining()) {
+            channel.write(record, position + record.position());
+          }
+        } finally {
+          file.close();
+        }
+
+        index(StringUtils.bytesToHex(keyHash), new Location(segment, position, expires, codecId == TOMBSTONE));
+        scanned.put(segment, position + record.limit());
+        evict();
+        // all records until this one are scanned
+        scannedAppends = incrementState(APPENDS);
+      }
+    } finally {
+      unlock(lock);
+    }
+  }
+
+  private FileLock lock() throws IOException {
+    if (!folder.isDirectory() && !folder.mkdirs()) {
+      throw new IOException("Failed to create cache dir: " + folder);
+    }
+
+    RandomAccessFile file = new RandomAccessFile(new File(folder, ".lock"), "rw");
+    try {
+      return file.getChannel().lock();
+    } catch (IOException ex) {
+      file.close();
+      throw ex;
+    }
+  }
+
+  private static void unlock(FileLock lock) {
+    try {
+      lock.release();
+      lock.channel().close();
+    } catch (IOException ex) {
+      Settings.LOGGER.log(Level.WARNING, ex.toString());
+    }
+  }
+
+  /**
+   * Remove oldest segments until store is 90% full, called with file lock
+   */
+  private void evict() {
+    long size = 0;
+    for (Long length : scanned.values()) {
+      size += length;
+    }
+    if (size <= maxBytes) {
+      return;
+    }
+
+    Iterator<Map.Entry<Long, Long>> it = scanned.entrySet().iterator();
+    while (size > maxBytes * 9 / 10 && scanned.size() > 1) {
+      Map.Entry<Long, Long> segment = it.next();
+      forget(segment.getKey());
+      if (!getSegmentFile(segment.getKey()).delete()) {
+        Settings.LOGGER.log(Level.WARNING, String.format("Failed to delete %s", getSegmentFile(segment.getKey())));
+      }
+      size -= segment.getValue();
+      it.remove();
+      evictions.incrementAndGet();
+    }
+    Settings.LOGGER.log(Level.FINER, String.format("Disk cache %s evicted to %d octets", folder, size));
+  }
+
+  /**
+   * Remove all entries, for all processes
+   */
+  public synchronized void clear() throws IOException {
+    if (!folder.isDirectory()) {
+      return;
+    }
+
+    FileLock lock = lock();
+    try {
+      synchronized (scanLock) {
+        reset();
+        for (long segment : listSegments()) {
+          if (!getSegmentFile(segment).delete()) {
+            Settings.LOGGER.log(Level.WARNING, String.format("Failed to delete %s", getSegmentFile(segment)));
+          }
+        }
+        scannedClears = incrementState(CLEARS);
+        scannedAppends = getState(APPENDS);
+      }
+    } finally {
+      unlock(lock);
+    }
+  }
+
+  public long getSize() {
+    synchronized (scanLock) {
+      long size = 0;
+      for (Long length : scanned.values()) {
+        size += length;
+      }
+      return size;
+    }
+  }
+
+  public long getEvictionCount() {
+    return evictions.get();
+  }
+}
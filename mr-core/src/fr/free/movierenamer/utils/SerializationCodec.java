@@ -0,0 +1,70 @@
+/*
+ * movie-renamer-core
+ * Copyright (C) 2012-2013 Nicolas Magré
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.free.movierenamer.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+/**
+ * Class SerializationCodec, java serialization, used for values without a
+ * dedicated codec
+ *
+ * @author Nicolas Magré
+ */
+public final class SerializationCodec implements CacheCodec {
+
+  public static final int ID = 0;
+
+  @Override
+  public int getId() {
+    return ID;
+  }
+
+  @Override
+  public boolean canEncode(Object value) {
+    return value instanceof Serializable;
+  }
+
+  @Override
+  public byte[] encode(Object value) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+    ObjectOutputStream out = new ObjectOutputStream(bytes);
+    try {
+      out.writeObject(value);
+    } finally {
+      out.close();
+    }
+    return bytes.toByteArray();
+  }
+
+  @Override
+  public Object decode(byte[] data) throws IOException {
+    ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(data));
+    try {
+      return in.readObject();
+    } catch (ClassNotFoundException ex) {
+      throw new IOException(ex.toString());
+    } finally {
+      in.close();
+    }
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * movie-renamer-core
+ * Copyright (C) 2012-2013 Nicolas Magré
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.free.movierenamer.utils;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Class SingleFlight, only one loader runs at a time for a key, threads
+ * asking the same key meanwhile wait for it and share its result
+ *
+ * @author Nicolas Magré
+ */
+public final class SingleFlight {
+
+  private static final ConcurrentMap<Object, Flight<?>> flights = new ConcurrentHashMap<Object, Flight<?>>();
+
+  /**
+   * Run loader, or wait for the loader already running for key
+   *
+   * @param <T>
+   * @param key
+   * @param loader
+   * @return Loader result
+   * @throws Exception Loader exception
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> T execute(Object key, Callable<T> loader) throws Exception {
+    Flight<T> flight = new Flight<T>(loader);
+    Flight<T> running = (Flight<T>) flights.putIfAbsent(key, flight);
+    if (running != null) {
+      if (running.owner == Thread.currentThread()) {
+        // nested call on the same key (scrappers on the same host), waiting would never end
+        return loader.call();
+      }
+      return running.getResult();
+    }
+
+    try {
+      flight.run();
+    } finally {
+      flights.remove(key, flight);
+    }
+    return flight.getResult();
+  }
+
+  /**
+   * Number of loaders running
+   *
+   * @return Number of loaders running
+   */
+  public static int size() {
+    return flights.size();
+  }
+
+  private static class Flight<T> extends FutureTask<T> {
+
+    private final Thread owner = Thread.currentThread();
+
+    public Flight(Callable<T> callable) {
+      super(callable);
+    }
+
+    public T getResult() throws Exception {
+      try {
+        return get();
+      } catch (ExecutionException ex) {
+        Throwable cause = ex.getCause();
+        if (cause instanceof Exception) {
+          throw (Exception) cause;
+        }
+        if (cause instanceof Error) {
+          throw (Error) cause;
+        }
+        throw ex;
+      }
+    }
+  }
+
+  private SingleFlight() {
+    throw new UnsupportedOperationException();
+  }
+}
@@ -87,6 +87,36 @@ public class Sorter {
     }
   }
 
+  /**
+   * Sort search results like an interactive search does
+   *
+   * @param list Search results
+   * @param type Search sorter type
+   * @param year Searched year
+   * @param search Searched name
+   */
+  public static void sort(List<? extends ISort> list, SorterType type, int year, String search) {
+    switch (type) {
+      case ALPHABETIC:
+      case LENGTH:
+      case YEAR:
+        sort(list, type);
+        break;
+      case YEAR_ROUND:
+      case ALPHA_YEAR:
+        sort(list, type, year);
+        break;
+      case SIMMETRICS:
+        sort(list, search);
+        break;
+      case LEVEN_YEAR:
+        sort(list, year, search);
+        break;
+      default:
+      // Do nothing
+    }
+  }
+
   public static void sort(List<? extends ISort> list, SorterType type, int year) {
     if (type.equals(SorterType.YEAR_ROUND) || type.equals(SorterType.ALPHA_YEAR)) {
       sortYear(list, year, type.equals(SorterType.ALPHA_YEAR) ? new AlphabeticSort() : null);
@@ -53,8 +53,6 @@ public final class StringUtils {
   public static final String ENDLINE = System.getProperty("line.separator");
   public static final String EMPTY = "";
   public static final String DOT = ".";
-  private static final Pattern apostrophe = Pattern.compile("['`´‘’ʻ]");
-  private static final Pattern punctuation = Pattern.compile("[\\p{Punct}+&&[^:]]");
   private static final Pattern[] brackets = new Pattern[]{
     Pattern.compile("\\([^\\(]*\\)"), Pattern.compile("\\[[^\\[]*\\]"), Pattern.compile("\\{[^\\{]*\\}")
   };
@@ -277,11 +275,31 @@ public final class StringUtils {
   }
 
   public static String removePunctuation(String name) {
-    // remove/normalize special characters
-    name = apostrophe.matcher(name).replaceAll(" ");
-    name = punctuation.matcher(name).replaceAll(" ");
-    name = name.replaceAll("\\p{Space}+", " ");// Remove duplicate space
-    return name.trim();
+    // remove/normalize special characters and duplicate spaces, in one pass
+    StringBuilder sb = new StringBuilder(name.length());
+    boolean space = false;
+    for (int i = 0; i < name.length(); i++) {
+      char c = name.charAt(i);
+      if (c == ' ' || (c >= '\t' && c <= '\r') || isApostrophe(c) || (isPunctuation(c) && c != ':')) {
+        if (!space) {
+          sb.append(' ');
+          space = true;
+        }
+      } else {
+        sb.append(c);
+        space = false;
+      }
+    }
+    return sb.toString().trim();
+  }
+
+  private static boolean isApostrophe(char c) {
+    return c == '\'' || c == '`' || c == '´' || c == '‘' || c == '’' || c == 'ʻ';
+  }
+
+  private static boolean isPunctuation(char c) {
+    // same as \p{Punct}
+    return (c >= '!' && c <= '/') || (c >= ':' && c <= '@') || (c >= '[' && c <= '`') || (c >= '{' && c <= '~');
   }
 
   public static String removeBrackets(String name) {
@@ -314,9 +332,13 @@ public final class StringUtils {
   }
 
   public static byte[] getSha1(String str) {
+    return getSha1(str.getBytes());
+  }
+
+  public static byte[] getSha1(byte[] bytes) {
     try {
       MessageDigest md = MessageDigest.getInstance("SHA1");
-      md.update(str.getBytes());
+      md.update(bytes);
       return md.digest();
     } catch (NoSuchAlgorithmException ex) {
       Settings.LOGGER.log(Level.SEVERE, null, ex);
@@ -18,6 +18,7 @@
 package fr.free.movierenamer.utils;
 
 import java.io.BufferedReader;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -41,6 +42,15 @@ import java.util.zip.InflaterInputStream;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 
+import org.apache.xerces.xni.Augmentations;
+import org.apache.xerces.xni.NamespaceContext;
+import org.apache.xerces.xni.QName;
+import org.apache.xerces.xni.XMLAttributes;
+import org.apache.xerces.xni.XMLLocator;
+import org.apache.xerces.xni.XMLString;
+import org.apache.xerces.xni.XNIException;
+import org.apache.xerces.xni.parser.XMLDocumentFilter;
+import org.cyberneko.html.filters.DefaultFilter;
 import org.cyberneko.html.parsers.DOMParser;
 import org.json.simple.JSONObject;
 import org.json.simple.JSONValue;
@@ -49,7 +59,6 @@ import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
 import fr.free.movierenamer.settings.Settings;
-import java.net.InetSocketAddress;
 
 /**
  * Class URIRequest
@@ -61,6 +70,31 @@ public final class URIRequest {
 
   public static final String UTF = "UTF-8";
   public static final String ISO = "ISO-8859-1";
+  private static final Pattern CHARSET_PATTERN = Pattern.compile("charset=(\\p{Graph}+)");
+  private static volatile HttpTransport transport = new PooledHttpTransport();
+  private static final ThreadLocal<DOMParser> htmlParser = new ThreadLocal<DOMParser>() {
+    @Override
+    protected DOMParser initialValue() {
+      return createHtmlParser(false);
+    }
+  };
+  private static final ThreadLocal<DOMParser> lightHtmlParser = new ThreadLocal<DOMParser>() {
+    @Override
+    protected DOMParser initialValue() {
+      return createHtmlParser(true);
+    }
+  };
+
+  public static HttpTransport getTransport() {
+    return transport;
+  }
+
+  public static void setTransport(HttpTransport transport) {
+    if (transport == null) {
+      throw new NullPointerException("transport must not be null");
+    }
+    URIRequest.transport = transport;
+  }
 
   public static String getDocumentContent(URI uri, RequestProperty... properties) throws SAXException, IOException {
     return getDocumentContent(openConnection(uri, properties));
@@ -75,30 +109,149 @@ public final class URIRequest {
     StringBuilder sb = new StringBuilder();
     String line;
 
-    while ((line = rd.readLine()) != null) {
-      line = line.trim();
-      if (line.length() > 0) {
-        sb.append(line).append(StringUtils.ENDLINE);
+    try {
+      while ((line = rd.readLine()) != null) {
+        line = line.trim();
+        if (line.length() > 0) {
+          sb.append(line).append(StringUtils.ENDLINE);
+        }
       }
+    } finally {
+      // give connection back to transport, even on error
+      rd.close();
     }
-    rd.close();
     return sb.toString();
   }
 
   public static Document getHtmlDocument(URI uri, RequestProperty... properties) throws IOException, SAXException {
-    return getHtmlDocument(openConnection(uri, properties));
+    return getHtmlDocument(uri, false, properties);
   }
 
-  private static Document getHtmlDocument(URLConnection connection) throws IOException, SAXException {
-    return getHtmlDocument(getReader(connection));
+  /**
+   * Get html document
+   *
+   * @param uri
+   * @param removeScripts Drop script and style elements (and their content)
+   * before DOM is built
+   * @param properties
+   * @return Html document
+   * @throws IOException
+   * @throws SAXException
+   */
+  public static Document getHtmlDocument(URI uri, boolean removeScripts, RequestProperty... properties) throws IOException, SAXException {
+    return getHtmlDocument(getReader(openConnection(uri, properties)), removeScripts ? lightHtmlParser : htmlParser);
   }
 
-  private static Document getHtmlDocument(Reader reader) throws SAXException, IOException {
+  private static Document getHtmlDocument(Reader reader, ThreadLocal<DOMParser> parsers) throws SAXException, IOException {
+    // parser creation (xerces configuration) is expensive, each thread reuses its own
+    DOMParser parser = parsers.get();
+    try {
+      parser.parse(new InputSource(reader));
+
+      return parser.getDocument();
+    } finally {
+      // document is not kept by parser until next parse
+      parser.dropDocumentReferences();
+      reader.close();
+    }
+  }
+
+  private static DOMParser createHtmlParser(boolean removeScripts) {
     DOMParser parser = new DOMParser();
-    parser.setFeature("http://xml.org/sax/features/namespaces", false);
-    parser.parse(new InputSource(reader));
+    try {
+      parser.setFeature("http://xml.org/sax/features/namespaces", false);
+      if (removeScripts) {
+        parser.setProperty("http://cyberneko.org/html/properties/filters", new XMLDocumentFilter[]{new ScriptRemover()});
+      }
+    } catch (SAXException ex) {
+      // will never happen
+      throw new RuntimeException(ex);
+    }
+    return parser;
+  }
+
+  /**
+   * Class ScriptRemover, NekoHTML filter which drops script and style elements
+   */
+  private static class ScriptRemover extends DefaultFilter {
+
+    private int depth;
+
+    private static boolean isScript(QName element) {
+      return "script".equalsIgnoreCase(element.rawname) || "style".equalsIgnoreCase(element.rawname);
+    }
+
+    @Override
+    public void startDocument(XMLLocator locator, String encoding, NamespaceContext nscontext, Augmentations augs) throws XNIException {
+      depth = 0;
+      super.startDocument(locator, encoding, nscontext, augs);
+    }
+
+    @Override
+    public void startDocument(XMLLocator locator, String encoding, Augmentations augs) throws XNIException {
+      depth = 0;
+      super.startDocument(locator, encoding, augs);
+    }
+
+    @Override
+    public void startElement(QName element, XMLAttributes attributes, Augmentations augs) throws XNIException {
+      if (depth > 0 || isScript(element)) {
+        depth++;
+        return;
+      }
+      super.startElement(element, attributes, augs);
+    }
+
+    @Override
+    public void emptyElement(QName element, XMLAttributes attributes, Augmentations augs) throws XNIException {
+      if (depth == 0 && !isScript(element)) {
+        super.emptyElement(element, attributes, augs);
+      }
+    }
+
+    @Override
+    public void endElement(QName element, Augmentations augs) throws XNIException {
+      if (depth > 0) {
+        depth--;
+        return;
+      }
+      super.endElement(element, augs);
+    }
+
+    @Override
+    public void characters(XMLString text, Augmentations augs) throws XNIException {
+      if (depth == 0) {
+        super.characters(text, augs);
+      }
+    }
+
+    @Override
+    public void ignorableWhitespace(XMLString text, Augmentations augs) throws XNIException {
+      if (depth == 0) {
+        super.ignorableWhitespace(text, augs);
+      }
+    }
 
-    return parser.getDocument();
+    @Override
+    public void comment(XMLString text, Augmentations augs) throws XNIException {
+      if (depth == 0) {
+        super.comment(text, augs);
+      }
+    }
+
+    @Override
+    public void startCDATA(Augmentations augs) throws XNIException {
+      if (depth == 0) {
+        super.startCDATA(augs);
+      }
+    }
+
+    @Override
+    public void endCDATA(Augmentations augs) throws XNIException {
+      if (depth == 0) {
+        super.endCDATA(augs);
+      }
+    }
   }
 
   public static Document getXmlDocument(URI uri, RequestProperty... properties) throws IOException, SAXException {
@@ -106,7 +259,12 @@ public final class URIRequest {
   }
 
   private static Document getXmlDocument(URLConnection connection) throws IOException, SAXException {
-    return getXmlDocument(new InputSource(getReader(connection)));
+    Reader reader = getReader(connection);
+    try {
+      return getXmlDocument(new InputSource(reader));
+    } finally {
+      reader.close();
+    }
   }
 
   private static Document getXmlDocument(InputSource source) throws IOException, SAXException {
@@ -122,6 +280,24 @@ public final class URIRequest {
     }
   }
 
+  /**
+   * Stream xml document, see
+   * {@link XPathUtils#streamElements(InputStream, XPathUtils.ElementHandler, String...)}
+   *
+   * @param uri
+   * @param handler
+   * @param paths
+   * @throws IOException
+   */
+  public static void getXmlElements(URI uri, XPathUtils.ElementHandler handler, String... paths) throws IOException {
+    InputStream inputStream = getInputStream(openConnection(uri));
+    try {
+      XPathUtils.streamElements(inputStream, handler, paths);
+    } finally {
+      inputStream.close();
+    }
+  }
+
   public static JSONObject getJsonDocument(URI uri, RequestProperty... properties) throws IOException {
     return getJsonDocument(openConnection(uri, properties));
   }
@@ -130,24 +306,38 @@ public final class URIRequest {
     return getJsonDocument(getReader(connection));
   }
 
-  private static JSONObject getJsonDocument(Reader reader) {
-    return (JSONObject) JSONValue.parse(reader);
+  /**
+   * Get json document with only the paths selected by filter
+   *
+   * @param uri
+   * @param filter
+   * @param properties
+   * @return Filtered json document
+   * @throws IOException
+   */
+  public static JSONObject getJsonDocument(URI uri, JSONFilter filter, RequestProperty... properties) throws IOException {
+    Reader reader = getReader(openConnection(uri, properties));
+    try {
+      return filter.parse(reader);
+    } finally {
+      reader.close();
+    }
+  }
+
+  private static JSONObject getJsonDocument(Reader reader) throws IOException {
+    try {
+      return (JSONObject) JSONValue.parse(reader);
+    } finally {
+      reader.close();
+    }
   }
 
   private static URLConnection openConnection(URI uri, RequestProperty... properties) throws IOException {
     boolean isHttpRequest = Proxy.Type.HTTP.name().equalsIgnoreCase(uri.getScheme());
-    URLConnection connection;
-    if (isHttpRequest && Settings.getInstance().isProxyIsOn()) {
-      Settings settings = Settings.getInstance();
-      Proxy proxy = new Proxy(Proxy.Type.HTTP, new InetSocketAddress(settings.getProxyUrl(), settings.getProxyPort()));
-      connection = uri.toURL().openConnection(proxy);
-    } else {
-      connection = uri.toURL().openConnection();
-    }
+    URLConnection connection = transport.openConnection(uri);
 
     if (isHttpRequest) {
       Settings settings = Settings.getInstance();
-      connection.setReadTimeout(settings.getHttpRequestTimeOut() * 1000); // in ms
       //fake user agent ;)
       connection.addRequestProperty("User-Agent", "Mozilla/5.0 (compatible; Googlebot/2.1; +http://www.google.com/bot.html)");
       connection.addRequestProperty("From", "googlebot(at)googlebot.com");
@@ -170,62 +360,120 @@ public final class URIRequest {
     return connection;
   }
 
+  /**
+   * Get response body stream
+   *
+   * @param uri
+   * @param properties
+   * @return Decoded response body, it must be closed (even if it is not read
+   * until the end) to give connection back to transport, which limits open
+   * connections by host
+   * @throws IOException
+   */
   public static InputStream getInputStream(URI uri, RequestProperty... properties) throws IOException {
     return getInputStream(openConnection(uri, properties));
   }
 
   private static InputStream getInputStream(URLConnection connection) throws IOException {
-    if (Settings.LINUX) {
-      // getContentEncoding() crash JVM under linux in multiThreaded context
-      return getInputStreamSync(connection);
-    }
-    return getInputStreamNoSync(connection);
+    return getInputStream(connection, HttpResponseCache.getInstance().open(connection));
   }
 
-  private synchronized static InputStream getInputStreamSync(URLConnection connection) throws IOException {
-    return getInputStreamNoSync(connection);
-  }
+  private static InputStream getInputStream(URLConnection connection, HttpResponseCache.Request cacheRequest) throws IOException {
+    // each request waits for the limiter of its host, permit is released when
+    // body is closed
+    RequestLimiter.Permit permit = RequestLimiter.getLimiter(connection.getURL().getHost()).acquire();
 
-  private static InputStream getInputStreamNoSync(URLConnection connection) throws IOException {
-    String encoding = connection.getContentEncoding();
+    // Connect and read headers before any header access, headers are then
+    // read from this connection only (no global lock needed, even under linux)
     InputStream inputStream;
     try {
-      inputStream = connection.getInputStream();
-    } catch (IOException ioe) {
-      throw ioe;
+      inputStream = transport.getInputStream(connection);
+    } catch (IOException ex) {
+      permit.setError(ex);
+      permit.release();
+      throw ex;
     }
+    permit.setResponded();
+    inputStream = new PermitInputStream(inputStream, permit);
+
+    String encoding;
+    try {
+      if (cacheRequest != null) {
+        // body may come from cache on "304 Not Modified"
+        inputStream = cacheRequest.getInputStream(inputStream);
+        encoding = cacheRequest.getContentEncoding();
+      } else {
+        encoding = connection.getContentEncoding();
+      }
 
-    if ("gzip".equalsIgnoreCase(encoding)) {
-      inputStream = new GZIPInputStream(inputStream);
-    } else if ("deflate".equalsIgnoreCase(encoding)) {
-      inputStream = new InflaterInputStream(inputStream, new Inflater(true));
+      if ("gzip".equalsIgnoreCase(encoding)) {
+        inputStream = new GZIPInputStream(inputStream);
+      } else if ("deflate".equalsIgnoreCase(encoding)) {
+        inputStream = new InflaterInputStream(inputStream, new Inflater(true));
+      }
+    } catch (IOException ex) {
+      inputStream.close();// give connection back to transport
+      throw ex;
     }
 
     return inputStream;
   }
 
-  private static Reader getReader(URLConnection connection) throws IOException {
-    if (Settings.LINUX) {
-      // getContentType() crash JVM under linux in multiThreaded context
-      return getReaderSync(connection);
+  /**
+   * Class PermitInputStream, release limiter permit when response body is
+   * closed
+   */
+  private static class PermitInputStream extends FilterInputStream {
+
+    private final RequestLimiter.Permit permit;
+
+    public PermitInputStream(InputStream in, RequestLimiter.Permit permit) {
+      super(in);
+      this.permit = permit;
+    }
+
+    @Override
+    public int read() throws IOException {
+      try {
+        return super.read();
+      } catch (IOException ex) {
+        permit.setError(ex);
+        throw ex;
+      }
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      try {
+        return super.read(b, off, len);
+      } catch (IOException ex) {
+        permit.setError(ex);
+        throw ex;
+      }
     }
-    return getReaderNoSync(connection);
-  }
 
-  private static synchronized Reader getReaderSync(URLConnection connection) throws IOException {
-    return getReaderNoSync(connection);
+    @Override
+    public void close() throws IOException {
+      try {
+        super.close();
+      } finally {
+        permit.release();
+      }
+    }
   }
 
-  private static Reader getReaderNoSync(URLConnection connection) throws IOException {
-    Charset charset = getCharset(connection.getContentType());
+  private static Reader getReader(URLConnection connection) throws IOException {
+    HttpResponseCache.Request cacheRequest = HttpResponseCache.getInstance().open(connection);
+    InputStream inputStream = getInputStream(connection, cacheRequest);
+    Charset charset = getCharset(cacheRequest != null ? cacheRequest.getContentType() : connection.getContentType());
 
-    return new InputStreamReader(getInputStreamNoSync(connection), charset);
+    return new InputStreamReader(inputStream, charset);
   }
 
   private static Charset getCharset(String contentType) {
     if (contentType != null) {
       // Content-Type: text/html; charset=iso-8859-1
-      Matcher matcher = Pattern.compile("charset=(\\p{Graph}+)").matcher(contentType);
+      Matcher matcher = CHARSET_PATTERN.matcher(contentType);
 
       if (matcher.find()) {
         try {
@@ -17,13 +17,23 @@
  */
 package fr.free.movierenamer.utils;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.StringWriter;
 import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import javax.xml.transform.*;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
+import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
@@ -44,6 +54,28 @@ import org.w3c.dom.ls.LSSerializer;
  */
 public final class XPathUtils {
 
+  private static final int XPATH_CACHE_SIZE = 256;
+  // XPath and XPathExpression are not thread-safe, each thread has its own
+  private static final ThreadLocal<XPath> xpathCompiler = new ThreadLocal<XPath>() {
+    @Override
+    protected XPath initialValue() {
+      return XPathFactory.newInstance().newXPath();
+    }
+  };
+  private static final ThreadLocal<Map<String, XPathExpression>> compiledXPath = new ThreadLocal<Map<String, XPathExpression>>() {
+    @Override
+    protected Map<String, XPathExpression> initialValue() {
+      return new LinkedHashMap<String, XPathExpression>(64, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, XPathExpression> eldest) {
+          return size() > XPATH_CACHE_SIZE;
+        }
+      };
+    }
+  };
+
   /**
    * Select a child node of a xpath
    * 
@@ -182,8 +214,188 @@ public final class XPathUtils {
     }
   }
 
+  /**
+   * Stream xml document, elements matching one of paths are given to handler
+   * as soon as they end, without building a DOM
+   *
+   * Paths are absolute ("Data/Episode") or match an element name anywhere
+   * ("//episode"). Only attributes of elements and text of their direct
+   * children are kept, which is enough for flat records like episodes.
+   *
+   * @param input
+   * @param handler
+   * @param paths
+   * @throws IOException
+   */
+  public static void streamElements(InputStream input, ElementHandler handler, String... paths) throws IOException {
+    XMLStreamReader reader;
+    try {
+      reader = getXMLInputFactory().createXMLStreamReader(input);
+    } catch (XMLStreamException ex) {
+      throw new IOException(ex.toString());
+    }
+
+    try {
+      List<XmlElement> stack = new ArrayList<XmlElement>();
+      StringBuilder text = new StringBuilder();
+      while (reader.hasNext()) {
+        switch (reader.next()) {
+          case XMLStreamConstants.START_ELEMENT:
+            XmlElement parent = stack.isEmpty() ? null : stack.get(stack.size() - 1);
+            XmlElement element = new XmlElement(reader.getLocalName(), parent);
+            for (int i = 0; i < reader.getAttributeCount(); i++) {
+              element.setAttribute(reader.getAttributeLocalName(i), reader.getAttributeValue(i).trim());
+            }
+            stack.add(element);
+            element.selected = isSelected(stack, paths);
+            text.setLength(0);
+            break;
+          case XMLStreamConstants.CHARACTERS:
+          case XMLStreamConstants.CDATA:
+            if (stack.size() > 1 && stack.get(stack.size() - 2).selected) {
+              text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+            }
+            break;
+          case XMLStreamConstants.END_ELEMENT:
+            XmlElement end = stack.remove(stack.size() - 1);
+            if (end.parent != null && end.parent.selected) {
+              end.parent.setTextContent(end.name, text.toString().trim());
+            }
+            text.setLength(0);
+            if (end.selected) {
+              handler.handle(end);
+            }
+            break;
+          default:
+        }
+      }
+    } catch (XMLStreamException ex) {
+      throw new IOException(ex.toString());
+    } finally {
+      try {
+        reader.close();
+      } catch (XMLStreamException ex) {
+        // input is closed by caller
+      }
+    }
+  }
+
+  private static boolean isSelected(List<XmlElement> stack, String... paths) {
+    XmlElement element = stack.get(stack.size() - 1);
+    for (String path : paths) {
+      if (path.startsWith("//")) {
+        if (path.substring(2).equals(element.name)) {
+          return true;
+        }
+        continue;
+      }
+
+      String[] names = path.split("/");
+      if (names.length != stack.size()) {
+        continue;
+      }
+      boolean match = true;
+      for (int i = 0; i < names.length && match; i++) {
+        match = names[i].equals(stack.get(i).name);
+      }
+      if (match) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static XMLInputFactory getXMLInputFactory() {
+    XMLInputFactory factory = XMLInputFactory.newInstance();
+    factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.FALSE);
+    factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+    return factory;
+  }
+
+  /**
+   * Interface ElementHandler, receives elements selected by
+   * {@link XPathUtils#streamElements(InputStream, ElementHandler, String...)}
+   */
+  public interface ElementHandler {
+
+    public void handle(XmlElement element);
+  }
+
+  /**
+   * Class XmlElement, a streamed element with its attributes and the text of
+   * its direct children
+   */
+  public static final class XmlElement {
+
+    private final String name;
+    private final XmlElement parent;
+    // most elements have neither attributes nor selected parent
+    private Map<String, String> attributes;
+    private Map<String, String> children;
+    private boolean selected;
+
+    private XmlElement(String name, XmlElement parent) {
+      this.name = name;
+      this.parent = parent;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    /**
+     * @return Parent element, only its name and attributes are available
+     */
+    public XmlElement getParent() {
+      return parent;
+    }
+
+    public String getAttribute(String attribute) {
+      return attributes != null ? attributes.get(attribute) : null;
+    }
+
+    private void setAttribute(String attribute, String value) {
+      if (attributes == null) {
+        attributes = new HashMap<String, String>(4);
+      }
+      attributes.put(attribute, value);
+    }
+
+    /**
+     * @param childName
+     * @return Text of first child named childName, null if there is none
+     */
+    public String getTextContent(String childName) {
+      return children != null ? children.get(childName) : null;
+    }
+
+    private void setTextContent(String childName, String text) {
+      if (children == null) {
+        children = new HashMap<String, String>();
+      }
+      if (!children.containsKey(childName)) {
+        children.put(childName, text);
+      }
+    }
+
+    public Integer getIntegerContent(String childName) {
+      try {
+        return new Integer(getTextContent(childName));
+      } catch (NumberFormatException e) {
+        return null;
+      }
+    }
+  }
+
   private static XPathExpression getXPath(String xpath) throws XPathExpressionException {
-    return XPathFactory.newInstance().newXPath().compile(xpath);
+    Map<String, XPathExpression> expressions = compiledXPath.get();
+    XPathExpression expression = expressions.get(xpath);
+    if (expression == null) {
+      expression = xpathCompiler.get().compile(xpath);
+      expressions.put(xpath, expression);
+    }
+    return expression;
   }
   
   public static String convertToString(Node node) {
@@ -0,0 +1,69 @@
+/*
+ * movie-renamer-core
+ * Copyright (C) 2012-2013 Nicolas Magré
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.free.movierenamer.info;
+
+import fr.free.movierenamer.utils.CacheCodec;
+import fr.free.movierenamer.utils.SerializationCodec;
+
+/**
+ * Class InfoCodecBenchmark, java serialization vs info codec size and encode
+ * / decode time. Not a unit test, run it with main.
+ *
+ * @author Nicolas Magré
+ */
+public class InfoCodecBenchmark {
+
+  public static void main(String[] args) throws Exception {
+    Object[] values = {InfoCodecTest.createMovieInfo(), InfoCodecTest.createMovies()};
+    CacheCodec serialization = new SerializationCodec();
+    CacheCodec codec = new InfoCodec();
+    int loop = 2000;
+
+    for (Object value : values) {
+      long[] javaResult = run(serialization, value, loop);
+      long[] codecResult = run(codec, value, loop);
+      System.out.println(String.format("%s : java serialization %d bytes, encode %d ns, decode %d ns / info codec %d bytes, encode %d ns, decode %d ns",
+              value.getClass().getSimpleName(), javaResult[0], javaResult[1], javaResult[2], codecResult[0], codecResult[1], codecResult[2]));
+    }
+  }
+
+  /**
+   * @return Size, encode and decode time (ns)
+   */
+  private static long[] run(CacheCodec codec, Object value, int loop) throws Exception {
+    byte[] data = null;
+    // warm up
+    for (int i = 0; i < loop; i++) {
+      data = codec.encode(value);
+      codec.decode(data);
+    }
+
+    long start = System.nanoTime();
+    for (int i = 0; i < loop; i++) {
+      codec.encode(value);
+    }
+    long encode = (System.nanoTime() - start) / loop;
+
+    start = System.nanoTime();
+    for (int i = 0; i < loop; i++) {
+      codec.decode(data);
+    }
+    long decode = (System.nanoTime() - start) / loop;
+    return new long[]{data.length, encode, decode};
+  }
+}
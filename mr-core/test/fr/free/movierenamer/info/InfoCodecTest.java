@@ -0,0 +1,160 @@
+/*
+ * movie-renamer-core
+ * Copyright (C) 2012-2013 Nicolas Magré
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.free.movierenamer.info;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import fr.free.movierenamer.info.CastingInfo.PersonProperty;
+import fr.free.movierenamer.info.ImageInfo.ImageCategoryProperty;
+import fr.free.movierenamer.info.ImageInfo.ImageProperty;
+import fr.free.movierenamer.info.MovieInfo.MovieMultipleProperty;
+import fr.free.movierenamer.info.MovieInfo.MovieProperty;
+import fr.free.movierenamer.searchinfo.Movie;
+import fr.free.movierenamer.searchinfo.Subtitle;
+import fr.free.movierenamer.utils.CacheCodec;
+import fr.free.movierenamer.utils.ScrapperUtils.AvailableApiIds;
+import fr.free.movierenamer.utils.SerializationCodec;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Class InfoCodecTest
+ *
+ * @author Nicolas Magré
+ */
+public class InfoCodecTest {
+
+  private final InfoCodec codec = new InfoCodec();
+
+  static MovieInfo createMovieInfo() {
+    Map<MovieProperty, String> fields = new EnumMap<MovieProperty, String>(MovieProperty.class);
+    fields.put(MovieProperty.title, "Matrix");
+    fields.put(MovieProperty.originalTitle, "The Matrix");
+    fields.put(MovieProperty.releasedDate, "1999-03-31");
+    fields.put(MovieProperty.overview, "A computer hacker learns from mysterious rebels about the true nature of his reality.");
+    fields.put(MovieProperty.rating, "8.7");
+    fields.put(MovieProperty.runtime, "136");
+
+    Map<MovieMultipleProperty, List<?>> multipleFields = new EnumMap<MovieMultipleProperty, List<?>>(MovieMultipleProperty.class);
+    multipleFields.put(MovieMultipleProperty.ids, Arrays.asList(new IdInfo(133093, AvailableApiIds.IMDB), new IdInfo(603, AvailableApiIds.TMDB)));
+    multipleFields.put(MovieMultipleProperty.genres, Arrays.asList("Action", "Sci-Fi"));
+    multipleFields.put(MovieMultipleProperty.countries, Arrays.asList(Locale.US, new Locale("", "AU")));
+    multipleFields.put(MovieMultipleProperty.studios, Arrays.asList("Warner Bros."));
+
+    List<CastingInfo> casting = new ArrayList<CastingInfo>();
+    for (int i = 0; i < 30; i++) {
+      Map<PersonProperty, String> person = new EnumMap<PersonProperty, String>(PersonProperty.class);
+      person.put(PersonProperty.name, "Actor " + i);
+      person.put(PersonProperty.character, "Character " + i);
+      person.put(PersonProperty.job, i == 0 ? CastingInfo.DIRECTOR : CastingInfo.ACTOR);
+      person.put(PersonProperty.picturePath, "http://image.tmdb.org/t/p/original/actor" + i + ".jpg");
+      casting.add(new CastingInfo(person));
+    }
+
+    List<ImageInfo> images = new ArrayList<ImageInfo>();
+    for (int i = 0; i < 10; i++) {
+      Map<ImageProperty, String> image = new EnumMap<ImageProperty, String>(ImageProperty.class);
+      image.put(ImageProperty.url, "http://image.tmdb.org/t/p/original/poster" + i + ".jpg");
+      image.put(ImageProperty.language, "en");
+      image.put(ImageProperty.width, "1000");
+      image.put(ImageProperty.height, "1500");
+      images.add(new ImageInfo(i, image, ImageCategoryProperty.thumb));
+    }
+
+    MovieInfo info = new MovieInfo(fields, multipleFields);
+    info.setCasting(casting);
+    info.setImages(images);
+    return info;
+  }
+
+  static List<Movie> createMovies() throws Exception {
+    List<Movie> movies = new ArrayList<Movie>();
+    for (int i = 0; i < 20; i++) {
+      movies.add(new Movie(new IdInfo(133093 + i, AvailableApiIds.IMDB), "Matrix " + i, "The Matrix " + i, new URL("http://ia.media-imdb.com/images/M/thumb" + i + ".jpg"), 1999 + i));
+    }
+    return movies;
+  }
+
+  @Test
+  public void movieInfo() throws Exception {
+    MovieInfo info = createMovieInfo();
+    Assert.assertTrue(codec.canEncode(info));
+    MovieInfo decoded = (MovieInfo) codec.decode(codec.encode(info));
+
+    Assert.assertEquals(info.toString(), decoded.toString());
+    Assert.assertEquals(info.getGenres(), decoded.getGenres());
+    Assert.assertEquals(info.getCountries(), decoded.getCountries());
+    Assert.assertEquals(Integer.valueOf(603), decoded.getId(AvailableApiIds.TMDB));
+    Assert.assertEquals(info.getActors(), decoded.getActors());
+    Assert.assertEquals(info.getDirectors(), decoded.getDirectors());
+    Assert.assertEquals(10, decoded.getImages().size());
+    Assert.assertEquals(info.getImages().get(3).getHref(ImageInfo.ImageSize.big), decoded.getImages().get(3).getHref(ImageInfo.ImageSize.big));
+
+    // not fetched images stay null
+    info.setImages(null);
+    Assert.assertNull(((MovieInfo) codec.decode(codec.encode(info))).getImages());
+  }
+
+  @Test
+  public void searchResults() throws Exception {
+    List<Movie> movies = createMovies();
+    @SuppressWarnings("unchecked")
+    List<Movie> decoded = (List<Movie>) codec.decode(codec.encode(movies));
+    Assert.assertEquals(movies, decoded);
+    Assert.assertEquals(movies.get(5).getURL(), decoded.get(5).getURL());
+    Assert.assertEquals(2004, decoded.get(5).getYear());
+
+    Subtitle subtitle = new Subtitle("matrix", "The Matrix", new URL("http://subscene.com/subtitles/the-matrix"));
+    Subtitle decodedSubtitle = (Subtitle) codec.decode(codec.encode(subtitle));
+    Assert.assertEquals("matrix", decodedSubtitle.getName());
+    Assert.assertEquals(subtitle, decodedSubtitle);
+
+    Assert.assertFalse(codec.canEncode(Arrays.asList(new StringBuilder())));
+  }
+
+  @Test
+  public void invalid() throws Exception {
+    byte[] data = codec.encode(createMovieInfo());
+    try {
+      codec.decode(Arrays.copyOf(data, data.length / 2));
+      Assert.fail("Truncated entry decoded");
+    } catch (java.io.IOException ex) {
+      // expected
+    }
+  }
+
+  /**
+   * Encoded entries are smaller than java serialization, see
+   * InfoCodecBenchmark for timings
+   */
+  @Test
+  public void size() throws Exception {
+    Object[] values = {createMovieInfo(), createMovies()};
+    CacheCodec serialization = new SerializationCodec();
+
+    for (Object value : values) {
+      Assert.assertTrue(codec.encode(value).length < serialization.encode(value).length);
+    }
+  }
+}
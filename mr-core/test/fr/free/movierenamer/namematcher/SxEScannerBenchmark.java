@@ -0,0 +1,71 @@
+/*
+ * movie-renamer-core
+ * Copyright (C) 2012-2013 Nicolas Magré
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.free.movierenamer.namematcher;
+
+import java.util.List;
+
+import fr.free.movierenamer.namematcher.TvShowEpisodeNumMatcher.TvShowNumPattern;
+
+import static fr.free.movierenamer.namematcher.SxEScannerTest.find;
+
+/**
+ * Class SxEScannerBenchmark, SxE regexes vs scanner on filenames corpus. Not a
+ * unit test, run it with main.
+ *
+ * @author Nicolas Magré
+ */
+public class SxEScannerBenchmark {
+
+  public static void main(String[] args) throws Exception {
+    List<String> names = SxEScannerTest.readNames();
+    int loop = 20;
+
+    // warm up
+    for (int i = 0; i < loop; i++) {
+      for (String name : names) {
+        for (TvShowNumPattern pattern : TvShowNumPattern.values()) {
+          find(pattern.getPattern(), name);
+        }
+        find(TvShowEpisodeNumMatcher.episodePattern, name);
+        SxEScanner.scan(name);
+      }
+    }
+
+    long start = System.nanoTime();
+    for (int i = 0; i < loop; i++) {
+      for (String name : names) {
+        for (TvShowNumPattern pattern : TvShowNumPattern.values()) {
+          find(pattern.getPattern(), name);
+        }
+        find(TvShowEpisodeNumMatcher.episodePattern, name);
+      }
+    }
+    long regexTime = System.nanoTime() - start;
+
+    start = System.nanoTime();
+    for (int i = 0; i < loop; i++) {
+      for (String name : names) {
+        SxEScanner.scan(name);
+      }
+    }
+    long scanTime = System.nanoTime() - start;
+
+    long count = (long) names.size() * loop * 1000000000L;
+    System.out.println(String.format("SxE matching : regexes %d names/s, scanner %d names/s", count / regexTime, count / scanTime));
+  }
+}
@@ -0,0 +1,71 @@
+/*
+ * movie-renamer-core
+ * Copyright (C) 2012-2013 Nicolas Magré
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.free.movierenamer.namematcher;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import fr.free.movierenamer.namematcher.TvShowEpisodeNumMatcher.TvShowNumPattern;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Class SxEScannerTest
+ *
+ * @author Nicolas Magré
+ */
+public class SxEScannerTest {
+
+  @Test
+  public void scan() throws Exception {
+    for (String name : readNames()) {
+      String[][] matches = SxEScanner.scan(name);
+      for (TvShowNumPattern pattern : TvShowNumPattern.values()) {
+        Assert.assertArrayEquals(pattern.name() + " " + name, find(pattern.getPattern(), name), matches[pattern.ordinal()]);
+      }
+      Assert.assertArrayEquals(name, find(TvShowEpisodeNumMatcher.episodePattern, name), matches[SxEScanner.EPISODE]);
+
+      String[] season = find(TvShowEpisodeNumMatcher.seasonPattern, name);
+      Assert.assertEquals(name, season != null ? season[0] : null, SxEScanner.findSeason(name));
+    }
+  }
+
+  static String[] find(Pattern pattern, String name) {
+    Matcher matcher = pattern.matcher(name);
+    return matcher.find() ? new String[]{matcher.group(1), matcher.groupCount() > 1 ? matcher.group(2) : null} : null;
+  }
+
+  static List<String> readNames() throws Exception {
+    List<String> names = new ArrayList<String>();
+    BufferedReader reader = new BufferedReader(new InputStreamReader(SxEScannerTest.class.getResourceAsStream("/fr/free/movierenamer/utils/filenames.txt"), "UTF-8"));
+    try {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        // same as normalized names
+        names.add(line.replaceAll("[._-]", " ").toLowerCase());
+      }
+    } finally {
+      reader.close();
+    }
+    return names;
+  }
+}
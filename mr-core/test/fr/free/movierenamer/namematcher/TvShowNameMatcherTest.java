@@ -0,0 +1,140 @@
+/*
+ * movie-renamer-core
+ * Copyright (C) 2012-2013 Nicolas Magré
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.free.movierenamer.namematcher;
+
+import fr.free.movierenamer.info.FileInfo.FileProperty;
+import fr.free.movierenamer.info.FileInfo.MediaType;
+import fr.free.movierenamer.utils.Cache;
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Class TvShowNameMatcherTest
+ *
+ * @author Nicolas Magré
+ */
+public class TvShowNameMatcherTest {
+
+  private File folder;
+
+  @Before
+  public void setUp() throws IOException {
+    folder = File.createTempFile("tvshows", "");
+    folder.delete();
+    folder.mkdirs();
+  }
+
+  @After
+  public void tearDown() {
+    delete(folder);
+  }
+
+  private static void delete(File file) {
+    File[] files = file.listFiles();
+    if (files != null) {
+      for (File child : files) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+
+  private static File create(File folder, String name) throws IOException {
+    folder.mkdirs();
+    File file = new File(folder, name);
+    file.createNewFile();
+    return file;
+  }
+
+  private static String getName(File file) {
+    return new TvShowNameMatcher(file).getName().toLowerCase();
+  }
+
+  @Test
+  public void matchByFolderName() throws Exception {
+    File season = new File(new File(folder, "Breaking Bad"), "Season 2");
+    Assert.assertEquals("breaking bad", getName(create(season, "bb.s02e01.avi")));
+    Assert.assertEquals("breaking bad", getName(create(season, "02x02.avi")));
+  }
+
+  @Test
+  public void matchByCommonSeqFileName() throws Exception {
+    File episodes = new File(folder, "Downloads");
+    File first = create(episodes, "Doctor.Who.2005.S01E01.720p.HDTV.x264.mkv");
+    create(episodes, "Doctor Who - 1x02 - The End of the World.avi");
+    create(episodes, "[subs] Doctor.Who.S01E03.avi");
+    create(episodes, "readme.txt");
+    File last = create(episodes, "S01E04.mkv");
+    Assert.assertEquals("doctor who", getName(first));
+    Assert.assertEquals("doctor who", getName(last));
+  }
+
+  @Test
+  public void matchByEpisode() throws Exception {
+    File episodes = new File(folder, "Downloads");
+    Assert.assertEquals("the office", getName(create(episodes, "The.Office.S01E01.HDTV.avi")));
+    // folder with many tvShows, each episode gives its own name
+    File wire = create(episodes, "The.Wire.S01E01.HDTV.avi");
+    Assert.assertEquals("the wire", getName(wire));
+    Assert.assertEquals("the office", getName(new File(episodes, "The.Office.S01E01.HDTV.avi")));
+    Assert.assertEquals("lost", getName(create(folder, "Lost.avi")));
+  }
+
+  @Test
+  public void getTvShowProperty() throws Exception {
+    File file = create(new File(new File(folder, "Dexter"), "Saison 3"), "dexter.3x07.avi");
+    Map<FileProperty, String> properties = NameMatcher.getProperty(file, MediaType.TVSHOW);
+    Assert.assertEquals("dexter", properties.get(FileProperty.name).toLowerCase());
+    Assert.assertEquals("3", properties.get(FileProperty.season));
+    Assert.assertEquals("7", properties.get(FileProperty.episode));
+  }
+
+  @Test
+  public void folderInference() throws Exception {
+    File episodes = new File(folder, "Downloads");
+    File[] files = new File[500];
+    for (int i = 0; i < files.length; i++) {
+      files[i] = create(episodes, String.format("Some.Show.S%02dE%02d.720p.HDTV.x264-GROUP.mkv", i / 50 + 1, i % 50 + 1));
+    }
+    Cache cache = Cache.getCache("tvshowfolder");
+
+    // recently modified folder and unchanged folder, inferred by first episode,
+    // others reuse it
+    for (long modified : new long[]{System.currentTimeMillis(), System.currentTimeMillis() - 60000}) {
+      Assert.assertTrue(episodes.setLastModified(modified));
+      long misses = cache.getMissCount();
+      long hits = cache.getHitCount();
+      for (File file : files) {
+        Assert.assertEquals("some show", getName(file));
+      }
+      Assert.assertTrue(cache.getMissCount() - misses <= 2);
+      Assert.assertEquals(files.length - 1, cache.getHitCount() - hits);
+    }
+
+    // added file, folder is inferred again
+    long misses = cache.getMissCount();
+    Assert.assertEquals("other show", getName(create(episodes, "Other.Show.S01E01.mkv")));
+    Assert.assertTrue(cache.getMissCount() > misses);
+  }
+}
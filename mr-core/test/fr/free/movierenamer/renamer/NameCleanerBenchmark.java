@@ -0,0 +1,92 @@
+/*
+ * mr-core
+ * Copyright (C) 2012 Nicolas Magré
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.free.movierenamer.renamer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Class NameCleanerBenchmark, extractName throughput on names.txt corpus, on
+ * one thread and on all cores. Not a unit test, run it with main.
+ *
+ * @author Nicolas Magré
+ */
+public class NameCleanerBenchmark {
+
+  public static void main(String[] args) throws Exception {
+    List<String[]> names = NameCleanerTest.readNames();
+    int loop = 20;
+
+    for (boolean strict : new boolean[]{false, true}) {
+      // warm up
+      for (int i = 0; i < loop; i++) {
+        for (String[] line : names) {
+          NameCleaner.extractName(line[0], strict);
+        }
+      }
+
+      long start = System.nanoTime();
+      for (int i = 0; i < loop; i++) {
+        for (String[] line : names) {
+          NameCleaner.extractName(line[0], strict);
+        }
+      }
+      long time = System.nanoTime() - start;
+      System.out.println(String.format("extractName %s : %d names/s", strict ? "strict" : "not strict", names.size() * loop * 1000000000L / time));
+    }
+
+    concurrent(names, loop);
+  }
+
+  private static void concurrent(final List<String[]> names, final int loop) throws Exception {
+    int threads = Runtime.getRuntime().availableProcessors();
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+      for (int i = 0; i < threads; i++) {
+        tasks.add(new Callable<Object>() {
+          @Override
+          public Object call() throws Exception {
+            for (int j = 0; j < loop; j++) {
+              for (String[] line : names) {
+                NameCleaner.extractName(line[0], false);
+              }
+            }
+            return null;
+          }
+        });
+      }
+
+      // warm up
+      executor.invokeAll(tasks);
+
+      long start = System.nanoTime();
+      for (Future<Object> future : executor.invokeAll(tasks)) {
+        future.get();
+      }
+      long time = System.nanoTime() - start;
+      System.out.println(String.format("extractName not strict with %d threads : %d names/s", threads, threads * names.size() * loop * 1000000000L / time));
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
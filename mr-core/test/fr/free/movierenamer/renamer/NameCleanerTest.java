@@ -17,6 +17,23 @@
  */
 package fr.free.movierenamer.renamer;
 
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import fr.free.movierenamer.settings.Settings;
+
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -70,4 +87,133 @@ public class NameCleanerTest {
     Assert.assertEquals("17 Again", NameCleaner.extractName("17.Again.FRENCH.DVDRiP.XViD.avi", true));
     Assert.assertEquals("17 again", NameCleaner.extractName("17.again.FRENCH.DVDScr.XviD.avi", true));
   }
+
+  /**
+   * Compare with names cleaned by the regex cleaner, names.txt lines are "name
+   * TAB not strict name TAB strict name"
+   */
+  @Test
+  public void extractNameCorpus() throws Exception {
+    for (String[] line : readNames()) {
+      Assert.assertEquals(line[0], line[1], NameCleaner.extractName(line[0], false));
+      Assert.assertEquals(line[0], line[2], NameCleaner.extractName(line[0], true));
+    }
+  }
+
+  @Test
+  public void customBlacklist() {
+    String name = "Some.Movie.MyGroup.Custom.Cut.avi";
+    try {
+      Assert.assertEquals("Some Movie MyGroup Custom Cut", NameCleaner.extractName(name, false));
+      NameCleaner.setCustomBlacklist(Arrays.asList("mygroup", "Custom.?Cut"));
+      Assert.assertEquals("Some Movie", NameCleaner.extractName(name, false));
+      Assert.assertEquals("Some Movie", NameCleaner.extractName(name, true));
+    } finally {
+      NameCleaner.setCustomBlacklist(Collections.<String>emptyList());
+    }
+    Assert.assertEquals("Some Movie MyGroup Custom Cut", NameCleaner.extractName(name, false));
+  }
+
+  @Test
+  public void customBlacklistFile() throws Exception {
+    File file = File.createTempFile("blacklist", ".txt");
+    try {
+      Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+      try {
+        writer.write("# release groups\nMyGroup\n\n  Custom.?Cut  \nbad(pattern\n");
+      } finally {
+        writer.close();
+      }
+
+      NameCleaner.loadCustomBlacklist(file);
+      Assert.assertEquals("Some Movie", NameCleaner.extractName("Some.Movie.MyGroup.Custom.Cut.avi", false));
+    } finally {
+      file.delete();
+      NameCleaner.loadCustomBlacklist(file);
+    }
+    Assert.assertEquals("Some Movie MyGroup Custom Cut", NameCleaner.extractName("Some.Movie.MyGroup.Custom.Cut.avi", false));
+  }
+
+  private static void write(File file, String content) throws Exception {
+    Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+    try {
+      writer.write(content);
+    } finally {
+      writer.close();
+    }
+  }
+
+  @Test
+  public void customBlacklistEdit() throws Exception {
+    String name = "Some.Movie.MyGroup.Custom.Cut.avi";
+    File folder = new File(Settings.appFolder, "conf");
+    folder.mkdirs();
+    File file = new File(folder, "blacklist.txt");
+    Assert.assertFalse(file.exists());
+    try {
+      // file is checked at most every 2 seconds
+      NameCleaner.extractName(name, false);
+      write(file, "MyGroup\n");
+      Thread.sleep(2100);
+      Assert.assertEquals("Some Movie Custom Cut", NameCleaner.extractName(name, false));
+
+      write(file, "MyGroup\nCustom.?Cut\n");
+      Thread.sleep(2100);
+      Assert.assertEquals("Some Movie", NameCleaner.extractName(name, false));
+    } finally {
+      file.delete();
+      NameCleaner.loadCustomBlacklist(file);
+    }
+  }
+
+  /**
+   * Concurrent calls give the same names as single-threaded calls, see
+   * NameCleanerBenchmark for throughput
+   */
+  @Test
+  public void concurrentExtractName() throws Exception {
+    final List<String[]> names = readNames();
+    int threads = Math.max(4, Runtime.getRuntime().availableProcessors());
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Callable<List<String>>> tasks = new ArrayList<Callable<List<String>>>();
+      for (int i = 0; i < threads; i++) {
+        final int first = i * names.size() / threads;
+        tasks.add(new Callable<List<String>>() {
+          @Override
+          public List<String> call() throws Exception {
+            // each thread starts at another name
+            List<String> errors = new ArrayList<String>();
+            for (int j = 0; j < names.size(); j++) {
+              String[] line = names.get((first + j) % names.size());
+              if (!line[1].equals(NameCleaner.extractName(line[0], false)) || !line[2].equals(NameCleaner.extractName(line[0], true))) {
+                errors.add(line[0]);
+              }
+            }
+            return errors;
+          }
+        });
+      }
+
+      for (Future<List<String>> future : executor.invokeAll(tasks)) {
+        Assert.assertEquals(Collections.<String>emptyList(), future.get());
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  static List<String[]> readNames() throws Exception {
+    List<String[]> names = new ArrayList<String[]>();
+    BufferedReader reader = new BufferedReader(new InputStreamReader(NameCleanerTest.class.getResourceAsStream("names.txt"), "UTF-8"));
+    try {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        names.add(line.split("\t", -1));
+      }
+    } finally {
+      reader.close();
+    }
+    return names;
+  }
 }
@@ -0,0 +1,76 @@
+/*
+ * movie-renamer-core
+ * Copyright (C) 2012-2013 Nicolas Magré
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.free.movierenamer.scrapper;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Class BulkLookupTest
+ *
+ * @author Nicolas Magré
+ */
+public class BulkLookupTest {
+
+  @Test
+  public void execute() throws Exception {
+    final AtomicInteger loads = new AtomicInteger();
+    final Map<String, String> results = new ConcurrentHashMap<String, String>();
+    final Map<String, Exception> errors = new ConcurrentHashMap<String, Exception>();
+
+    int size = new BulkLookup<String, String>() {
+      @Override
+      protected String getCached(String key) {
+        return key.startsWith("cached") ? "cache:" + key : null;
+      }
+
+      @Override
+      protected String load(String key) throws Exception {
+        loads.incrementAndGet();
+        if (key.equals("error")) {
+          throw new Exception(key);
+        }
+        Thread.sleep(50);
+        return "load:" + key;
+      }
+    }.execute(Arrays.asList("a", "b", "a", "cached1", "error", "b", "cached1"), new BulkCallback<String, String>() {
+      @Override
+      public void onResult(String key, String result) {
+        Assert.assertNull(results.put(key, result));
+      }
+
+      @Override
+      public void onError(String key, Exception error) {
+        errors.put(key, error);
+      }
+    });
+
+    Assert.assertEquals(4, size);
+    Assert.assertEquals(3, loads.get());
+    Assert.assertEquals(3, results.size());
+    Assert.assertEquals("load:a", results.get("a"));
+    Assert.assertEquals("cache:cached1", results.get("cached1"));
+    Assert.assertEquals(1, errors.size());
+    Assert.assertEquals("error", errors.get("error").getMessage());
+  }
+}
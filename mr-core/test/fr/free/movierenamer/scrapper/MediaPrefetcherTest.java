@@ -0,0 +1,210 @@
+/*
+ * movie-renamer-core
+ * Copyright (C) 2012-2013 Nicolas Magré
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.free.movierenamer.scrapper;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import fr.free.movierenamer.info.FileInfo;
+import fr.free.movierenamer.info.IdInfo;
+import fr.free.movierenamer.info.MovieInfo;
+import fr.free.movierenamer.searchinfo.Movie;
+import fr.free.movierenamer.settings.Settings;
+import fr.free.movierenamer.utils.ImageStore;
+import fr.free.movierenamer.utils.ScrapperUtils.AvailableApiIds;
+import fr.free.movierenamer.utils.Sorter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Class MediaPrefetcherTest
+ *
+ * @author Nicolas Magré
+ */
+public class MediaPrefetcherTest {
+
+  private static final String[] names = {"Avatar", "Titanic", "Alien", "Heat", "Brazil", "Memento"};
+  private HttpServer server;
+  private File folder;
+  private final AtomicInteger thumbRequests = new AtomicInteger();
+
+  @Before
+  public void init() throws IOException {
+    Settings.getInstance();
+    folder = File.createTempFile("prefetch", "");
+    folder.delete();
+    folder.mkdirs();
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        thumbRequests.incrementAndGet();
+        byte[] body = new byte[512];
+        exchange.getResponseHeaders().add("Content-Type", "image/jpeg");
+        exchange.sendResponseHeaders(200, body.length);
+        OutputStream os = exchange.getResponseBody();
+        os.write(body);
+        os.close();
+      }
+    });
+    server.start();
+  }
+
+  @After
+  public void stop() {
+    server.stop(0);
+    File[] files = folder.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+    folder.delete();
+  }
+
+  /**
+   * Movie files, small files are taken as tv show
+   */
+  private List<FileInfo> createFiles(int count) throws IOException {
+    List<FileInfo> files = new ArrayList<FileInfo>();
+    for (int i = 0; i < count; i++) {
+      File file = new File(folder, names[i] + ".2009.avi");
+      RandomAccessFile raf = new RandomAccessFile(file, "rw");
+      try {
+        raf.setLength(1024 * 1024);
+      } finally {
+        raf.close();
+      }
+      files.add(new FileInfo(file));
+    }
+    return files;
+  }
+
+  private static void waitDone(MediaPrefetcher prefetcher) throws InterruptedException {
+    while (!prefetcher.isDone()) {
+      Thread.sleep(20);
+    }
+  }
+
+  @Test(timeout = 30000)
+  public void prefetch() throws Exception {
+    URL thumb = new URL("http", "127.0.0.1", server.getAddress().getPort(), "/thumb-" + System.currentTimeMillis() + ".jpg");
+    StubMovieScrapper scrapper = new StubMovieScrapper(thumb);
+    List<FileInfo> files = createFiles(1);
+    FileInfo file = files.get(0);
+    Assert.assertEquals(FileInfo.MediaType.MOVIE, file.getType());
+
+    MediaPrefetcher prefetcher = MediaPrefetcher.prefetch(files, scrapper, null);
+    Assert.assertEquals(1, prefetcher.getCount());
+    waitDone(prefetcher);
+    Assert.assertEquals(1, scrapper.searches.get());
+    Assert.assertEquals(1, scrapper.infos.get());
+    Assert.assertEquals(1, thumbRequests.get());
+
+    // interactive lookup is served by cache
+    Movie movie = scrapper.search(file.getSearch()).get(0);
+    scrapper.getInfo(movie);
+    Assert.assertTrue(ImageStore.getInstance().contains(movie.getURL().toURI()));
+    ImageStore.getInstance().getBytes(movie.getURL().toURI());
+    Assert.assertEquals(1, scrapper.searches.get());
+    Assert.assertEquals(1, scrapper.infos.get());
+    Assert.assertEquals(1, thumbRequests.get());
+  }
+
+  @Test(timeout = 30000)
+  public void sortedResults() throws Exception {
+    final String base = "http://127.0.0.1:" + server.getAddress().getPort() + "/sorted-" + System.currentTimeMillis();
+    final List<String> fetched = new ArrayList<String>();
+    StubMovieScrapper scrapper = new StubMovieScrapper(null) {
+      @Override
+      protected List<Movie> searchMedia(String query, Locale language) throws Exception {
+        searches.incrementAndGet();
+        return Arrays.asList(new Movie(new IdInfo(1, AvailableApiIds.IMDB), query, query, new URL(base + "-1.jpg"), 1990),
+                new Movie(new IdInfo(2, AvailableApiIds.IMDB), query, query, new URL(base + "-2.jpg"), 2009),
+                new Movie(new IdInfo(3, AvailableApiIds.IMDB), query, query, new URL(base + "-3.jpg"), 2000));
+      }
+
+      @Override
+      protected MovieInfo fetchMediaInfo(Movie movie, Locale language) throws Exception {
+        fetched.add(movie.getURL().toString());
+        return super.fetchMediaInfo(movie, language);
+      }
+    };
+
+    Settings settings = Settings.getInstance();
+    Sorter.SorterType sorter = settings.getSearchSorter();
+    settings.set(Settings.SettingsProperty.searchSort, Sorter.SorterType.YEAR);
+    try {
+      MediaPrefetcher prefetcher = MediaPrefetcher.prefetch(createFiles(1), scrapper, null);
+      waitDone(prefetcher);
+    } finally {
+      settings.set(Settings.SettingsProperty.searchSort, sorter);
+    }
+
+    // info of first result of sorted list, thumbnails of all results
+    Assert.assertEquals(Arrays.asList(base + "-2.jpg"), fetched);
+    Assert.assertEquals(3, thumbRequests.get());
+  }
+
+  @Test(timeout = 30000)
+  public void cancel() throws Exception {
+    final CountDownLatch started = new CountDownLatch(2);
+    final CountDownLatch release = new CountDownLatch(1);
+    StubMovieScrapper scrapper = new StubMovieScrapper(null) {
+      @Override
+      protected List<Movie> searchMedia(String query, Locale language) throws Exception {
+        started.countDown();
+        release.await();
+        return super.searchMedia(query, language);
+      }
+    };
+
+    MediaPrefetcher prefetcher = MediaPrefetcher.prefetch(createFiles(names.length), scrapper, null);
+    Assert.assertEquals(names.length, prefetcher.getCount());
+
+    // both prefetch threads are busy, other files are pending
+    started.await();
+    prefetcher.cancel();
+    release.countDown();
+    waitDone(prefetcher);
+    // cancelled tasks are done, running searches may still end
+    while (scrapper.searches.get() < 2) {
+      Thread.sleep(20);
+    }
+    Thread.sleep(200);
+
+    // info of running searches is not fetched and pending files are skipped
+    Assert.assertEquals(2, scrapper.searches.get());
+    Assert.assertEquals(0, scrapper.infos.get());
+  }
+}
@@ -0,0 +1,69 @@
+/*
+ * movie-renamer-core
+ * Copyright (C) 2012-2013 Nicolas Magré
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.free.movierenamer.scrapper;
+
+import fr.free.movierenamer.info.MovieInfo;
+import fr.free.movierenamer.searchinfo.Movie;
+import fr.free.movierenamer.utils.RequestLimiter;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Class MediaScrapperTest
+ *
+ * @author Nicolas Magré
+ */
+public class MediaScrapperTest {
+
+  @Test
+  public void getInfoAsync() throws Exception {
+    StubMovieScrapper scrapper = new StubMovieScrapper(null);
+    Movie movie = scrapper.search("avatar").get(0);
+
+    MovieInfo info = scrapper.getInfoAsync(movie, true).get();
+    Assert.assertEquals("avatar", info.getTitle());
+    Assert.assertEquals(1, info.getImages().size());
+
+    // cached info is not modified by images
+    MovieInfo cached = scrapper.getInfo(movie);
+    Assert.assertNotSame(cached, info);
+    Assert.assertNull(cached.getImages());
+    Assert.assertNull(scrapper.getInfoAsync(movie, false).get().getImages());
+
+    // info and images are loaded once
+    Assert.assertEquals(1, scrapper.getInfoAsync(movie, true).get().getImages().size());
+    Assert.assertEquals(1, scrapper.infos.get());
+    Assert.assertEquals(1, scrapper.images.get());
+  }
+
+  @Test
+  public void requestLimit() throws Exception {
+    // stub host is built from an instance field
+    StubMovieScrapper scrapper = new StubMovieScrapper(null) {
+      @Override
+      protected RequestLimiter.Limit getRequestLimit() {
+        return new RequestLimiter.Limit(1, 1, 1, 1000);
+      }
+    };
+
+    // limit is declared before first lookup
+    scrapper.search("avatar");
+    Assert.assertEquals(scrapper.getHost().toLowerCase(), RequestLimiter.getLimiter(scrapper.getHost()).getHost());
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * movie-renamer-core
+ * Copyright (C) 2012-2013 Nicolas Magré
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.free.movierenamer.scrapper;
+
+import fr.free.movierenamer.info.CastingInfo;
+import fr.free.movierenamer.info.IdInfo;
+import fr.free.movierenamer.info.ImageInfo;
+import fr.free.movierenamer.info.MovieInfo;
+import fr.free.movierenamer.searchinfo.Movie;
+import fr.free.movierenamer.utils.LocaleUtils.AvailableLanguages;
+import fr.free.movierenamer.utils.ScrapperUtils.AvailableApiIds;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Class StubMovieScrapper, movie scrapper without network, counts its
+ * requests
+ *
+ * @author Nicolas Magré
+ */
+public class StubMovieScrapper extends MovieScrapper {
+
+  private static final AtomicInteger instances = new AtomicInteger();
+  // cache is stored on disk, each run uses its own ids
+  private final String id = "stub" + System.currentTimeMillis() + "-" + instances.incrementAndGet();
+  public final AtomicInteger searches = new AtomicInteger();
+  public final AtomicInteger infos = new AtomicInteger();
+  public final AtomicInteger images = new AtomicInteger();
+  private final URL thumb;
+
+  public StubMovieScrapper(URL thumb) {
+    super(AvailableLanguages.en);
+    this.thumb = thumb;
+  }
+
+  @Override
+  protected List<Movie> searchMedia(String query, Locale language) throws Exception {
+    searches.incrementAndGet();
+    return Arrays.asList(new Movie(new IdInfo(query.hashCode() & 0xffff, AvailableApiIds.IMDB), query, query, thumb, 2000));
+  }
+
+  @Override
+  protected List<Movie> searchMedia(URL searchUrl, Locale language) throws Exception {
+    return searchMedia(searchUrl.toString(), language);
+  }
+
+  @Override
+  protected MovieInfo fetchMediaInfo(Movie movie, Locale language) throws Exception {
+    infos.incrementAndGet();
+    Map<MovieInfo.MovieProperty, String> fields = new EnumMap<MovieInfo.MovieProperty, String>(MovieInfo.MovieProperty.class);
+    fields.put(MovieInfo.MovieProperty.title, movie.getName());
+    return new MovieInfo(fields, new EnumMap<MovieInfo.MovieMultipleProperty, List<?>>(MovieInfo.MovieMultipleProperty.class));
+  }
+
+  @Override
+  protected List<ImageInfo> fetchImagesInfo(Movie movie) throws Exception {
+    images.incrementAndGet();
+    List<ImageInfo> imagesInfo = new ArrayList<ImageInfo>();
+    imagesInfo.add(new ImageInfo(1, new EnumMap<ImageInfo.ImageProperty, String>(ImageInfo.ImageProperty.class), ImageInfo.ImageCategoryProperty.thumb));
+    return imagesInfo;
+  }
+
+  @Override
+  protected List<CastingInfo> fetchCastingInfo(Movie movie, Locale language) throws Exception {
+    return new ArrayList<CastingInfo>();
+  }
+
+  @Override
+  protected Locale getDefaultLanguage() {
+    return Locale.ENGLISH;
+  }
+
+  @Override
+  public String getName() {
+    return id;
+  }
+
+  @Override
+  protected String getHost() {
+    return id + ".invalid";
+  }
+}
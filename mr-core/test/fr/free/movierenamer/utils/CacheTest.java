@@ -17,8 +17,27 @@
  */
 package fr.free.movierenamer.utils;
 
+import java.io.BufferedReader;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.ObjectName;
+
+import org.junit.Assert;
 import org.junit.Test;
 
+import fr.free.movierenamer.namematcher.NameMatcher;
+
 /**
  * Class CacheTest
  * @author Simon QUÉMÉNEUR
@@ -38,4 +57,206 @@ public class CacheTest {
       Thread.sleep(2000);
     }
   }
+
+  @Test
+  public void tiers() {
+    Cache cache = Cache.getCache("short");
+    Assert.assertSame(cache, Cache.getCache("short"));
+
+    List<String> list = new ArrayList<String>(Arrays.asList("a", "b"));
+    Cache.CacheKey key = new Cache.CacheKey("test", "tiers", String.class, Locale.ENGLISH);
+    long hits = cache.getHitCount();
+    cache.put(key, list);
+    Assert.assertEquals(list, cache.get(new Cache.CacheKey("test", "tiers", String.class, Locale.ENGLISH), List.class));
+    Assert.assertEquals(hits + 1, cache.getHitCount());
+
+    // too big for memory, read back from disk
+    byte[] big = new byte[1024 * 1024];
+    big[big.length - 1] = 1;
+    long diskHits = cache.getDiskHitCount();
+    cache.put("tiers.big", big);
+    Assert.assertArrayEquals(big, cache.get("tiers.big", byte[].class));
+    Assert.assertEquals(diskHits + 1, cache.getDiskHitCount());
+
+    long misses = cache.getMissCount();
+    cache.remove("tiers.big");
+    Assert.assertNull(cache.get("tiers.big"));
+    Assert.assertEquals(misses + 1, cache.getMissCount());
+  }
+
+  @Test
+  public void memoryWeight() {
+    // memory only cache
+    Cache cache = Cache.getCache("test.weight");
+    Assert.assertEquals(0, cache.getDiskSize());
+    cache.put("small", "a");
+    long small = cache.getMemorySize();
+    Assert.assertTrue(small > 0 && small < 1024);
+
+    // weight is the value size, not a fixed size per entry
+    cache.put("large", new byte[64 * 1024]);
+    Assert.assertTrue(cache.getMemorySize() - small >= 64 * 1024);
+
+    // values bigger than memory are not kept
+    cache.put("huge", new byte[2 * 1024 * 1024]);
+    Assert.assertNull(cache.get("huge"));
+    Assert.assertNotNull(cache.get("small"));
+  }
+
+  @Test
+  public void statistics() throws Exception {
+    Cache shortCache = Cache.getCache("short");
+    shortCache.put("statistics", "value");
+    Assert.assertEquals(shortCache.getMemorySize() + shortCache.getDiskSize(), shortCache.getSize());
+    Assert.assertTrue(shortCache.getDiskSize() > 0);
+    Assert.assertEquals("short", ManagementFactory.getPlatformMBeanServer().getAttribute(new ObjectName("fr.free.movierenamer:type=Cache,name=\"short\""), "Name"));
+
+    String id = "test.statistics" + System.nanoTime();
+    CacheObject cache = new CacheObject(id, shortCache, 60000, 60000);
+    Callable<String> loader = new Callable<String>() {
+      @Override
+      public String call() throws Exception {
+        Thread.sleep(20);
+        return "value";
+      }
+    };
+    cache.getData("a", Locale.ENGLISH, String.class, loader);
+    cache.getData("a", Locale.ENGLISH, String.class, loader);
+    cache.getData("b", Locale.ENGLISH, String.class, loader);
+
+    CacheStatistics statistics = cache.getStatistics();
+    Assert.assertSame(statistics, CacheStatistics.getStatistics(id));
+    Assert.assertEquals(1, statistics.getHitCount());
+    Assert.assertEquals(2, statistics.getMissCount());
+    Assert.assertEquals(2, statistics.getLoadCount());
+    Assert.assertTrue(statistics.getAverageLoadTime() >= 20);
+    long[] histogram = statistics.getLoadTimeHistogram();
+    Assert.assertEquals(statistics.getLoadTimeBuckets().length, histogram.length);
+    long count = 0;
+    for (long bucket : histogram) {
+      count += bucket;
+    }
+    Assert.assertEquals(2, count);
+    Assert.assertEquals(0, histogram[0]);
+    Assert.assertEquals(2L, ManagementFactory.getPlatformMBeanServer().getAttribute(new ObjectName("fr.free.movierenamer:type=CacheStatistics,name=" + ObjectName.quote(id)), "LoadCount"));
+  }
+
+  @Test
+  public void searchKeys() throws Exception {
+    Assert.assertEquals("the matrix", CacheObject.normalize("The Matrix"));
+    Assert.assertEquals("the matrix", CacheObject.normalize("the matrix "));
+    Assert.assertEquals("the matrix", CacheObject.normalize("The.Matrix"));
+    Assert.assertEquals("http://www.imdb.com/title/tt0133093/", CacheObject.normalize("http://www.imdb.com/title/tt0133093/"));
+
+    // search each name of NameMatcherTest corpus, count cache hits
+    Set<String> rawKeys = new HashSet<String>();
+    Set<String> keys = new HashSet<String>();
+    int searches = 0;
+    BufferedReader reader = new BufferedReader(new InputStreamReader(CacheTest.class.getResourceAsStream("filenames.txt"), "UTF-8"));
+    try {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        String query = NameMatcher.extractName(line);
+        rawKeys.add(query);
+        keys.add(CacheObject.normalize(query));
+        searches++;
+      }
+    } finally {
+      reader.close();
+    }
+
+    int rawHits = searches - rawKeys.size();
+    int hits = searches - keys.size();
+    System.out.println(String.format("Search cache hit rate on %d names : raw %.1f%%, normalized %.1f%%", searches, 100. * rawHits / searches, 100. * hits / searches));
+    Assert.assertTrue(hits > rawHits);
+  }
+
+  @Test
+  public void staleWhileRevalidate() throws Exception {
+    // everything is stale at once
+    CacheObject cache = new CacheObject("test.stale", Cache.getCache("short"), 0, 60000);
+    final AtomicInteger loads = new AtomicInteger();
+    Callable<String> loader = new Callable<String>() {
+      @Override
+      public String call() throws Exception {
+        return "value" + loads.incrementAndGet();
+      }
+    };
+
+    String key = "stale" + System.nanoTime();
+    Assert.assertEquals("value1", cache.getData(key, Locale.ENGLISH, String.class, loader));
+    // stale value is returned, reloaded in background
+    Assert.assertEquals("value1", cache.getData(key, Locale.ENGLISH, String.class, loader));
+    for (int i = 0; i < 100 && !"value2".equals(cache.getData(key, Locale.ENGLISH, String.class)); i++) {
+      Thread.sleep(50);
+    }
+    Assert.assertEquals("value2", cache.getData(key, Locale.ENGLISH, String.class));
+  }
+
+  @Test
+  public void negativeCache() throws Exception {
+    CacheObject cache = new CacheObject("test.error", Cache.getCache("short"), 60000, 60000);
+    final AtomicInteger loads = new AtomicInteger();
+    Callable<String> loader = new Callable<String>() {
+      @Override
+      public String call() throws Exception {
+        loads.incrementAndGet();
+        throw new FileNotFoundException("not found");
+      }
+    };
+
+    String key = "error" + System.nanoTime();
+    FileNotFoundException[] errors = new FileNotFoundException[3];
+    for (int i = 0; i < 3; i++) {
+      try {
+        cache.getData(key, Locale.ENGLISH, String.class, loader);
+        Assert.fail();
+      } catch (FileNotFoundException ex) {
+        errors[i] = ex;
+      }
+    }
+    Assert.assertEquals(1, loads.get());
+
+    // each caller gets its own exception, caused by cached one
+    Assert.assertNotSame(errors[1], errors[2]);
+    Assert.assertSame(errors[0], errors[1].getCause());
+    Assert.assertSame(errors[0], errors[2].getCause());
+    Assert.assertEquals("not found", errors[2].getMessage());
+
+    // throttling and other errors are not cached
+    final AtomicInteger failures = new AtomicInteger();
+    Callable<String> throttled = new Callable<String>() {
+      @Override
+      public String call() throws Exception {
+        failures.incrementAndGet();
+        throw new IOException("Server returned HTTP response code: 429");
+      }
+    };
+    for (int i = 0; i < 2; i++) {
+      try {
+        cache.getData(key + "throttled", Locale.ENGLISH, String.class, throttled);
+        Assert.fail();
+      } catch (IOException ex) {
+        // expected
+      }
+    }
+    Assert.assertEquals(2, failures.get());
+
+    Callable<String> failing = new Callable<String>() {
+      @Override
+      public String call() throws Exception {
+        failures.incrementAndGet();
+        throw new IllegalStateException();
+      }
+    };
+    for (int i = 0; i < 2; i++) {
+      try {
+        cache.getData(key + "bug", Locale.ENGLISH, String.class, failing);
+        Assert.fail();
+      } catch (IllegalStateException ex) {
+        // expected
+      }
+    }
+    Assert.assertEquals(4, failures.get());
+  }
 }
@@ -0,0 +1,122 @@
+/*
+ * movie-renamer-core
+ * Copyright (C) 2012-2013 Nicolas Magré
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.free.movierenamer.utils;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import fr.free.movierenamer.settings.Settings;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Class HttpResponseCacheTest
+ *
+ * @author Nicolas Magré
+ */
+public class HttpResponseCacheTest {
+
+  private HttpServer server;
+  private File folder;
+
+  @Before
+  public void init() throws IOException {
+    Settings.getInstance();
+    folder = File.createTempFile("http", "");
+    folder.delete();
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        byte[] body = new byte[path.startsWith("/large") ? 3 * 1024 * 1024 : 1024];
+        Arrays.fill(body, (byte) 'a');
+        exchange.getResponseHeaders().add("ETag", "\"" + path + "\"");
+        exchange.getResponseHeaders().add("Content-Type", path.startsWith("/zip") ? "application/zip" : "text/plain");
+        // unknown length for large response, size is checked while it is stored
+        exchange.sendResponseHeaders(200, path.startsWith("/large") ? 0 : body.length);
+        OutputStream os = exchange.getResponseBody();
+        os.write(body);
+        os.close();
+      }
+    });
+    server.start();
+  }
+
+  @After
+  public void stop() {
+    server.stop(0);
+    File[] files = folder.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+    folder.delete();
+  }
+
+  private void get(HttpResponseCache cache, String path) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) new URL("http", "127.0.0.1", server.getAddress().getPort(), path).openConnection();
+    InputStream in = cache.open(connection).getInputStream(connection.getInputStream());
+    try {
+      byte[] buffer = new byte[8192];
+      while (in.read(buffer) >= 0) {
+        // read all
+      }
+    } finally {
+      in.close();
+    }
+  }
+
+  @Test
+  public void evict() throws Exception {
+    HttpResponseCache cache = new HttpResponseCache(folder, 8 * 1024);
+    for (int i = 0; i < 20; i++) {
+      get(cache, "/json" + i);
+    }
+
+    // least recently used responses are removed
+    Assert.assertTrue(cache.getSize() <= 8 * 1024);
+    Assert.assertTrue(folder.list().length < 20);
+    Assert.assertTrue(folder.list().length > 0);
+
+    // size is computed again by a new instance
+    Assert.assertEquals(cache.getSize(), new HttpResponseCache(folder, 8 * 1024).getSize());
+  }
+
+  @Test
+  public void notStored() throws Exception {
+    HttpResponseCache cache = new HttpResponseCache(folder, 64 * 1024 * 1024);
+    get(cache, "/zip");
+    get(cache, "/large");
+    Assert.assertEquals(0, cache.getSize());
+    String[] files = folder.list();
+    Assert.assertTrue(files == null || files.length == 0);
+  }
+}
@@ -0,0 +1,140 @@
+/*
+ * movie-renamer-core
+ * Copyright (C) 2012-2013 Nicolas Magré
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.free.movierenamer.utils;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import fr.free.movierenamer.settings.Settings;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URL;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Class ImageStoreTest
+ *
+ * @author Nicolas Magré
+ */
+public class ImageStoreTest {
+
+  private HttpServer server;
+  private File folder;
+  private final AtomicInteger downloads = new AtomicInteger();
+
+  @Before
+  public void init() throws IOException {
+    Settings.getInstance();
+    folder = File.createTempFile("images", "");
+    folder.delete();
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        downloads.incrementAndGet();
+        // "/same..." urls give the same content, others their own content
+        String path = exchange.getRequestURI().getPath();
+        byte[] body = new byte[1024];
+        if (!path.startsWith("/same")) {
+          byte[] name = path.getBytes("UTF-8");
+          System.arraycopy(name, 0, body, 0, name.length);
+        }
+        exchange.getResponseHeaders().add("Content-Type", "image/jpeg");
+        exchange.sendResponseHeaders(200, body.length);
+        OutputStream os = exchange.getResponseBody();
+        os.write(body);
+        os.close();
+      }
+    });
+    server.start();
+  }
+
+  @After
+  public void stop() {
+    server.stop(0);
+    File[] files = folder.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+    folder.delete();
+  }
+
+  private URI getUri(String name) throws Exception {
+    return new URL("http", "127.0.0.1", server.getAddress().getPort(), "/" + name + System.nanoTime() + ".jpg").toURI();
+  }
+
+  @Test
+  public void getBytes() throws Exception {
+    ImageStore store = new ImageStore(folder, 1024 * 1024);
+    URI uri = getUri("poster");
+    Assert.assertFalse(store.contains(uri));
+    byte[] bytes = store.getBytes(uri);
+    Assert.assertEquals(1024, bytes.length);
+    Assert.assertTrue(store.contains(uri));
+
+    // read from store
+    Assert.assertArrayEquals(bytes, store.getBytes(uri));
+    Assert.assertEquals(1, downloads.get());
+    Assert.assertEquals(1024, store.getSize());
+
+    // same content from another url is stored once
+    store.getBytes(getUri("same"));
+    store.getBytes(getUri("same"));
+    Assert.assertEquals(3, downloads.get());
+    Assert.assertEquals(2, folder.list().length);
+    Assert.assertEquals(2048, store.getSize());
+  }
+
+  @Test
+  public void existingFile() throws Exception {
+    ImageStore store = new ImageStore(folder, 1024 * 1024);
+    File file = new File(folder, "hash");
+    store.write(file, new byte[100]);
+    // stored by another instance meanwhile
+    store.write(file, new byte[100]);
+    Assert.assertEquals(100, file.length());
+    Assert.assertEquals(100, store.getSize());
+  }
+
+  @Test
+  public void evict() throws Exception {
+    ImageStore store = new ImageStore(folder, 4 * 1024);
+    URI first = getUri("first");
+    store.getBytes(first);
+    // least recently used
+    folder.listFiles()[0].setLastModified(System.currentTimeMillis() - 60000);
+    for (int i = 0; i < 4; i++) {
+      store.getBytes(getUri("image" + i));
+    }
+
+    // least recently used images are removed until store is 90% full
+    Assert.assertTrue(store.getSize() <= 4 * 1024 * 9 / 10);
+    Assert.assertEquals(store.getSize(), folder.list().length * 1024);
+    Assert.assertFalse(store.contains(first));
+  }
+}
@@ -0,0 +1,180 @@
+/*
+ * movie-renamer-core
+ * Copyright (C) 2012-2013 Nicolas Magré
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.free.movierenamer.utils;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.URL;
+import java.util.List;
+
+import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Class JSONFilterTest
+ *
+ * @author Nicolas Magré
+ */
+public class JSONFilterTest {
+
+  private static final JSONFilter castingFilter = new JSONFilter("cast/name", "cast/character", "cast/profile_path",
+          "crew/name", "crew/character", "crew/profile_path", "crew/job");
+
+  /**
+   * TMDb like casting, with fields not used by scrapper
+   */
+  private static String getCasting(int nbPerson) {
+    StringBuilder sb = new StringBuilder("{\"id\":19995,");
+    for (String section : new String[]{"cast", "crew"}) {
+      sb.append('"').append(section).append("\":[");
+      for (int i = 0; i < nbPerson; i++) {
+        if (i > 0) {
+          sb.append(',');
+        }
+        sb.append("{\"id\":").append(i).append(",\"name\":\"Person ").append(i)
+                .append("\",\"character\":\"Character ").append(i)
+                .append("\",\"order\":").append(i).append(",\"cast_id\":").append(i * 3)
+                .append(",\"credit_id\":\"52fe48009251416c750aca").append(i)
+                .append("\",\"department\":\"Directing\",\"job\":\"Director\"")
+                .append(",\"profile_path\":\"/kU3B75TyRiCgE270EyZnHjfivoq.jpg\",\"known_for\":[{\"id\":1,\"title\":\"Avatar\"},{\"id\":2,\"title\":\"Titanic\"}]}");
+      }
+      sb.append("],");
+    }
+    sb.setLength(sb.length() - 1);
+    return sb.append('}').toString();
+  }
+
+  @Test
+  public void filter() throws IOException {
+    String casting = getCasting(3);
+    JSONObject full = (JSONObject) JSONValue.parse(casting);
+    JSONObject filtered = castingFilter.parse(new StringReader(casting));
+
+    Assert.assertNull(filtered.get("id"));
+    for (String section : new String[]{"cast", "crew"}) {
+      List<JSONObject> fullList = JSONUtils.selectList(section, full);
+      List<JSONObject> filteredList = JSONUtils.selectList(section, filtered);
+      Assert.assertEquals(fullList.size(), filteredList.size());
+      for (int i = 0; i < fullList.size(); i++) {
+        JSONObject person = filteredList.get(i);
+        Assert.assertEquals(section.equals("cast") ? 3 : 4, person.size());
+        for (String field : new String[]{"name", "character", "profile_path"}) {
+          Assert.assertEquals(JSONUtils.selectString(field, fullList.get(i)), JSONUtils.selectString(field, person));
+        }
+        Assert.assertEquals(section.equals("cast") ? null : "Director", JSONUtils.selectString("job", person));
+      }
+    }
+  }
+
+  @Test
+  public void subTree() throws Exception {
+    URL url = JSONFilterTest.class.getResource("json.txt");
+    Reader reader = new FileReader(new File(url.toURI()));
+    JSONObject json;
+    try {
+      json = new JSONFilter("feed/movie/castingShort", "*/count").parse(reader);
+    } finally {
+      reader.close();
+    }
+
+    JSONObject feed = JSONUtils.selectObject("feed", json);
+    Assert.assertEquals(2, feed.size());
+    Assert.assertEquals("10", JSONUtils.selectString("count", feed));
+    JSONObject movie = JSONUtils.selectList("movie", feed).get(0);
+    Assert.assertNull(movie.get("title"));
+    Assert.assertEquals("James Cameron", JSONUtils.selectString("directors", JSONUtils.selectObject("castingShort", movie)));
+  }
+
+  @Test
+  public void sameAsJsonSimple() throws Exception {
+    String json = "{\"s\":\"a\\\"b\\\\c\\/d\\u00e9\\n\",\"n\":[-12,3.5,1e3,0],\"b\":[true,false,null],\"o\":{},\"a\":[]}";
+    Assert.assertEquals(JSONValue.parse(json), new JSONFilter("*").parse(new StringReader(json)));
+
+    URL url = JSONFilterTest.class.getResource("json.txt");
+    Reader reader = new FileReader(new File(url.toURI()));
+    try {
+      Object full = JSONValue.parse(reader);
+      reader.close();
+      reader = new FileReader(new File(url.toURI()));
+      Assert.assertEquals(full, new JSONFilter("*").parse(reader));
+    } finally {
+      reader.close();
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void invalid() throws IOException {
+    castingFilter.parse(new StringReader("{\"cast\":[{\"name\":\"a\"}"));
+  }
+
+  @Test
+  public void truncated() {
+    String json = "{\"cast\":[{\"name\":\"a\",\"id\":[1,2]}]}";
+    for (int i = 0; i < json.length(); i++) {
+      try {
+        castingFilter.parse(new StringReader(json.substring(0, i)));
+        Assert.fail("Truncated document parsed : " + json.substring(0, i));
+      } catch (IOException ex) {
+        // expected
+      }
+    }
+  }
+
+  /**
+   * Allocation benchmark, whole tree vs filtered tree
+   */
+  @Test
+  public void allocation() throws IOException {
+    ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+      return;
+    }
+    com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+    long thread = Thread.currentThread().getId();
+    String casting = getCasting(200);
+    int loop = 200;
+
+    // warm up
+    for (int i = 0; i < loop; i++) {
+      JSONValue.parse(casting);
+      castingFilter.parse(new StringReader(casting));
+    }
+
+    long start = threadBean.getThreadAllocatedBytes(thread);
+    for (int i = 0; i < loop; i++) {
+      JSONValue.parse(casting);
+    }
+    long full = (threadBean.getThreadAllocatedBytes(thread) - start) / loop;
+
+    start = threadBean.getThreadAllocatedBytes(thread);
+    for (int i = 0; i < loop; i++) {
+      castingFilter.parse(new StringReader(casting));
+    }
+    long filtered = (threadBean.getThreadAllocatedBytes(thread) - start) / loop;
+
+    System.out.println(String.format("Casting json (%d chars) : whole tree %d bytes, filtered %d bytes", casting.length(), full, filtered));
+    Assert.assertTrue(filtered < full);
+  }
+}
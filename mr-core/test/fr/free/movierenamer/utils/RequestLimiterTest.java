@@ -0,0 +1,97 @@
+/*
+ * movie-renamer-core
+ * Copyright (C) 2012-2013 Nicolas Magré
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.free.movierenamer.utils;
+
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Class RequestLimiterTest
+ *
+ * @author Nicolas Magré
+ */
+public class RequestLimiterTest {
+
+  @Test
+  public void unlimited() throws Exception {
+    RequestLimiter limiter = RequestLimiter.getLimiter("unlimited.test", null);
+    for (int i = 0; i < 100; i++) {
+      limiter.acquire().release();
+    }
+    Assert.assertEquals(Integer.MAX_VALUE, limiter.getConcurrency());
+  }
+
+  @Test
+  public void rate() throws Exception {
+    RequestLimiter limiter = RequestLimiter.getLimiter("rate.test", new RequestLimiter.Limit(20, 1, 4, 5000));
+    long start = System.currentTimeMillis();
+    for (int i = 0; i < 11; i++) {
+      limiter.acquire().release();
+    }
+    // first token is free, then 10 tokens at 20 per second
+    Assert.assertTrue(System.currentTimeMillis() - start >= 450);
+  }
+
+  @Test
+  public void governor() throws Exception {
+    RequestLimiter limiter = RequestLimiter.getLimiter("governor.test", new RequestLimiter.Limit(10000, 10000, 8, 100));
+    Assert.assertEquals(2, limiter.getConcurrency());
+
+    // additive increase up to max
+    for (int i = 0; i < 100; i++) {
+      limiter.acquire().release();
+    }
+    Assert.assertEquals(8, limiter.getConcurrency());
+
+    // multiplicative decrease on network error
+    RequestLimiter.Permit permit = limiter.acquire();
+    permit.setError(new IOException("Server returned HTTP response code: 429"));
+    permit.release();
+    Assert.assertEquals(4, limiter.getConcurrency());
+
+    // and on slow request
+    permit = limiter.acquire();
+    Thread.sleep(150);
+    permit.release();
+    Assert.assertEquals(2, limiter.getConcurrency());
+    Assert.assertEquals(0, limiter.getRunning());
+
+    // slow body read after a fast response
+    permit = limiter.acquire();
+    permit.setResponded();
+    Thread.sleep(150);
+    permit.release();
+    Assert.assertEquals(2, limiter.getConcurrency());
+  }
+
+  @Test
+  public void hostKey() {
+    Assert.assertEquals("themoviedb.org", RequestLimiter.getHostKey("api.themoviedb.org"));
+    Assert.assertEquals("themoviedb.org", RequestLimiter.getHostKey("themoviedb.org"));
+    Assert.assertEquals("fanart.tv", RequestLimiter.getHostKey("api.fanart.tv/webservice"));
+    Assert.assertEquals("screenrush.co.uk", RequestLimiter.getHostKey("www.screenrush.co.uk"));
+    Assert.assertEquals("127.0.0.1", RequestLimiter.getHostKey("127.0.0.1"));
+
+    RequestLimiter limiter = RequestLimiter.getLimiter("www.hostkey.test", new RequestLimiter.Limit(1, 1, 1, 5000));
+    Assert.assertSame(limiter, RequestLimiter.getLimiter("api.hostkey.test", new RequestLimiter.Limit(2, 2, 2, 5000)));
+    Assert.assertSame(limiter, RequestLimiter.getLimiter("hostkey.test"));
+    Assert.assertEquals(Integer.MAX_VALUE, RequestLimiter.getLimiter("other.test").getConcurrency());
+  }
+}
@@ -0,0 +1,185 @@
+/*
+ * movie-renamer-core
+ * Copyright (C) 2012-2013 Nicolas Magré
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.free.movierenamer.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Class SegmentStoreTest
+ *
+ * @author Nicolas Magré
+ */
+public class SegmentStoreTest {
+
+  private static final long EXPIRES = Long.MAX_VALUE;
+  private File folder;
+
+  @Before
+  public void setUp() throws IOException {
+    folder = File.createTempFile("segments", "");
+    folder.delete();
+  }
+
+  @After
+  public void tearDown() {
+    File[] files = folder.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+    folder.delete();
+  }
+
+  private static byte[] bytes(String str) {
+    return str.getBytes();
+  }
+
+  @Test
+  public void shared() throws Exception {
+    SegmentStore store = new SegmentStore(folder, 1024 * 1024);
+    SegmentStore other = new SegmentStore(folder, 1024 * 1024);
+
+    Assert.assertNull(other.get(bytes("key")));
+    store.put(bytes("key"), EXPIRES, 1, bytes("value"));
+    SegmentStore.Record record = other.get(bytes("key"));
+    Assert.assertEquals("value", new String(record.data));
+    Assert.assertEquals(1, record.codecId);
+
+    // last value wins
+    other.put(bytes("key"), EXPIRES, 1, bytes("value2"));
+    store.remove(bytes("unknown"));
+    Assert.assertEquals("value2", new String(new SegmentStore(folder, 1024 * 1024).get(bytes("key")).data));
+
+    store.remove(bytes("key"));
+    Assert.assertNull(new SegmentStore(folder, 1024 * 1024).get(bytes("key")));
+
+    // expired
+    store.put(bytes("expired"), System.currentTimeMillis() - 1, 1, bytes("value"));
+    Assert.assertNull(store.get(bytes("expired")));
+
+    store.put(bytes("key"), EXPIRES, 1, bytes("value3"));
+    Assert.assertEquals("value3", new String(other.get(bytes("key")).data));
+    other.clear();
+    Assert.assertNull(store.get(bytes("key")));
+    store.put(bytes("key2"), EXPIRES, 1, bytes("value"));
+    Assert.assertEquals("value", new String(other.get(bytes("key2")).data));
+  }
+
+  @Test
+  public void clearReusedSegment() throws Exception {
+    SegmentStore store = new SegmentStore(folder, 1024 * 1024);
+    SegmentStore other = new SegmentStore(folder, 1024 * 1024);
+    store.put(bytes("key"), EXPIRES, 1, bytes("value1"));
+    Assert.assertEquals("value1", new String(store.get(bytes("key")).data));
+
+    // same segment id, offset and length after clear, store must not read
+    // removed segment with its open reader
+    other.clear();
+    other.put(bytes("key"), EXPIRES, 1, bytes("value2"));
+    Assert.assertEquals("value2", new String(store.get(bytes("key")).data));
+  }
+
+  @Test
+  public void tornRecord() throws Exception {
+    SegmentStore store = new SegmentStore(folder, 1024 * 1024);
+    store.put(bytes("key"), EXPIRES, 1, bytes("value"));
+
+    // crash while appending
+    File segment = null;
+    for (File file : folder.listFiles()) {
+      if (file.getName().endsWith(".log")) {
+        segment = file;
+      }
+    }
+    RandomAccessFile file = new RandomAccessFile(segment, "rw");
+    try {
+      file.seek(file.length());
+      file.write(new byte[]{0x4D, 0x52, 0x43, 0x31, 0, 0, 1});
+    } finally {
+      file.close();
+    }
+
+    SegmentStore other = new SegmentStore(folder, 1024 * 1024);
+    Assert.assertEquals("value", new String(other.get(bytes("key")).data));
+    other.put(bytes("key2"), EXPIRES, 1, bytes("value2"));
+    Assert.assertEquals("value2", new String(new SegmentStore(folder, 1024 * 1024).get(bytes("key2")).data));
+  }
+
+  @Test
+  public void eviction() throws Exception {
+    SegmentStore store = new SegmentStore(folder, 4 * 1024 * 1024);
+    byte[] data = new byte[100 * 1024];
+    for (int i = 0; i < 100; i++) {
+      store.put(bytes("key" + i), EXPIRES, 1, data);
+    }
+
+    Assert.assertTrue(store.getSize() <= 4 * 1024 * 1024);
+    Assert.assertTrue(store.getEvictionCount() > 0);
+    Assert.assertNull(store.get(bytes("key0")));
+    Assert.assertNotNull(store.get(bytes("key99")));
+  }
+
+  @Test
+  public void processes() throws Exception {
+    int processCount = 3;
+    int count = 200;
+    String java = new File(new File(System.getProperty("java.home"), "bin"), "java").getPath();
+    List<Process> processes = new ArrayList<Process>();
+    for (int i = 0; i < processCount; i++) {
+      processes.add(new ProcessBuilder(java, "-Duser.home=" + System.getProperty("user.home"), "-cp", System.getProperty("java.class.path"),
+              SegmentStoreTest.class.getName(), folder.getPath(), "p" + i, String.valueOf(count)).redirectErrorStream(true).start());
+    }
+    for (Process process : processes) {
+      while (process.getInputStream().read() >= 0) {
+        // logs
+      }
+      Assert.assertEquals(0, process.waitFor());
+    }
+
+    SegmentStore store = new SegmentStore(folder, 64 * 1024 * 1024);
+    for (int i = 0; i < processCount; i++) {
+      for (int j = 0; j < count; j++) {
+        SegmentStore.Record record = store.get(bytes("p" + i + "-" + j));
+        Assert.assertNotNull(record);
+        Assert.assertEquals("value" + j, new String(record.data));
+      }
+    }
+  }
+
+  /**
+   * Append entries from another process
+   *
+   * @param args Folder, key prefix, count
+   */
+  public static void main(String[] args) throws Exception {
+    SegmentStore store = new SegmentStore(new File(args[0]), 64 * 1024 * 1024);
+    for (int i = 0; i < Integer.parseInt(args[2]); i++) {
+      store.put(bytes(args[1] + "-" + i), EXPIRES, 1, bytes("value" + i));
+    }
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * movie-renamer-core
+ * Copyright (C) 2012-2013 Nicolas Magré
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.free.movierenamer.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Class SingleFlightTest
+ *
+ * @author Nicolas Magré
+ */
+public class SingleFlightTest {
+
+  @Test
+  public void coalesce() throws Exception {
+    final AtomicInteger calls = new AtomicInteger();
+    final CountDownLatch start = new CountDownLatch(1);
+    final Callable<String> loader = new Callable<String>() {
+      @Override
+      public String call() throws Exception {
+        calls.incrementAndGet();
+        Thread.sleep(300);
+        return "result";
+      }
+    };
+
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<String>> results = new ArrayList<Future<String>>();
+      for (int i = 0; i < 8; i++) {
+        results.add(executor.submit(new Callable<String>() {
+          @Override
+          public String call() throws Exception {
+            start.await();
+            return SingleFlight.execute("coalesce.test", loader);
+          }
+        }));
+      }
+      start.countDown();
+      for (Future<String> result : results) {
+        Assert.assertEquals("result", result.get());
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    Assert.assertEquals(1, calls.get());
+    Assert.assertEquals(0, SingleFlight.size());
+  }
+
+  @Test
+  public void nested() throws Exception {
+    String result = SingleFlight.execute("nested.test", new Callable<String>() {
+      @Override
+      public String call() throws Exception {
+        return SingleFlight.execute("nested.test", new Callable<String>() {
+          @Override
+          public String call() throws Exception {
+            return "inner";
+          }
+        });
+      }
+    });
+    Assert.assertEquals("inner", result);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void error() throws Exception {
+    SingleFlight.execute("error.test", new Callable<String>() {
+      @Override
+      public String call() throws Exception {
+        throw new IllegalStateException();
+      }
+    });
+  }
+}
@@ -17,11 +17,34 @@
  */
 package fr.free.movierenamer.utils;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
 import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
 import java.net.URL;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
 
+import org.json.simple.JSONObject;
+import org.junit.After;
 import org.junit.Assert;
+import org.junit.Before;
 import org.junit.Test;
+import org.w3c.dom.Document;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import fr.free.movierenamer.settings.Settings;
 
 /**
  * Class URIRequestTest
@@ -30,4 +53,257 @@ import org.junit.Test;
  */
 public class URIRequestTest {
 
+  private static final String JSON = "{\"title\":\"Avatar\"}";
+  private static final String HTML = "<html><head><style>h1 {color: red}</style><script>var title = 'Titanic';</script></head>"
+          + "<body><h1>Avatar<script type=\"text/javascript\">document.write('<b>Titanic</b>');</script></h1><p>James Cameron<br/></p></body></html>";
+  private HttpServer server;
+  private ExecutorService serverExecutor;
+  private final AtomicInteger running = new AtomicInteger();
+  private final AtomicInteger maxRunning = new AtomicInteger();
+  private final AtomicInteger fullResponses = new AtomicInteger();
+  private final AtomicInteger notModifiedResponses = new AtomicInteger();
+  private volatile long delay = 0;
+
+  @Before
+  public void init() throws IOException {
+    Settings.getInstance();
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    serverExecutor = Executors.newCachedThreadPool();
+    server.setExecutor(serverExecutor);
+    server.createContext("/json", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        int current = running.incrementAndGet();
+        synchronized (maxRunning) {
+          maxRunning.set(Math.max(maxRunning.get(), current));
+        }
+        try {
+          Thread.sleep(delay);
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+        } finally {
+          running.decrementAndGet();
+        }
+        byte[] body = JSON.getBytes(URIRequest.UTF);
+        exchange.getResponseHeaders().add("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(200, body.length);
+        OutputStream os = exchange.getResponseBody();
+        os.write(body);
+        os.close();
+      }
+    });
+    server.createContext("/html", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        byte[] body = HTML.getBytes(URIRequest.UTF);
+        exchange.getResponseHeaders().add("Content-Type", "text/html; charset=utf-8");
+        exchange.sendResponseHeaders(200, body.length);
+        OutputStream os = exchange.getResponseBody();
+        os.write(body);
+        os.close();
+      }
+    });
+    server.createContext("/etag", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        String etag = "\"avatar-1\"";
+        exchange.getResponseHeaders().add("ETag", etag);
+        if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+          notModifiedResponses.incrementAndGet();
+          exchange.sendResponseHeaders(304, -1);
+          exchange.close();
+          return;
+        }
+
+        fullResponses.incrementAndGet();
+        byte[] body = JSON.getBytes(URIRequest.UTF);
+        exchange.getResponseHeaders().add("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(200, body.length);
+        OutputStream os = exchange.getResponseBody();
+        os.write(body);
+        os.close();
+      }
+    });
+    server.createContext("/broken", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        // gzip body corrupted after its header, read fails
+        ByteArrayOutputStream gzip = new ByteArrayOutputStream();
+        GZIPOutputStream out = new GZIPOutputStream(gzip);
+        for (int i = 0; i < 1000; i++) {
+          out.write(("line " + i + "\n").getBytes(URIRequest.UTF));
+        }
+        out.close();
+        byte[] body = gzip.toByteArray();
+        Arrays.fill(body, 10, body.length, (byte) 0xFF);
+        exchange.getResponseHeaders().add("Content-Type", "text/plain; charset=utf-8");
+        exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+        exchange.sendResponseHeaders(200, body.length);
+        OutputStream os = exchange.getResponseBody();
+        os.write(body);
+        os.close();
+      }
+    });
+    server.start();
+  }
+
+  @After
+  public void stop() {
+    server.stop(0);
+    serverExecutor.shutdownNow();
+  }
+
+  private URI getJsonUri() throws MalformedURLException, URISyntaxException {
+    return new URL("http", "127.0.0.1", server.getAddress().getPort(), "/json").toURI();
+  }
+
+  /**
+   * Run nbRequest getJsonDocument at the same time
+   *
+   * @return Number of failed requests
+   */
+  private int runParallelRequests(int nbRequest) throws Exception {
+    final URI uri = getJsonUri();
+    final CountDownLatch start = new CountDownLatch(1);
+    final CountDownLatch done = new CountDownLatch(nbRequest);
+    final AtomicInteger errors = new AtomicInteger();
+    for (int i = 0; i < nbRequest; i++) {
+      new Thread() {
+        @Override
+        public void run() {
+          try {
+            start.await();
+            JSONObject json = URIRequest.getJsonDocument(uri);
+            if (!"Avatar".equals(JSONUtils.selectString("title", json))) {
+              errors.incrementAndGet();
+            }
+          } catch (Exception ex) {
+            errors.incrementAndGet();
+          } finally {
+            done.countDown();
+          }
+        }
+      }.start();
+    }
+    start.countDown();
+    done.await();
+    return errors.get();
+  }
+
+  @Test
+  public void getJsonDocument() throws Exception {
+    JSONObject json = URIRequest.getJsonDocument(getJsonUri());
+    Assert.assertEquals("Avatar", JSONUtils.selectString("title", json));
+  }
+
+  @Test
+  public void getHtmlDocument() throws Exception {
+    URI uri = new URL("http", "127.0.0.1", server.getAddress().getPort(), "/html").toURI();
+    Document dom = URIRequest.getHtmlDocument(uri);
+    Document light = URIRequest.getHtmlDocument(uri, true);
+    // parsers are reused, previous document must not change
+    Document other = URIRequest.getHtmlDocument(uri, true);
+
+    Assert.assertEquals(2, XPathUtils.selectNodes("//SCRIPT", dom).size());
+    Assert.assertEquals(1, XPathUtils.selectNodes("//STYLE", dom).size());
+    Assert.assertTrue(light != other);
+    for (Document doc : new Document[]{light, other}) {
+      Assert.assertEquals(0, XPathUtils.selectNodes("//SCRIPT", doc).size());
+      Assert.assertEquals(0, XPathUtils.selectNodes("//STYLE", doc).size());
+      Assert.assertEquals("Avatar", XPathUtils.selectString("//H1", doc));
+      Assert.assertEquals("James Cameron", XPathUtils.selectString("//P", doc));
+      Assert.assertEquals(1, XPathUtils.selectNodes("//BR", doc).size());
+    }
+  }
+
+  @Test
+  public void notModified() throws Exception {
+    URI uri = new URL("http", "127.0.0.1", server.getAddress().getPort(), "/etag").toURI();
+    for (int i = 0; i < 3; i++) {
+      JSONObject json = URIRequest.getJsonDocument(uri);
+      Assert.assertEquals("Avatar", JSONUtils.selectString("title", json));
+    }
+
+    // body is only sent once, then read from cache
+    Assert.assertEquals(1, fullResponses.get());
+    Assert.assertEquals(2, notModifiedResponses.get());
+  }
+
+  @Test(timeout = 30000)
+  public void connectionReleasedOnError() throws Exception {
+    URI uri = new URL("http", "127.0.0.1", server.getAddress().getPort(), "/broken").toURI();
+    for (int i = 0; i < Settings.getInstance().getHttpMaxConnectionsPerHost() * 2; i++) {
+      try {
+        URIRequest.getDocumentContent(uri);
+        Assert.fail("Body is truncated");
+      } catch (IOException ex) {
+        // expected
+      }
+    }
+
+    // failed requests gave their connection back
+    Assert.assertEquals("Avatar", JSONUtils.selectString("title", URIRequest.getJsonDocument(getJsonUri())));
+  }
+
+  @Test(timeout = 30000)
+  public void requestLimiter() throws Exception {
+    // own host, limiter is kept for all tests
+    HttpServer limited = HttpServer.create(new InetSocketAddress("127.0.0.2", 0), 0);
+    limited.createContext("/slow", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        exchange.sendResponseHeaders(200, 2);
+        OutputStream os = exchange.getResponseBody();
+        os.write('a');
+        os.flush();
+        try {
+          Thread.sleep(300);
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+        }
+        os.write('b');
+        os.close();
+      }
+    });
+    limited.start();
+    try {
+      RequestLimiter limiter = RequestLimiter.getLimiter("127.0.0.2", new RequestLimiter.Limit(1000, 1000, 4, 200));
+      URI uri = new URL("http", "127.0.0.2", limited.getAddress().getPort(), "/slow").toURI();
+      for (int i = 0; i < 3; i++) {
+        InputStream inputStream = URIRequest.getInputStream(uri);
+        // permit is held until body is closed
+        Assert.assertEquals(1, limiter.getRunning());
+        try {
+          while (inputStream.read() != -1) {
+          }
+        } finally {
+          inputStream.close();
+        }
+        Assert.assertEquals(0, limiter.getRunning());
+      }
+
+      // latency is measured until response, not until end of slow body
+      Assert.assertTrue(limiter.getConcurrency() >= 2);
+    } finally {
+      limited.stop(0);
+    }
+  }
+
+  @Test
+  public void maxConnectionsPerHost() throws Exception {
+    delay = 100;
+    int max = Settings.getInstance().getHttpMaxConnectionsPerHost();
+    Assert.assertEquals(0, runParallelRequests(max * 3));
+    Assert.assertTrue(maxRunning.get() <= max);
+  }
+
+  @Test
+  public void parallelRequestsScale() throws Exception {
+    delay = 300;
+    int nbRequest = Settings.getInstance().getHttpMaxConnectionsPerHost();
+    Assert.assertEquals(0, runParallelRequests(nbRequest));
+
+    // all requests must be handled at the same time, not one after the other
+    Assert.assertEquals(nbRequest, maxRunning.get());
+  }
 }
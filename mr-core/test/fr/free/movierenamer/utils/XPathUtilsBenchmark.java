@@ -0,0 +1,61 @@
+/*
+ * movie-renamer-core
+ * Copyright (C) 2012-2013 Nicolas Magré
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.free.movierenamer.utils;
+
+import java.io.ByteArrayInputStream;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.xpath.XPathFactory;
+
+import org.w3c.dom.Document;
+
+/**
+ * Class XPathUtilsBenchmark, compile on each call vs compiled xpath cache. Not
+ * a unit test, run it with main.
+ *
+ * @author Nicolas Magré
+ */
+public class XPathUtilsBenchmark {
+
+  public static void main(String[] args) throws Exception {
+    Document dom = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new ByteArrayInputStream(XPathUtilsTest.SERIES.getBytes(URIRequest.UTF)));
+    String[] xpaths = {"Data/Series/SeriesName", "Data/Series/FirstAired", "Data/Episode[2]/EpisodeName", "count(//Episode)"};
+    int loop = 20000;
+
+    // warm up
+    for (int i = 0; i < loop; i++) {
+      String xpath = xpaths[i % xpaths.length];
+      XPathFactory.newInstance().newXPath().compile(xpath).evaluate(dom);
+      XPathUtils.selectString(xpath, dom);
+    }
+
+    long start = System.nanoTime();
+    for (int i = 0; i < loop; i++) {
+      XPathFactory.newInstance().newXPath().compile(xpaths[i % xpaths.length]).evaluate(dom);
+    }
+    long uncached = (System.nanoTime() - start) / loop;
+
+    start = System.nanoTime();
+    for (int i = 0; i < loop; i++) {
+      XPathUtils.selectString(xpaths[i % xpaths.length], dom);
+    }
+    long cached = (System.nanoTime() - start) / loop;
+
+    System.out.println(String.format("XPath per call : compiled on each call %d ns, cached %d ns", uncached, cached));
+  }
+}
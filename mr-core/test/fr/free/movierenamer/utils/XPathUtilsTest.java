@@ -0,0 +1,109 @@
+/*
+ * movie-renamer-core
+ * Copyright (C) 2012-2013 Nicolas Magré
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.free.movierenamer.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.xpath.XPathFactory;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+
+/**
+ * Class XPathUtilsTest
+ *
+ * @author Nicolas Magré
+ */
+public class XPathUtilsTest {
+
+  static final String SERIES = "<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n"
+          + "<Data>\n"
+          + "  <Series><id>80348</id><SeriesName>Chuck</SeriesName><FirstAired>2007-09-24</FirstAired></Series>\n"
+          + "  <Episode><EpisodeName>Pilot</EpisodeName><EpisodeNumber>1</EpisodeNumber><SeasonNumber>1</SeasonNumber>"
+          + "<Overview><![CDATA[Chuck & Sarah]]></Overview></Episode>\n"
+          + "  <Episode><EpisodeName>Chuck Versus the Helicopter</EpisodeName><EpisodeNumber>2</EpisodeNumber>"
+          + "<SeasonNumber>1</SeasonNumber><absolute_number></absolute_number></Episode>\n"
+          + "</Data>";
+  private static final String EPISODE_LIST = "<Show><name>Chuck</name><Episodelist>"
+          + "<Season no=\"1\"><episode><seasonnum>01</seasonnum><title>Pilot</title></episode></Season>"
+          + "<Special><episode><season>2</season><title>Special</title></episode></Special>"
+          + "</Episodelist></Show>";
+
+  private static List<XPathUtils.XmlElement> stream(String xml, String... paths) throws IOException {
+    final List<XPathUtils.XmlElement> elements = new ArrayList<XPathUtils.XmlElement>();
+    XPathUtils.streamElements(new ByteArrayInputStream(xml.getBytes(URIRequest.UTF)), new XPathUtils.ElementHandler() {
+      @Override
+      public void handle(XPathUtils.XmlElement element) {
+        elements.add(element);
+      }
+    }, paths);
+    return elements;
+  }
+
+  @Test
+  public void streamElements() throws Exception {
+    List<XPathUtils.XmlElement> elements = stream(SERIES, "Data/Series", "Data/Episode");
+    Document dom = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new ByteArrayInputStream(SERIES.getBytes(URIRequest.UTF)));
+    List<Node> nodes = XPathUtils.selectNodes("Data/Episode", dom);
+
+    Assert.assertEquals(3, elements.size());
+    Assert.assertEquals("Chuck", elements.get(0).getTextContent("SeriesName"));
+    for (int i = 0; i < nodes.size(); i++) {
+      XPathUtils.XmlElement episode = elements.get(i + 1);
+      Assert.assertEquals("Episode", episode.getName());
+      for (String child : new String[]{"EpisodeName", "EpisodeNumber", "SeasonNumber", "absolute_number", "FirstAired"}) {
+        Assert.assertEquals(XPathUtils.getTextContent(child, nodes.get(i)), episode.getTextContent(child));
+      }
+      Assert.assertEquals(XPathUtils.getIntegerContent("EpisodeNumber", nodes.get(i)), episode.getIntegerContent("EpisodeNumber"));
+    }
+    Assert.assertNull(elements.get(2).getIntegerContent("absolute_number"));
+    Assert.assertEquals("Chuck & Sarah", elements.get(1).getTextContent("Overview"));
+  }
+
+  /**
+   * Cached xpath gives the same result as xpath compiled on each call, see
+   * XPathUtilsBenchmark for timings
+   */
+  @Test
+  public void xpathCache() throws Exception {
+    Document dom = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new ByteArrayInputStream(SERIES.getBytes(URIRequest.UTF)));
+    String[] xpaths = {"Data/Series/SeriesName", "Data/Series/FirstAired", "Data/Episode[2]/EpisodeName", "count(//Episode)"};
+
+    for (int i = 0; i < xpaths.length * 3; i++) {
+      String xpath = xpaths[i % xpaths.length];
+      Assert.assertEquals(XPathFactory.newInstance().newXPath().compile(xpath).evaluate(dom).trim(), XPathUtils.selectString(xpath, dom));
+    }
+  }
+
+  @Test
+  public void streamAnyDepth() throws Exception {
+    List<XPathUtils.XmlElement> elements = stream(EPISODE_LIST, "//episode");
+
+    Assert.assertEquals(2, elements.size());
+    Assert.assertEquals("1", elements.get(0).getParent().getAttribute("no"));
+    Assert.assertEquals(Integer.valueOf(1), elements.get(0).getIntegerContent("seasonnum"));
+    Assert.assertNull(elements.get(1).getParent().getAttribute("no"));
+    Assert.assertEquals("Special", elements.get(1).getTextContent("title"));
+  }
+}
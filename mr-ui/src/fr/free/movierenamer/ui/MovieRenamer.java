@@ -50,6 +50,7 @@ import com.alee.managers.tooltip.TooltipManager;
 import com.alee.managers.tooltip.TooltipWay;
 import com.alee.utils.swing.AncestorAdapter;
 import fr.free.movierenamer.info.MediaInfo;
+import fr.free.movierenamer.scrapper.MediaPrefetcher;
 import fr.free.movierenamer.scrapper.MovieScrapper;
 import fr.free.movierenamer.scrapper.ScrapperManager;
 import fr.free.movierenamer.scrapper.TvShowScrapper;
@@ -151,6 +152,8 @@ public class MovieRenamer extends WebFrame implements IEventListener {
   private final DefaultListModel<UILoader> loaderModel = new DefaultListModel<UILoader>();
   // Separator
   private final SeparatorList<UIFile> mediaFileSeparator = new SeparatorList<UIFile>(mediaFileEventList, UIUtils.groupFileComparator, 1, 1000);
+  // Fill cache for media list in background
+  private MediaPrefetcher mediaPrefetcher;
   // List option checkbox
   private final WebCheckBox showIconMediaListChk;
   private final WebCheckBox showIconResultListChk;
@@ -701,6 +704,7 @@ public class MovieRenamer extends WebFrame implements IEventListener {
   private void clearInterface(boolean clearMediaList, boolean clearSearchResultList) {
 
     if (clearMediaList) {
+      setMediaPrefetcher(null);
       searchField.setText(null);
       mediaFileEventList.clear();
       mediaFileSeparator.clear();
@@ -825,6 +829,18 @@ public class MovieRenamer extends WebFrame implements IEventListener {
     clearMediaFileListBtn.setEnabled(true);
   }
 
+  /**
+   * Set prefetcher of media list, previous one is cancelled
+   *
+   * @param prefetcher Prefetcher or null
+   */
+  public void setMediaPrefetcher(MediaPrefetcher prefetcher) {
+    if (mediaPrefetcher != null) {
+      mediaPrefetcher.cancel();
+    }
+    mediaPrefetcher = prefetcher;
+  }
+
   public void setSearchEnabled() {
     searchBtn.setEnabled(true);
     searchField.setEnabled(true);
@@ -20,19 +20,27 @@ package fr.free.movierenamer.ui.utils;
 import fr.free.movierenamer.settings.Settings;
 import fr.free.movierenamer.ui.settings.UISettings;
 import fr.free.movierenamer.ui.swing.SpinningDial;
-import fr.free.movierenamer.utils.Cache;
-import fr.free.movierenamer.utils.URIRequest;
+import fr.free.movierenamer.utils.ImageStore;
 import java.awt.Dimension;
+import java.awt.Graphics2D;
 import java.awt.Image;
+import java.awt.RenderingHints;
 import java.awt.Toolkit;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.logging.Level;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 import javax.swing.Icon;
 import javax.swing.ImageIcon;
 
@@ -97,6 +105,8 @@ public final class ImageUtils {
   public static final Icon LOGO_48 = getIconFromJar("ui/icon-48.png");
   public static final Icon LOGO_72 = getIconFromJar("ui/icon-72.png");
   public static final Icon BAN = getIconFromJar("ui/mr-ban.png");
+  // decoded images by uri and size
+  private static final ImageCache imageCache = new ImageCache(32 * 1024 * 1024);
 
   public static Image iconToImage(Icon icon) {
     if (icon instanceof ImageIcon) {
@@ -169,49 +179,34 @@ public final class ImageUtils {
   }
 
   public static boolean isInCache(URI imagePth) {
-    Cache cache = Cache.getCache("long");
-    if (cache != null) {
-      ImageIcon stored = cache.get(imagePth, ImageIcon.class);
-      if (stored != null) {
-        return true;
-      }
-    }
-
-    return false;
+    return ImageStore.getInstance().contains(imagePth);
   }
 
   public static Icon getIcon(URI imagePth, Dimension dim, String defaultImage) {
-    Cache cache = Cache.getCache("long");
-    Image img;
-
+    Image img = null;
 
     if (imagePth != null) {
-      img = isInCache(imagePth) ? cache.get(imagePth, ImageIcon.class).getImage() : null;
-      if (img == null) {
-        try {
-          InputStream is = URIRequest.getInputStream(imagePth);
-          try {
-            img = ImageIO.read(is);
-          } finally {
-            is.close();
-          }
-          if (cache != null) {
-            cache.put(imagePth, new ImageIcon(img));
-          }
-        } catch (IOException ex) {
-          img = null;
-          Settings.LOGGER.log(Level.SEVERE, String.format("%s %s", ex.getMessage(), imagePth));
-        }
+      String key = imagePth + (dim != null ? "@" + dim.width + "x" + dim.height : "");
+      ImageIcon icon = imageCache.get(key);
+      if (icon != null) {
+        return icon;
+      }
+
+      try {
+        img = readImage(ImageStore.getInstance().getBytes(imagePth), dim);
+        icon = new ImageIcon(img);
+        imageCache.put(key, icon);
+        return icon;
+      } catch (IOException ex) {
+        Settings.LOGGER.log(Level.SEVERE, String.format("%s %s", ex.getMessage(), imagePth));
       }
-    } else {
-      img = null;
     }
 
-    if (img == null && defaultImage != null) {
+    if (defaultImage != null) {
       // load default image id necessary
       img = ImageUtils.getImageFromJAR(defaultImage, ImageUtils.class);
     }
-    if (dim != null) {
+    if (img != null && dim != null) {
       // let's resize
       img = img.getScaledInstance(dim.width, dim.height, Image.SCALE_DEFAULT);
     }
@@ -225,11 +220,124 @@ public final class ImageUtils {
     return icon;
   }
 
+  /**
+   * Decode image, scaled to dim
+   *
+   * @param bytes Image file content
+   * @param dim Size, negative width or height keeps aspect ratio, null for
+   * original size
+   * @return Image
+   * @throws IOException
+   */
+  static BufferedImage readImage(byte[] bytes, Dimension dim) throws IOException {
+    ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(bytes));
+    try {
+      Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+      if (!readers.hasNext()) {
+        throw new IOException("Unsupported image format");
+      }
+
+      ImageReader reader = readers.next();
+      try {
+        reader.setInput(in, true, true);
+        ImageReadParam param = reader.getDefaultReadParam();
+        int width = reader.getWidth(0);
+        int height = reader.getHeight(0);
+        if (dim == null) {
+          return reader.read(0, param);
+        }
+
+        int scaledWidth = dim.width >= 0 ? dim.width : dim.height * width / height;
+        int scaledHeight = dim.height >= 0 ? dim.height : dim.width * height / width;
+        // thumbnail does not need all pixels of a full size poster
+        int subsampling = Math.max(1, Math.min(width / Math.max(1, scaledWidth), height / Math.max(1, scaledHeight)));
+        param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+        return scale(reader.read(0, param), Math.max(1, scaledWidth), Math.max(1, scaledHeight));
+      } finally {
+        reader.dispose();
+      }
+    } finally {
+      in.close();
+    }
+  }
+
+  private static BufferedImage scale(BufferedImage image, int width, int height) {
+    if (image.getWidth() == width && image.getHeight() == height) {
+      return image;
+    }
+
+    BufferedImage scaled = new BufferedImage(width, height, image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+    Graphics2D g = scaled.createGraphics();
+    try {
+      g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+      g.drawImage(image, 0, 0, width, height, null);
+    } finally {
+      g.dispose();
+    }
+    return scaled;
+  }
+
   public Icon resizeIcon(Icon icon, Dimension dim) {
     Image img = iconToImage(icon);
     return new ImageIcon(img.getScaledInstance(dim.width, dim.height, Image.SCALE_DEFAULT));
   }
 
+  /**
+   * Class ImageCache, LRU of decoded images bounded by pixels size, large
+   * images (full size posters) are not kept
+   */
+  static class ImageCache {
+
+    private final long maxBytes;
+    private final long maxEntryBytes;
+    private long size;
+    private final Map<String, ImageIcon> icons = new LinkedHashMap<String, ImageIcon>(16, 0.75f, true);
+
+    public ImageCache(long maxBytes) {
+      this.maxBytes = maxBytes;
+      maxEntryBytes = maxBytes / 16;
+    }
+
+    private static long sizeOf(ImageIcon icon) {
+      return 4L * icon.getIconWidth() * icon.getIconHeight();
+    }
+
+    public synchronized ImageIcon get(String key) {
+      return icons.get(key);
+    }
+
+    public synchronized void put(String key, ImageIcon icon) {
+      if (sizeOf(icon) > maxEntryBytes) {
+        // would evict many thumbnails
+        remove(key);
+        return;
+      }
+
+      ImageIcon previous = icons.put(key, icon);
+      if (previous != null) {
+        size -= sizeOf(previous);
+      }
+      size += sizeOf(icon);
+
+      Iterator<ImageIcon> it = icons.values().iterator();
+      while (size > maxBytes && it.hasNext()) {
+        size -= sizeOf(it.next());
+        it.remove();
+      }
+    }
+
+    private void remove(String key) {
+      ImageIcon previous = icons.remove(key);
+      if (previous != null) {
+        size -= sizeOf(previous);
+      }
+    }
+
+    public synchronized long getSize() {
+      return size;
+    }
+  }
+
   private ImageUtils() {
     throw new UnsupportedOperationException();
   }
@@ -21,6 +21,8 @@ import ca.odell.glazedlists.EventList;
 import ca.odell.glazedlists.SeparatorList;
 import com.alee.laf.list.WebList;
 import com.alee.laf.optionpane.WebOptionPane;
+import fr.free.movierenamer.info.FileInfo;
+import fr.free.movierenamer.scrapper.ScrapperManager;
 import fr.free.movierenamer.ui.MovieRenamer;
 import fr.free.movierenamer.ui.bean.UIFile;
 import fr.free.movierenamer.ui.settings.UISettings;
@@ -103,6 +105,15 @@ public class ListFilesWorker extends Worker<List<UIFile>> {
     }
 
     Sorter.sort(medias, Sorter.SorterType.ALPHABETIC);
+
+    // file info (search) is needed by prefetch, create it now instead of on
+    // media selection
+    for (UIFile media : medias) {
+      if (isCancelled()) {
+        return new ArrayList<UIFile>();
+      }
+      media.getFileInfo();
+    }
     return medias;
   }
 
@@ -197,6 +208,13 @@ public class ListFilesWorker extends Worker<List<UIFile>> {
     }
 
     mr.setClearMediaFileListBtnEnabled();
+
+    // fill cache in background, in list order
+    List<FileInfo> fileInfos = new ArrayList<FileInfo>();
+    for (UIFile media : medias) {
+      fileInfos.add(media.getFileInfo());
+    }
+    mr.setMediaPrefetcher(ScrapperManager.prefetch(fileInfos));
   }
 
   @Override
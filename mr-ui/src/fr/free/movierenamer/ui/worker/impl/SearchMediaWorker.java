@@ -102,26 +102,7 @@ public class SearchMediaWorker extends Worker<List<UISearchResult>> {
     // Sort search results
     Sorter.SorterType type = UISettings.getInstance().coreInstance.getSearchSorter();
     UISettings.LOGGER.log(Level.INFO, String.format("Sort type %s, year %s , search %s", type.name(), media.getYear(), media.getSearch()));
-    switch (type) {
-      case ALPHABETIC:
-      case LENGTH:
-      case YEAR:
-        Sorter.sort(results, type);
-        break;
-      case YEAR_ROUND:
-      case ALPHA_YEAR:
-        Sorter.sort(results, type, media.getYear());
-        break;
-      case SIMMETRICS:
-        UISettings.LOGGER.log(Level.INFO, "Sort SIMMETRICS");
-        Sorter.sort(results, media.getSearch());
-        break;
-      case LEVEN_YEAR:
-        Sorter.sort(results, media.getYear(), media.getSearch());
-        break;
-      default:
-      // Do nothing
-    }
+    Sorter.sort(results, type, media.getYear(), media.getSearch());
 
     searchResultModel.addAll(results);
 
@@ -0,0 +1,90 @@
+/*
+ * Movie Renamer
+ * Copyright (C) 2012-2013 Nicolas Magré
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package fr.free.movierenamer.ui.utils;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import javax.imageio.ImageIO;
+import javax.swing.ImageIcon;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Class ImageUtilsTest
+ *
+ * @author Nicolas Magré
+ */
+public class ImageUtilsTest {
+
+  private static byte[] createImage(int width, int height) throws IOException {
+    BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ImageIO.write(image, "png", out);
+    return out.toByteArray();
+  }
+
+  @Test
+  public void readImage() throws Exception {
+    byte[] poster = createImage(1000, 1500);
+
+    // original size
+    BufferedImage image = ImageUtils.readImage(poster, null);
+    Assert.assertEquals(1000, image.getWidth());
+    Assert.assertEquals(1500, image.getHeight());
+
+    // scaled
+    image = ImageUtils.readImage(poster, new Dimension(100, 120));
+    Assert.assertEquals(100, image.getWidth());
+    Assert.assertEquals(120, image.getHeight());
+
+    // negative height keeps aspect ratio
+    image = ImageUtils.readImage(poster, new Dimension(100, -1));
+    Assert.assertEquals(100, image.getWidth());
+    Assert.assertEquals(150, image.getHeight());
+  }
+
+  @Test(expected = IOException.class)
+  public void readInvalidImage() throws Exception {
+    ImageUtils.readImage(new byte[]{1, 2, 3, 4}, null);
+  }
+
+  @Test
+  public void imageCache() {
+    ImageUtils.ImageCache cache = new ImageUtils.ImageCache(16 * 1024 * 1024);
+    ImageIcon thumb = new ImageIcon(new BufferedImage(100, 150, BufferedImage.TYPE_INT_RGB));
+    cache.put("thumb", thumb);
+    Assert.assertSame(thumb, cache.get("thumb"));
+    Assert.assertEquals(4 * 100 * 150, cache.getSize());
+
+    // full size poster is not kept, thumbnails stay in cache
+    cache.put("poster", new ImageIcon(new BufferedImage(1000, 1500, BufferedImage.TYPE_INT_RGB)));
+    Assert.assertNull(cache.get("poster"));
+    Assert.assertSame(thumb, cache.get("thumb"));
+    Assert.assertEquals(4 * 100 * 150, cache.getSize());
+
+    // least recently used thumbnails are evicted
+    for (int i = 0; i < 300; i++) {
+      cache.put("thumb" + i, new ImageIcon(new BufferedImage(100, 150, BufferedImage.TYPE_INT_RGB)));
+    }
+    Assert.assertNull(cache.get("thumb"));
+    Assert.assertTrue(cache.getSize() <= 16 * 1024 * 1024);
+  }
+}